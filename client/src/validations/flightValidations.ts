@@ -40,14 +40,14 @@ export const FlightsFilterSchema = z.object({
 );
 
 // Схема для ответа с полетами
+// (страница без общего количества; nextCursor - следующая страница по ключу)
 export const FlightsResponseSchema = z.object({
   content: z.array(FlightSchema),
-  currentPage: z.number().optional(),
+  pageNumber: z.number().optional(),
   pageSize: z.number().optional(),
-  totalItems: z.number().optional(),
-  totalPages: z.number().optional(),
+  first: z.boolean().optional(),
   hasNext: z.boolean(),
-  hasPrevious: z.boolean()
+  nextCursor: z.string().nullable().optional()
 });
 
 // Типы
@@ -0,0 +1,4 @@
+-- Шаг последовательностей должен совпадать с allocationSize в @SequenceGenerator
+-- (pooled-оптимизатор Hibernate резервирует блок из 50 id за один вызов nextval)
+ALTER SEQUENCE raw_telegrams_id_seq INCREMENT BY 50;
+ALTER SEQUENCE flights_flight_id_seq INCREMENT BY 50;
@@ -0,0 +1,14 @@
+-- Уникальный ключ полета, объявленный в сущности Flight (uk_flight_composite_key).
+-- На нем основан ON CONFLICT DO NOTHING при загрузке через COPY (app.ingest.sink=copy)
+DO
+$$
+    BEGIN
+        IF NOT EXISTS (SELECT 1
+                       FROM pg_constraint
+                       WHERE conname = 'uk_flight_composite_key') THEN
+            ALTER TABLE flights
+                ADD CONSTRAINT uk_flight_composite_key
+                    UNIQUE (departure_time, arrival_time, departure_coords, arrival_coords);
+        END IF;
+    END
+$$;
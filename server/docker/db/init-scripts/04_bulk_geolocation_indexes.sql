@@ -0,0 +1,9 @@
+-- Индексы для пакетной геопривязки (UPDATE flights ... FROM regions WHERE ST_Within(...)).
+-- GiST по геометрии регионов и точкам полетов: PostGIS отбирает кандидатов по bounding box
+CREATE INDEX IF NOT EXISTS idx_regions_geometry ON regions USING GIST (geometry);
+CREATE INDEX IF NOT EXISTS idx_flights_departure_point ON flights USING GIST (departure_point);
+CREATE INDEX IF NOT EXISTS idx_flights_arrival_point ON flights USING GIST (arrival_point);
+
+-- Частичный индекс для поиска диапазона еще не привязанных полетов
+CREATE INDEX IF NOT EXISTS idx_flights_unassigned_region ON flights (flight_id)
+    WHERE departure_region_id IS NULL AND departure_point IS NOT NULL;
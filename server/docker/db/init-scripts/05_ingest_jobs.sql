@@ -0,0 +1,21 @@
+-- Фоновые задачи загрузки файлов с телеграммами (IngestJob)
+CREATE TABLE IF NOT EXISTS ingest_jobs
+(
+    job_id         BIGSERIAL PRIMARY KEY,
+    file_name      VARCHAR(255),
+    stored_path    VARCHAR(500), -- Копия загруженного файла, которую читает задача
+    status         VARCHAR(50) NOT NULL CHECK (status IN ('QUEUED', 'RUNNING', 'COMPLETED', 'FAILED', 'INTERRUPTED')),
+    rows_estimate  BIGINT,       -- Оценка количества строк по размеру листа
+    rows_read      BIGINT      NOT NULL DEFAULT 0,
+    rows_parsed    BIGINT      NOT NULL DEFAULT 0,
+    rows_persisted BIGINT      NOT NULL DEFAULT 0,
+    rows_failed    BIGINT      NOT NULL DEFAULT 0,
+    error_message  TEXT,
+    created_at     TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
+    started_at     TIMESTAMP WITH TIME ZONE,
+    finished_at    TIMESTAMP WITH TIME ZONE,
+    updated_at     TIMESTAMP WITH TIME ZONE DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_ingest_jobs_status ON ingest_jobs (status);
+CREATE INDEX IF NOT EXISTS idx_ingest_jobs_created_at ON ingest_jobs (created_at);
@@ -0,0 +1,7 @@
+-- Контрольные точки задач загрузки: хэш файла и последняя зафиксированная строка.
+-- Повторно загруженный или перезапущенный файл продолжает обработку после last_committed_row.
+ALTER TABLE ingest_jobs ADD COLUMN IF NOT EXISTS file_hash VARCHAR(64);
+ALTER TABLE ingest_jobs ADD COLUMN IF NOT EXISTS last_committed_row BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE ingest_jobs ADD COLUMN IF NOT EXISTS resumed_from_row BIGINT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_ingest_jobs_file_hash ON ingest_jobs (file_hash);
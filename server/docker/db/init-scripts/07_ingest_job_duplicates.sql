@@ -0,0 +1,2 @@
+-- Количество полетов, отсеянных при загрузке как дубликаты по uk_flight_composite_key
+ALTER TABLE ingest_jobs ADD COLUMN IF NOT EXISTS rows_duplicate BIGINT NOT NULL DEFAULT 0;
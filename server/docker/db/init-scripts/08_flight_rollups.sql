@@ -0,0 +1,25 @@
+-- Предагрегированные счетчики полетов для отчетов (FlightRollupService).
+-- Обновляются приращениями при записи полетов; при пустых таблицах пересчитываются из flights на старте приложения.
+CREATE TABLE IF NOT EXISTS flight_stats_daily_region
+(
+    flight_date  DATE   NOT NULL,
+    region_id    BIGINT NOT NULL REFERENCES regions (region_id) ON DELETE CASCADE,
+    flight_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (flight_date, region_id)
+);
+
+CREATE TABLE IF NOT EXISTS flight_stats_daily_drone_type
+(
+    flight_date  DATE         NOT NULL,
+    drone_type   VARCHAR(100) NOT NULL,
+    flight_count BIGINT       NOT NULL DEFAULT 0,
+    PRIMARY KEY (flight_date, drone_type)
+);
+
+CREATE TABLE IF NOT EXISTS flight_stats_hourly
+(
+    flight_date  DATE     NOT NULL,
+    hour         SMALLINT NOT NULL CHECK (hour BETWEEN -1 AND 23), -- -1: время вылета неизвестно
+    flight_count BIGINT   NOT NULL DEFAULT 0,
+    PRIMARY KEY (flight_date, hour)
+);
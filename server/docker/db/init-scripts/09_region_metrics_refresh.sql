@@ -0,0 +1,14 @@
+-- Дни, для которых нужно пересчитать region_metrics (RegionMetricsService).
+-- Отмечаются в той же транзакции, что и запись полетов с регионом вылета;
+-- задача по расписанию забирает их и пересчитывает дневные, месячные и годовые метрики затронутых периодов.
+CREATE TABLE IF NOT EXISTS region_metrics_dirty_days
+(
+    metric_date DATE PRIMARY KEY
+);
+
+-- Метрики удаляются вместе с регионом, как и счетчики flight_stats_daily_region
+ALTER TABLE region_metrics DROP CONSTRAINT IF EXISTS region_metrics_region_id_fkey;
+ALTER TABLE region_metrics
+    ADD CONSTRAINT region_metrics_region_id_fkey FOREIGN KEY (region_id) REFERENCES regions (region_id) ON DELETE CASCADE;
+
+CREATE INDEX IF NOT EXISTS idx_region_metrics_type_date ON region_metrics (metric_type, metric_date);
@@ -0,0 +1,8 @@
+-- Версии данных по датам полетов (FlightRollupService): счетчик увеличивается в той же транзакции,
+-- что и любое изменение полетов этой даты (вставка, удаление, геопривязка).
+-- Версия периода - сумма версий его дат; используется как часть ключа кэша графиков и отчетов.
+CREATE TABLE IF NOT EXISTS flight_data_versions
+(
+    flight_date DATE   PRIMARY KEY,
+    version     BIGINT NOT NULL DEFAULT 0
+);
@@ -0,0 +1,9 @@
+-- Версия данных периода (flight_data_versions), по которой построен отчет.
+-- Повторный запрос того же отчета за тот же период при неизменной версии
+-- возвращает сохраненный результат (parameters) без построения и новой записи в report_log.
+ALTER TABLE report_log
+    ADD COLUMN IF NOT EXISTS data_version BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_report_log_data_version
+    ON report_log (report_type, report_period_start, report_period_end, data_version)
+    WHERE status = 'COMPLETED';
@@ -0,0 +1,9 @@
+-- Индексы для списков полетов по курсору (/processing/flights, /by-date, /by-drone-type):
+-- порядок (flight_date, flight_id) по убыванию, следующая страница - строки после последней выданной.
+-- PostgreSQL читает индекс в обратном направлении и останавливается после size + 1 строк на любой глубине
+CREATE INDEX IF NOT EXISTS idx_flights_date_id ON flights (flight_date, flight_id);
+CREATE INDEX IF NOT EXISTS idx_flights_drone_type_date_id ON flights (drone_type, flight_date, flight_id);
+
+-- Одностолбцовые индексы покрываются составными как их префиксы
+DROP INDEX IF EXISTS idx_flights_date;
+DROP INDEX IF EXISTS idx_flights_drone_type;
@@ -0,0 +1,169 @@
+-- Секционирование flights по месяцам flight_date (FlightPartitionService).
+-- Запросы с условием на flight_date (отчеты, списки по периоду, метрики) читают только секции своих месяцев.
+--
+-- Ключи секционированной таблицы обязаны включать flight_date:
+--   * первичный ключ - (flight_id, flight_date); flight_id по-прежнему выдается последовательностью;
+--   * uk_flight_composite_key - (departure_time, arrival_time, departure_coords, arrival_coords, flight_date).
+--     Дубликаты с той же четверкой и другой датой отсеиваются при загрузке
+--     (FlightDeduplicator и NOT EXISTS в FlightCopyLoader), как и раньше.
+-- Внешний ключ report_flights.flight_id -> flights снят (на flights нет уникального ключа по flight_id):
+-- строки report_flights удаляются каскадом JPA при удалении полета и при архивировании секции.
+--
+-- Секции: flights_YYYY_MM и flights_default для месяцев, секции которых еще нет.
+-- Отсоединенные секции переносятся в схему flights_archive вместе с их сырыми телеграммами.
+
+CREATE SCHEMA IF NOT EXISTS flights_archive;
+
+-- Создает секцию месяца, если ее нет, и переносит в нее строки месяца из flights_default.
+-- Таблица создается отдельно и присоединяется через ATTACH PARTITION: CREATE TABLE ... PARTITION OF
+-- не выполнится, если в секции по умолчанию уже есть строки этого месяца
+CREATE OR REPLACE FUNCTION flights_ensure_partition(p_day DATE) RETURNS TEXT
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    v_from DATE := date_trunc('month', p_day)::DATE;
+    v_to   DATE := (date_trunc('month', p_day) + INTERVAL '1 month')::DATE;
+    v_name TEXT := 'flights_' || to_char(p_day, 'YYYY_MM');
+BEGIN
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN v_name;
+    END IF;
+    -- Параллельные загрузки создают секции по очереди
+    PERFORM pg_advisory_xact_lock(hashtext('flights_ensure_partition'));
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN v_name;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE flights INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', v_name);
+    -- CHECK по границам секции: ATTACH не сканирует таблицу для проверки строк
+    EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (flight_date >= %L AND flight_date < %L)',
+                   v_name, v_name || '_range', v_from, v_to);
+    IF to_regclass('flights_default') IS NOT NULL THEN
+        EXECUTE format('WITH moved AS (DELETE FROM flights_default WHERE flight_date >= %L AND flight_date < %L '
+                           || 'RETURNING *) INSERT INTO %I SELECT * FROM moved', v_from, v_to, v_name);
+    END IF;
+    EXECUTE format('ALTER TABLE flights ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', v_name, v_from, v_to);
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', v_name, v_name || '_range');
+    RETURN v_name;
+END;
+$$;
+
+-- Отсоединяет секцию месяца и переносит ее в flights_archive вместе с сырыми телеграммами ее полетов
+-- (flights_archive.raw_telegrams_YYYY_MM). Ссылки отчетов на полеты секции удаляются.
+-- Возвращает количество полетов в секции
+CREATE OR REPLACE FUNCTION flights_archive_partition(p_name TEXT) RETURNS BIGINT
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    v_rows BIGINT;
+    v_fk   TEXT;
+BEGIN
+    IF p_name !~ '^flights_[0-9]{4}_[0-9]{2}$' THEN
+        RAISE EXCEPTION 'Не секция месяца: %', p_name;
+    END IF;
+
+    EXECUTE format('ALTER TABLE flights DETACH PARTITION %I', p_name);
+    EXECUTE format('SELECT COUNT(*) FROM %I', p_name) INTO v_rows;
+
+    -- Унаследованные внешние ключи остаются на отсоединенной таблице и не дали бы удалить телеграммы
+    FOR v_fk IN SELECT conname FROM pg_constraint WHERE conrelid = p_name::REGCLASS AND contype = 'f'
+        LOOP
+            EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', p_name, v_fk);
+        END LOOP;
+
+    EXECUTE format('DELETE FROM report_flights rf USING %I f WHERE rf.flight_id = f.flight_id', p_name);
+    EXECUTE format('CREATE TABLE flights_archive.%I AS '
+                       || 'SELECT r.* FROM raw_telegrams r WHERE r.id IN (SELECT raw_id FROM %I)',
+                   'raw_telegrams_' || substr(p_name, 9), p_name);
+    EXECUTE format('DELETE FROM raw_telegrams r USING %I f WHERE r.id = f.raw_id '
+                       || 'AND NOT EXISTS (SELECT 1 FROM flights o WHERE o.raw_id = r.id)', p_name);
+    EXECUTE format('ALTER TABLE %I SET SCHEMA flights_archive', p_name);
+    RETURN v_rows;
+END;
+$$;
+
+-- Перевод существующей таблицы: данные переносятся в секции своих месяцев.
+-- Индексы создаются после переноса, на родительской таблице - PostgreSQL строит их в каждой секции
+DO
+$$
+    DECLARE
+        v_month DATE;
+    BEGIN
+        IF (SELECT relkind FROM pg_class WHERE oid = 'flights'::REGCLASS) = 'p' THEN
+            RETURN;
+        END IF;
+
+        ALTER TABLE report_flights DROP CONSTRAINT IF EXISTS report_flights_flight_id_fkey;
+        -- Последовательность принадлежит старой таблице и удалилась бы вместе с ней
+        ALTER SEQUENCE flights_flight_id_seq OWNED BY NONE;
+        ALTER TABLE flights RENAME TO flights_unpartitioned;
+
+        CREATE TABLE flights
+        (
+            flight_id           BIGINT NOT NULL DEFAULT nextval('flights_flight_id_seq'),
+            drone_id            INT,
+            raw_id              BIGINT,
+            flight_code         VARCHAR(100),
+            drone_type          VARCHAR(100),
+            drone_registration  VARCHAR(100),
+            flight_date         DATE   NOT NULL,
+            departure_time      TIME,
+            arrival_time        TIME,
+            duration_minutes    INTEGER,
+            departure_coords    VARCHAR(100),
+            arrival_coords      VARCHAR(100),
+            processing_status   VARCHAR(50),
+            departure_point     GEOMETRY(Point, 4326),
+            arrival_point       GEOMETRY(Point, 4326),
+            departure_region_id BIGINT,
+            arrival_region_id   BIGINT,
+            created_at          TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
+            updated_at          TIMESTAMP WITH TIME ZONE DEFAULT NOW()
+        ) PARTITION BY RANGE (flight_date);
+
+        CREATE TABLE flights_default PARTITION OF flights DEFAULT;
+
+        FOR v_month IN SELECT DISTINCT date_trunc('month', flight_date)::DATE FROM flights_unpartitioned ORDER BY 1
+            LOOP
+                PERFORM flights_ensure_partition(v_month);
+            END LOOP;
+
+        INSERT INTO flights (flight_id, drone_id, raw_id, flight_code, drone_type, drone_registration, flight_date,
+                             departure_time, arrival_time, duration_minutes, departure_coords, arrival_coords,
+                             processing_status, departure_point, arrival_point, departure_region_id,
+                             arrival_region_id, created_at, updated_at)
+        SELECT flight_id, drone_id, raw_id, flight_code, drone_type, drone_registration, flight_date,
+               departure_time, arrival_time, duration_minutes, departure_coords, arrival_coords,
+               processing_status, departure_point, arrival_point, departure_region_id,
+               arrival_region_id, created_at, updated_at
+        FROM flights_unpartitioned;
+
+        DROP TABLE flights_unpartitioned;
+        ALTER SEQUENCE flights_flight_id_seq OWNED BY flights.flight_id;
+
+        ALTER TABLE flights
+            ADD CONSTRAINT flights_pkey PRIMARY KEY (flight_id, flight_date),
+            ADD CONSTRAINT uk_flight_composite_key
+                UNIQUE (departure_time, arrival_time, departure_coords, arrival_coords, flight_date),
+            ADD CONSTRAINT flights_raw_id_fkey FOREIGN KEY (raw_id) REFERENCES raw_telegrams (id),
+            ADD CONSTRAINT flights_departure_region_id_fkey
+                FOREIGN KEY (departure_region_id) REFERENCES regions (region_id),
+            ADD CONSTRAINT flights_arrival_region_id_fkey
+                FOREIGN KEY (arrival_region_id) REFERENCES regions (region_id);
+    END
+$$;
+
+CREATE INDEX IF NOT EXISTS idx_flights_departure_point ON flights USING GIST (departure_point);
+CREATE INDEX IF NOT EXISTS idx_flights_arrival_point ON flights USING GIST (arrival_point);
+CREATE INDEX IF NOT EXISTS idx_flights_departure_region ON flights (departure_region_id);
+CREATE INDEX IF NOT EXISTS idx_flights_arrival_region ON flights (arrival_region_id);
+CREATE INDEX IF NOT EXISTS idx_flights_date_id ON flights (flight_date, flight_id);
+CREATE INDEX IF NOT EXISTS idx_flights_drone_type_date_id ON flights (drone_type, flight_date, flight_id);
+CREATE INDEX IF NOT EXISTS idx_flights_unassigned_region ON flights (flight_id)
+    WHERE departure_region_id IS NULL AND departure_point IS NOT NULL;
+-- Проверка внешнего ключа при удалении телеграмм (архивирование секций)
+CREATE INDEX IF NOT EXISTS idx_flights_raw_id ON flights (raw_id);
+
+-- Секции для текущего и следующих месяцев; дальше их создает FlightPartitionService
+SELECT flights_ensure_partition((date_trunc('month', CURRENT_DATE) + make_interval(months => m))::DATE)
+FROM generate_series(0, 3) AS m;
@@ -0,0 +1,10 @@
+-- Поколение справочника регионов (FlightRollupService): увеличивается при каждой загрузке регионов.
+-- Входит в ключ кэша графиков: названия регионов на круговой диаграмме устаревают вместе с ним,
+-- а после перезапуска сервера поколение не начинается заново.
+CREATE TABLE IF NOT EXISTS regions_generation
+(
+    id         SMALLINT PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+    generation BIGINT   NOT NULL DEFAULT 0
+);
+
+INSERT INTO regions_generation (id, generation) VALUES (1, 0) ON CONFLICT DO NOTHING;
@@ -1,11 +1,15 @@
 package com.drones.skilldrones.controller;
 
 import com.drones.skilldrones.dto.response.FlightResponse;
+import com.drones.skilldrones.dto.response.SliceResponse;
 import com.drones.skilldrones.model.Flight;
-import com.drones.skilldrones.model.RawTelegram;
+import com.drones.skilldrones.service.BulkGeolocationService;
 import com.drones.skilldrones.service.FileParserService;
+import com.drones.skilldrones.service.FlightExportService;
+import com.drones.skilldrones.service.FlightPartitionService;
 import com.drones.skilldrones.service.FlightProcessingService;
 import com.drones.skilldrones.service.FlightService;
+import com.drones.skilldrones.service.IngestProgress;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -13,19 +17,24 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 @RequestMapping("/processing")
@@ -34,17 +43,26 @@ public class FlightProcessingController {
     private final FileParserService fileParserService;
     private final FlightProcessingService flightProcessingService;
     private final FlightService<Flight> flightService;
+    private final BulkGeolocationService bulkGeolocationService;
+    private final FlightExportService flightExportService;
+    private final FlightPartitionService flightPartitionService;
 
     public FlightProcessingController(FileParserService fileParserService,
-                                      FlightProcessingService flightProcessingService, FlightService<Flight> flightService) {
+                                      FlightProcessingService flightProcessingService, FlightService<Flight> flightService,
+                                      BulkGeolocationService bulkGeolocationService,
+                                      FlightExportService flightExportService,
+                                      FlightPartitionService flightPartitionService) {
         this.fileParserService = fileParserService;
         this.flightProcessingService = flightProcessingService;
         this.flightService = flightService;
+        this.bulkGeolocationService = bulkGeolocationService;
+        this.flightExportService = flightExportService;
+        this.flightPartitionService = flightPartitionService;
     }
 
     @Operation(
             summary = "Обработка файла с полетами",
-            description = "Загружает Excel файл с телеграммами полетов, парсит данные и сохраняет в базу данных"
+            description = "Загружает Excel (xlsx) или CSV файл с телеграммами полетов, парсит данные и сохраняет в базу данных"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -61,28 +79,31 @@ public class FlightProcessingController {
     @PostMapping(value = "/process-file", consumes = "multipart/form-data")
     public ResponseEntity<Map<String, Object>> processFlightFile(
             @Parameter(
-                    description = "Excel файл с данными полетов в формате телеграмм",
+                    description = "Excel (xlsx) или CSV файл с данными полетов в формате телеграмм",
                     required = true,
                     content = @Content(mediaType = "multipart/form-data")
             )
             @RequestParam("file") MultipartFile file) {
 
         try {
-            // 1. Парсим Excel файл
-            List<RawTelegram> telegrams = fileParserService.parseExcelFile(file);
-
-            // 2. Обрабатываем телеграммы в полеты
-            int processedFlights = flightProcessingService.processBatch(telegrams);
+            // 1-2. Потоково читаем файл (xlsx или csv) и передаем телеграммы в конвейер обработки
+            AtomicInteger total = new AtomicInteger();
+            IngestProgress progress = new IngestProgress();
+            int processedFlights = flightProcessingService.processTelegrams(sink ->
+                    total.set(fileParserService.parseExcelFileInBatches(file, batch -> batch.forEach(sink))), progress);
+            int totalRecords = total.get();
+            long duplicates = progress.getRowsDuplicate();
 
             // 3. Возвращаем результат с детальной статистикой
             return ResponseEntity.ok(Map.of(
                     "message", "Файл успешно обработан",
-                    "totalRecords", telegrams.size(),
-                    "rawTelegrams", telegrams.size(),
+                    "totalRecords", totalRecords,
+                    "rawTelegrams", totalRecords,
                     "flightsCreated", processedFlights,
                     "processedSuccessfully", processedFlights,
-                    "failed", telegrams.size() - processedFlights,
-                    "successRate", String.format("%.2f%%", (double) processedFlights / telegrams.size() * 100)
+                    "duplicatesDropped", duplicates,
+                    "failed", totalRecords - processedFlights - duplicates,
+                    "successRate", String.format("%.2f%%", (double) processedFlights / totalRecords * 100)
             ));
 
         } catch (Exception e) {
@@ -120,20 +141,55 @@ public class FlightProcessingController {
         }
     }
 
+    @Operation(
+            summary = "Пакетная геопривязка рейсов",
+            description = "Назначает регионы вылета и прилета всем рейсам без региона одним UPDATE в PostGIS " +
+                    "(диапазонами flight_id). Используется после больших загрузок в режиме app.ingest.geolocation=post-load"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Геопривязка выполнена"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Ошибка геопривязки"
+            )
+    })
+    @PostMapping("/geolocate")
+    public ResponseEntity<Map<String, Object>> geolocateFlights() {
+        try {
+            int updated = bulkGeolocationService.geolocateUnassigned();
+            return ResponseEntity.ok(Map.of(
+                    "message", "Геопривязка выполнена",
+                    "geolocatedFlights", updated
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Ошибка геопривязки: " + e.getMessage()));
+        }
+    }
+
     @Operation(
             summary = "Получить все рейсы",
-            description = "Возвращает список всех обработанных рейсов с пагинацией"
+            description = "Возвращает рейсы страницами без подсчета общего количества. При сортировке по умолчанию " +
+                    "(flightDate desc) ответ содержит nextCursor: передайте его в cursor, чтобы получить следующую " +
+                    "страницу по ключу - время ответа не зависит от глубины, в отличие от page"
     )
     @ApiResponses(value = {
             @ApiResponse(
                     responseCode = "200",
                     description = "Рейсы успешно получены",
-                    content = @Content(schema = @Schema(implementation = FlightResponse.class))
+                    content = @Content(schema = @Schema(implementation = SliceResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Неверная сортировка или курсор"
             )
     })
     @GetMapping("/flights")
-    public ResponseEntity<Page<Flight>> getAllFlights(
-            @Parameter(description = "Номер страницы (начиная с 0)", example = "0")
+    public ResponseEntity<SliceResponse<FlightResponse>> getAllFlights(
+            @Parameter(description = "Номер страницы (начиная с 0), если не задан cursor", example = "0")
             @RequestParam(defaultValue = "0") int page,
 
             @Parameter(description = "Размер страницы", example = "20")
@@ -143,21 +199,93 @@ public class FlightProcessingController {
             @RequestParam(defaultValue = "flightDate") String sortBy,
 
             @Parameter(description = "Направление сортировки", example = "desc")
-            @RequestParam(defaultValue = "desc") String direction) {
+            @RequestParam(defaultValue = "desc") String direction,
+
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)",
+                    example = "2024-05-01_123456")
+            @RequestParam(required = false) String cursor) {
 
         try {
-            Sort sort = direction.equalsIgnoreCase("asc") ?
-                    Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+            Sort.Direction sortDirection = direction.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
+            Sort sort = Sort.by(sortDirection, sortBy);
+            // flightId делает порядок однозначным: строки с равным ключом не теряются между страницами
+            if (!"flightId".equals(sortBy)) {
+                sort = sort.and(Sort.by(sortDirection, "flightId"));
+            }
             Pageable pageable = PageRequest.of(page, size, sort);
 
-            Page<Flight> flights = flightService.getAllFlights(pageable);
-            return ResponseEntity.ok(flights);
+            return ResponseEntity.ok(flightService.getAllFlights(pageable, cursor));
 
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @Operation(
+            summary = "Выгрузка рейсов",
+            description = "Потоково выгружает рейсы в NDJSON (строка JSON на рейс) или CSV по возрастанию flightId, " +
+                    "с периодом - по возрастанию (flightDate, flightId). " +
+                    "Рейсы читаются страницами после последнего выгруженного рейса, без OFFSET и подсчета; " +
+                    "прерванную выгрузку можно продолжить, передав последний полученный flightId в afterId, " +
+                    "а с периодом - еще и его flightDate в afterDate"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Выгрузка начата",
+                    content = {
+                            @Content(mediaType = "application/x-ndjson",
+                                    schema = @Schema(implementation = FlightResponse.class)),
+                            @Content(mediaType = "text/csv")
+                    }
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Неверный формат или период"
+            )
+    })
+    @GetMapping("/flights/export")
+    public ResponseEntity<StreamingResponseBody> exportFlights(
+            @Parameter(description = "Формат выгрузки", example = "ndjson",
+                    schema = @Schema(allowableValues = {"ndjson", "csv"}))
+            @RequestParam(defaultValue = "ndjson") String format,
+
+            @Parameter(description = "Дата начала периода (YYYY-MM-DD), вместе с endDate", example = "2024-01-01")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+
+            @Parameter(description = "Дата окончания периода (YYYY-MM-DD), вместе с startDate", example = "2024-01-31")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+
+            @Parameter(description = "Выгружать рейсы после рейса с этим flightId", example = "0")
+            @RequestParam(defaultValue = "0") long afterId,
+
+            @Parameter(description = "С периодом: flightDate рейса afterId (YYYY-MM-DD)", example = "2024-01-15")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate afterDate) {
+
+        FlightExportService.Format exportFormat;
+        try {
+            exportFormat = FlightExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if ((startDate == null) != (endDate == null) || (startDate != null && startDate.isAfter(endDate))) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Порядок с периодом - (flightDate, flightId): без даты позиция afterId не определена
+        if (startDate != null && afterId > 0 && afterDate == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        boolean csv = exportFormat == FlightExportService.Format.CSV;
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"flights." + (csv ? "csv" : "ndjson") + "\"")
+                .body(out -> flightExportService.export(exportFormat, startDate, endDate,
+                        startDate != null ? afterDate : null, afterId, out));
+    }
+
     @Operation(
             summary = "Получить рейс по ID",
             description = "Возвращает информацию о конкретном рейсе по его идентификатору"
@@ -190,32 +318,37 @@ public class FlightProcessingController {
 
     @Operation(
             summary = "Поиск рейсов по дате",
-            description = "Возвращает рейсы за указанный период"
+            description = "Возвращает рейсы за указанный период страницами без подсчета общего количества; " +
+                    "для следующей страницы передайте nextCursor из ответа в cursor"
     )
     @ApiResponses(value = {
             @ApiResponse(
                     responseCode = "200",
-                    description = "Рейсы успешно получены"
+                    description = "Рейсы успешно получены",
+                    content = @Content(schema = @Schema(implementation = SliceResponse.class))
             )
     })
     @GetMapping("/flights/by-date")
-    public ResponseEntity<Page<Flight>> getFlightsByDateRange(
+    public ResponseEntity<SliceResponse<FlightResponse>> getFlightsByDateRange(
             @Parameter(description = "Дата начала периода (YYYY-MM-DD)", required = true, example = "2024-01-01")
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
 
             @Parameter(description = "Дата окончания периода (YYYY-MM-DD)", required = true, example = "2024-12-31")
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
 
-            @Parameter(description = "Номер страницы", example = "0")
+            @Parameter(description = "Номер страницы, если не задан cursor", example = "0")
             @RequestParam(defaultValue = "0") int page,
 
             @Parameter(description = "Размер страницы", example = "20")
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)",
+                    example = "2024-05-01_123456")
+            @RequestParam(required = false) String cursor) {
 
         try {
-            Pageable pageable = PageRequest.of(page, size, Sort.by("flightDate").descending());
-            Page<Flight> flights = flightService.getFlightsByDateRange(startDate, endDate, pageable);
-            return ResponseEntity.ok(flights);
+            Pageable pageable = PageRequest.of(page, size, FlightService.KEYSET_SORT);
+            return ResponseEntity.ok(flightService.getFlightsByDateRange(startDate, endDate, pageable, cursor));
 
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -224,23 +357,27 @@ public class FlightProcessingController {
 
     @Operation(
             summary = "Поиск рейсов по типу дрона",
-            description = "Возвращает рейсы для указанного типа дрона"
+            description = "Возвращает рейсы для указанного типа дрона страницами без подсчета общего количества; " +
+                    "для следующей страницы передайте nextCursor из ответа в cursor"
     )
     @GetMapping("/flights/by-drone-type")
-    public ResponseEntity<Page<Flight>> getFlightsByDroneType(
+    public ResponseEntity<SliceResponse<FlightResponse>> getFlightsByDroneType(
             @Parameter(description = "Тип дрона", required = true, example = "BLA")
             @RequestParam String droneType,
 
-            @Parameter(description = "Номер страницы", example = "0")
+            @Parameter(description = "Номер страницы, если не задан cursor", example = "0")
             @RequestParam(defaultValue = "0") int page,
 
             @Parameter(description = "Размер страницы", example = "20")
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)",
+                    example = "2024-05-01_123456")
+            @RequestParam(required = false) String cursor) {
 
         try {
-            Pageable pageable = PageRequest.of(page, size, Sort.by("flightDate").descending());
-            Page<Flight> flights = flightService.getFlightsByDroneType(droneType, pageable);
-            return ResponseEntity.ok(flights);
+            Pageable pageable = PageRequest.of(page, size, FlightService.KEYSET_SORT);
+            return ResponseEntity.ok(flightService.getFlightsByDroneType(droneType, pageable, cursor));
 
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -295,6 +432,63 @@ public class FlightProcessingController {
                     .body(Map.of("error", "Ошибка удаления рейса: " + e.getMessage()));
         }
     }
+
+    @Operation(
+            summary = "Секции таблицы рейсов",
+            description = "Помесячные секции flights с оценкой количества строк и размером; " +
+                    "flights_default содержит рейсы месяцев, для которых секция еще не создана"
+    )
+    @GetMapping("/flights/partitions")
+    public ResponseEntity<List<FlightPartitionService.PartitionInfo>> getFlightPartitions() {
+        try {
+            return ResponseEntity.ok(flightPartitionService.listPartitions());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Operation(
+            summary = "Архивирование старых рейсов",
+            description = "Отсоединяет секции месяцев до указанной даты и переносит их в схему flights_archive " +
+                    "вместе с сырыми телеграммами. Рейсы этих месяцев исключаются из отчетов и метрик, " +
+                    "ссылки отчетов на них удаляются"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Секции перенесены в архив"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Дата позже текущего месяца"
+            ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "Таблица рейсов не секционирована"
+            )
+    })
+    @PostMapping("/flights/partitions/archive")
+    public ResponseEntity<Map<String, Object>> archiveFlightPartitions(
+            @Parameter(description = "Архивировать месяцы, предшествующие месяцу этой даты (YYYY-MM-DD)",
+                    required = true, example = "2023-01-01")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate before) {
+
+        try {
+            Map<String, Long> archived = flightPartitionService.archiveBefore(before);
+            return ResponseEntity.ok(Map.of(
+                    "archivedPartitions", archived,
+                    "archivedFlights", archived.values().stream().mapToLong(Long::longValue).sum()
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Ошибка архивирования: " + e.getMessage()));
+        }
+    }
+
     // Схемы для Swagger документации
     @Schema(description = "Результат обработки файла")
     public static class ProcessingResult {
@@ -307,6 +501,9 @@ public class FlightProcessingController {
         @Schema(description = "Успешно обработано", example = "145")
         public Integer processedSuccessfully;
 
+        @Schema(description = "Отсеяно дубликатов уже сохраненных полетов", example = "3")
+        public Long duplicatesDropped;
+
         @Schema(description = "Не удалось обработать", example = "5")
         public Integer failed;
 
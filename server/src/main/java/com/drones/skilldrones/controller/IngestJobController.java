@@ -0,0 +1,144 @@
+package com.drones.skilldrones.controller;
+
+import com.drones.skilldrones.dto.response.IngestJobResponse;
+import com.drones.skilldrones.service.IngestJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/processing/jobs")
+@Tag(name = "Фоновая загрузка полетов", description = "API асинхронной загрузки файлов с телеграммами и отслеживания прогресса")
+public class IngestJobController {
+    private final IngestJobService ingestJobService;
+
+    public IngestJobController(IngestJobService ingestJobService) {
+        this.ingestJobService = ingestJobService;
+    }
+
+    @Operation(
+            summary = "Поставить файл в очередь на загрузку",
+            description = "Сохраняет Excel (xlsx) или CSV файл с телеграммами и сразу возвращает ID задачи. " +
+                    "Обработка выполняется в фоне, прогресс доступен по /processing/jobs/{jobId}. " +
+                    "Повторная загрузка того же файла продолжает незавершенную задачу после последней " +
+                    "сохраненной строки; уже загруженный файл повторно не обрабатывается"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Файл уже загружен или загружается"),
+            @ApiResponse(responseCode = "202", description = "Задача поставлена в очередь"),
+            @ApiResponse(responseCode = "400", description = "Ошибка сохранения файла"),
+            @ApiResponse(responseCode = "503", description = "Очередь задач загрузки переполнена")
+    })
+    @PostMapping(consumes = "multipart/form-data")
+    public ResponseEntity<Map<String, Object>> submitJob(
+            @Parameter(
+                    description = "Excel (xlsx) или CSV файл с данными полетов в формате телеграмм",
+                    required = true,
+                    content = @Content(mediaType = "multipart/form-data")
+            )
+            @RequestParam("file") MultipartFile file) {
+
+        try {
+            IngestJobResponse job = ingestJobService.submit(file);
+            if (!"QUEUED".equals(job.status())) {
+                return ResponseEntity.ok(jobBody(job, "COMPLETED".equals(job.status())
+                        ? "Файл уже загружен ранее"
+                        : "Файл уже обрабатывается"));
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobBody(job, job.lastCommittedRow() > 0
+                    ? "Загрузка файла продолжена после строки " + job.lastCommittedRow()
+                    : "Файл принят в обработку"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of(
+                            "error", "Ошибка постановки файла в очередь",
+                            "details", e.getMessage()
+                    ));
+        }
+    }
+
+    @Operation(
+            summary = "Продолжить задачу загрузки",
+            description = "Ставит прерванную или завершившуюся ошибкой задачу в очередь. " +
+                    "Строки до контрольной точки (lastCommittedRow) повторно не обрабатываются"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Задача поставлена в очередь"),
+            @ApiResponse(responseCode = "404", description = "Задача не найдена"),
+            @ApiResponse(responseCode = "409", description = "Задачу нельзя продолжить"),
+            @ApiResponse(responseCode = "503", description = "Очередь задач загрузки переполнена")
+    })
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<Map<String, Object>> resumeJob(
+            @Parameter(description = "ID задачи", required = true, example = "1")
+            @PathVariable Long jobId) {
+
+        try {
+            return ingestJobService.resume(jobId)
+                    .map(job -> ResponseEntity.status(HttpStatus.ACCEPTED).body(jobBody(job,
+                            "Загрузка продолжена после строки " + job.lastCommittedRow())))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "Состояние задачи загрузки",
+            description = "Возвращает статус, счетчики строк (прочитано, разобрано, сохранено, с ошибками), " +
+                    "скорость и оценку оставшегося времени"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Состояние задачи получено",
+                    content = @Content(schema = @Schema(implementation = IngestJobResponse.class))
+            ),
+            @ApiResponse(responseCode = "404", description = "Задача не найдена")
+    })
+    @GetMapping("/{jobId}")
+    public ResponseEntity<IngestJobResponse> getJob(
+            @Parameter(description = "ID задачи", required = true, example = "1")
+            @PathVariable Long jobId) {
+        return ingestJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @Operation(
+            summary = "Последние задачи загрузки",
+            description = "Возвращает до 50 последних задач загрузки, новые сначала"
+    )
+    @GetMapping
+    public ResponseEntity<List<IngestJobResponse>> getRecentJobs() {
+        return ResponseEntity.ok(ingestJobService.getRecentJobs());
+    }
+
+    private static Map<String, Object> jobBody(IngestJobResponse job, String message) {
+        return Map.of(
+                "message", message,
+                "jobId", job.jobId(),
+                "status", job.status(),
+                "lastCommittedRow", job.lastCommittedRow(),
+                "statusUrl", "/processing/jobs/" + job.jobId()
+        );
+    }
+}
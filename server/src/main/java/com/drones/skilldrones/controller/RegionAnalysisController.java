@@ -2,8 +2,7 @@ package com.drones.skilldrones.controller;
 
 import com.drones.skilldrones.dto.ParsedFlightData;
 import com.drones.skilldrones.dto.response.RegionResponse;
-import com.drones.skilldrones.model.Region;
-import com.drones.skilldrones.repository.RegionRepository;
+import com.drones.skilldrones.dto.response.metrics.RegionMetricsResponse;
 import com.drones.skilldrones.service.*;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,8 +10,12 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDate;
@@ -30,16 +33,19 @@ public class RegionAnalysisController {
     private final ReportService reportService;
     private final ShapefileService shapefileService;
     private final GeoJsonService geoJsonService;
-    private final RegionRepository regionRepository;
+    private final RegionMetricsService regionMetricsService;
+    private final RegionCatalog regionCatalog;
 
     public RegionAnalysisController(FileParserService fileParserService,
-                                    RegionAnalysisService regionAnalysisService, ReportService reportService, ShapefileService shapefileService, GeoJsonService geoJsonService, RegionRepository regionRepository) {
+                                    RegionAnalysisService regionAnalysisService, ReportService reportService, ShapefileService shapefileService, GeoJsonService geoJsonService,
+                                    RegionMetricsService regionMetricsService, RegionCatalog regionCatalog) {
         this.fileParserService = fileParserService;
         this.regionAnalysisService = regionAnalysisService;
         this.reportService = reportService;
         this.shapefileService = shapefileService;
         this.geoJsonService = geoJsonService;
-        this.regionRepository = regionRepository;
+        this.regionMetricsService = regionMetricsService;
+        this.regionCatalog = regionCatalog;
     }
 
     @Operation(summary = "Загрузка данных регионов из шейп-файла")
@@ -150,6 +156,84 @@ public class RegionAnalysisController {
 
 
 
+    @Operation(summary = "Метрики региона",
+            description = "Предрассчитанные метрики региона (число полетов, средняя длительность, пиковая часовая нагрузка, " +
+                    "плотность на 1000 км², дни без полетов, рост к предыдущему периоду) за периоды в указанном диапазоне")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Метрики получены"),
+            @ApiResponse(responseCode = "400", description = "Неверный тип метрик или ошибка получения данных")
+    })
+    @GetMapping("/regions/{regionId}/metrics")
+    public ResponseEntity<?> getRegionMetrics(
+            @Parameter(description = "ID региона", required = true, example = "1")
+            @PathVariable Long regionId,
+
+            @Parameter(description = "Тип периода: DAILY, MONTHLY, YEARLY", example = "MONTHLY")
+            @RequestParam(defaultValue = "MONTHLY") String metricType,
+
+            @Parameter(description = "Дата начала периода (YYYY-MM-DD)", required = true, example = "2024-01-01")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+
+            @Parameter(description = "Дата окончания периода (YYYY-MM-DD)", required = true, example = "2024-12-31")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        try {
+            List<RegionMetricsResponse> metrics = regionMetricsService.getRegionMetrics(
+                    regionId, RegionMetricsService.MetricType.valueOf(metricType.toUpperCase()), startDate, endDate);
+            return ResponseEntity.ok(metrics);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Ошибка получения метрик региона: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Метрики всех регионов за период",
+            description = "Предрассчитанные метрики всех регионов за день, месяц или год, содержащий указанную дату, " +
+                    "по убыванию числа полетов")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Метрики получены"),
+            @ApiResponse(responseCode = "400", description = "Неверный тип метрик или ошибка получения данных")
+    })
+    @GetMapping("/regions/metrics")
+    public ResponseEntity<?> getMetricsForPeriod(
+            @Parameter(description = "Тип периода: DAILY, MONTHLY, YEARLY", example = "MONTHLY")
+            @RequestParam(defaultValue = "MONTHLY") String metricType,
+
+            @Parameter(description = "Любая дата внутри периода (YYYY-MM-DD)", required = true, example = "2024-01-01")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+
+        try {
+            List<RegionMetricsResponse> metrics = regionMetricsService.getMetricsForPeriod(
+                    RegionMetricsService.MetricType.valueOf(metricType.toUpperCase()), date);
+            return ResponseEntity.ok(metrics);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Ошибка получения метрик регионов: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Пересчет метрик регионов",
+            description = "Сразу пересчитывает метрики за дни, затронутые загрузками. Обычно выполняется по расписанию")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Метрики пересчитаны"),
+            @ApiResponse(responseCode = "400", description = "Ошибка пересчета")
+    })
+    @PostMapping("/regions/metrics/refresh")
+    public ResponseEntity<Map<String, Object>> refreshRegionMetrics() {
+        try {
+            long start = System.currentTimeMillis();
+            int days = regionMetricsService.refresh();
+            return ResponseEntity.ok(Map.of(
+                    "message", "Метрики регионов пересчитаны",
+                    "daysRecalculated", days,
+                    "durationMs", System.currentTimeMillis() - start
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Ошибка пересчета метрик регионов: " + e.getMessage()));
+        }
+    }
+
     @PostMapping("/upload/geojson")
     public ResponseEntity<String> uploadGeoJson(@RequestParam("file") MultipartFile file) {
         try {
@@ -161,13 +245,87 @@ public class RegionAnalysisController {
     }
 
     @GetMapping("/regions")
-    @Operation(summary = "Получить все регионы", description = "Возвращает список всех регионов с их данными для анализа")
+    @Operation(summary = "Получить все регионы",
+            description = "Возвращает список регионов: id, название, площадь и границы в GeoJSON с выбранной детализацией. " +
+                    "Ответ для каждой детализации строится один раз и отдается из кэша (с gzip, если клиент его принимает) " +
+                    "до следующей загрузки регионов")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Успешный запрос, возвращен список регионов"),
+            @ApiResponse(responseCode = "304", description = "Список регионов не изменился"),
+            @ApiResponse(responseCode = "400", description = "Неизвестный уровень детализации"),
             @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера")
     })
-    public List<Region> getAllRegions() {
-        return regionRepository.findAll();
+    public ResponseEntity<byte[]> getAllRegions(
+            @Parameter(description = "Детализация границ: NONE (без границ), LOW (~5 км), MEDIUM (~1 км), " +
+                    "HIGH (~100 м), FULL (исходные)", example = "MEDIUM")
+            @RequestParam(defaultValue = "MEDIUM") String lod,
+
+            @Parameter(hidden = true)
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+
+            WebRequest webRequest) {
+
+        RegionCatalog.Lod level;
+        try {
+            level = RegionCatalog.Lod.valueOf(lod.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        RegionCatalog.Serialized regions = regionCatalog.get(level);
+        // У каждого представления свой ETag: валидатор gzip-ответа не совпадет с байтами несжатого
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = gzip ? regions.gzipEtag() : regions.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            // Сжатие сервера (server.compression) ответы с Content-Encoding не трогает
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(regions.gzipped());
+        }
+        return response.body(regions.json());
+    }
+
+    /**
+     * Принимает ли клиент gzip по Accept-Encoding (RFC 9110): gzip или x-gzip, иначе "*",
+     * с q больше 0; "gzip;q=0" - явный отказ
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzipQuality = null;
+        Double anyQuality = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzipQuality = gzipQuality == null ? quality : Math.max(gzipQuality, quality);
+            } else if (coding.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+        if (gzipQuality != null) {
+            return gzipQuality > 0;
+        }
+        return anyQuality != null && anyQuality > 0;
     }
 }
 
@@ -1,6 +1,11 @@
 package com.drones.skilldrones.controller;
 import com.drones.skilldrones.dto.response.FlightResponse;
 import com.drones.skilldrones.dto.response.ReportResponse;
+import com.drones.skilldrones.dto.response.metrics.FlightStatsResponse;
+import com.drones.skilldrones.service.ChartCache;
+import com.drones.skilldrones.service.ChartRenderer;
+import com.drones.skilldrones.service.FlightRollupService;
+import com.drones.skilldrones.service.MetricsService;
 import com.drones.skilldrones.service.ReportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -10,14 +15,17 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -28,9 +36,16 @@ import java.util.Optional;
 @Tag(name = "Отчеты и аналитика", description = "API для генерации отчетов и аналитики по полетам БПЛА")
 public class ReportController {
     private final ReportService reportService;
+    private final FlightRollupService flightRollupService;
+    private final MetricsService metricsService;
+    private final ChartRenderer chartRenderer;
 
-    public ReportController(ReportService reportService) {
+    public ReportController(ReportService reportService, FlightRollupService flightRollupService,
+                            MetricsService metricsService, ChartRenderer chartRenderer) {
         this.reportService = reportService;
+        this.flightRollupService = flightRollupService;
+        this.metricsService = metricsService;
+        this.chartRenderer = chartRenderer;
     }
 
     @Operation(
@@ -69,7 +84,8 @@ public class ReportController {
 
     @Operation(
             summary = "Комплексный отчет",
-            description = "Генерирует комплексный отчет с различными метриками и статистикой полетов"
+            description = "Генерирует комплексный отчет с различными метриками и статистикой полетов. " +
+                    "Пока полеты за период не менялись, повторный запрос возвращает сохраненный результат"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -101,7 +117,8 @@ public class ReportController {
 
     @Operation(
             summary = "Отчет по топ регионам",
-            description = "Генерирует отчет с топ-10 регионов по количеству полетов"
+            description = "Генерирует отчет с топ-10 регионов по количеству полетов. " +
+                    "Пока полеты за период не менялись, повторный запрос возвращает сохраненный результат"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -131,9 +148,44 @@ public class ReportController {
         }
     }
 
+    @Operation(
+            summary = "Метрики полетов",
+            description = "Общее число полетов, средняя длительность, распределение по регионам, типам БПЛА и дням, " +
+                    "час пиковой нагрузки за период. Считается по данным в памяти, без запросов к БД"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Метрики рассчитаны",
+                    content = @Content(schema = @Schema(implementation = FlightStatsResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Ошибка расчета метрик"
+            )
+    })
+    @GetMapping("/flight-stats")
+    public ResponseEntity<?> getFlightStats(
+            @Parameter(description = "Дата начала периода (YYYY-MM-DD)", required = true, example = "2024-01-01")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+
+            @Parameter(description = "Дата окончания периода (YYYY-MM-DD)", required = true, example = "2024-01-31")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        try {
+            return ResponseEntity.ok(metricsService.getFlightStats(startDate, endDate));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @Operation(
             summary = "График полетов",
-            description = "Генерирует график в формате PNG с визуализацией статистики полетов"
+            description = "Генерирует график в формате PNG с визуализацией статистики полетов. " +
+                    "Графики кэшируются до изменения полетов за период; ответ содержит ETag и Last-Modified, " +
+                    "повторный запрос с If-None-Match получает 304 без построения графика. " +
+                    "Новый график строится на ограниченном пуле и передается клиенту по мере кодирования"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -141,13 +193,21 @@ public class ReportController {
                     description = "График успешно сгенерирован",
                     content = @Content(mediaType = "image/png")
             ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "График не изменился"
+            ),
             @ApiResponse(
                     responseCode = "400",
                     description = "Ошибка генерации графика"
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Очередь построения графиков заполнена, запрос нужно повторить позже"
             )
     })
     @GetMapping("/chart")
-    public ResponseEntity<FileSystemResource> getChart(
+    public ResponseEntity<StreamingResponseBody> getChart(
             @Parameter(description = "Дата начала периода (YYYY-MM-DD)", required = true, example = "2024-01-01")
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
 
@@ -156,14 +216,34 @@ public class ReportController {
 
             @Parameter(description = "Тип графика", required = false, example = "bar",
                     schema = @Schema(allowableValues = {"bar", "line", "pie"}))
-            @RequestParam(defaultValue = "bar") String chartType) {
+            @RequestParam(defaultValue = "bar") String chartType,
+
+            WebRequest webRequest) {
 
         try {
-            File chartFile = reportService.generateFlightsChart(startDate, endDate, chartType);
+            // Проверка If-None-Match стоит одного запроса версии данных, график не строится
+            String etag = reportService.getFlightsChartETag(startDate, endDate, chartType);
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+
+            // Файл из кэша открывается до отправки заголовков: вытеснение не обрежет ответ 200
+            Optional<ChartCache.OpenChart> cached = reportService.openCachedFlightsChart(etag);
+            // Отказ при заполненной очереди возможен только до отправки заголовков
+            if (cached.isEmpty() && !chartRenderer.hasCapacity()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "5")
+                        .build();
+            }
+
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"flight_chart.png\"")
                     .contentType(MediaType.IMAGE_PNG)
-                    .body(new FileSystemResource(chartFile));
+                    .eTag(etag)
+                    .lastModified(cached.map(open -> open.chart().lastModified()).orElseGet(Instant::now))
+                    .cacheControl(CacheControl.noCache())
+                    .body(out -> reportService.writeFlightsChart(startDate, endDate, chartType, etag,
+                            cached.orElse(null), out));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -294,6 +374,30 @@ public class ReportController {
         }
     }
 
+    @Operation(
+            summary = "Пересчет счетчиков для отчетов",
+            description = "Полностью пересчитывает предагрегированные счетчики полетов (по дням, регионам, " +
+                    "типам БПЛА и часам) по таблице flights. Обычно не требуется: счетчики обновляются при загрузке"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Счетчики пересчитаны"),
+            @ApiResponse(responseCode = "400", description = "Ошибка пересчета")
+    })
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildRollups() {
+        try {
+            long start = System.currentTimeMillis();
+            flightRollupService.rebuild();
+            return ResponseEntity.ok(Map.of(
+                    "message", "Счетчики для отчетов пересчитаны",
+                    "durationMs", System.currentTimeMillis() - start
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Ошибка пересчета счетчиков: " + e.getMessage()));
+        }
+    }
+
     // Схемы для Swagger документации
     @Schema(description = "Комплексный отчет")
     public static class ComprehensiveReport {
@@ -0,0 +1,112 @@
+package com.drones.skilldrones.controller;
+
+import com.drones.skilldrones.dto.response.ReportResponse;
+import com.drones.skilldrones.service.ReportJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/reports/jobs")
+@Tag(name = "Фоновое построение отчетов", description = "API асинхронного построения отчетов и отслеживания статуса")
+public class ReportJobController {
+    private final ReportJobService reportJobService;
+
+    public ReportJobController(ReportJobService reportJobService) {
+        this.reportJobService = reportJobService;
+    }
+
+    @Operation(
+            summary = "Поставить отчет в очередь",
+            description = "Создает отчет в статусе PENDING и сразу возвращает его ID. " +
+                    "Отчет строится в фоне; статус доступен по /reports/jobs/{reportId} " +
+                    "или потоком событий /reports/jobs/{reportId}/events. Данные готового отчета - в поле parameters"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Отчет поставлен в очередь"),
+            @ApiResponse(responseCode = "400", description = "Неподдерживаемый тип отчета или неверный период"),
+            @ApiResponse(responseCode = "503", description = "Очередь отчетов переполнена")
+    })
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submitJob(
+            @Parameter(description = "Тип отчета", required = true, example = "COMPREHENSIVE",
+                    schema = @Schema(allowableValues = {"REGIONAL", "COMPREHENSIVE", "TOP_REGIONS"}))
+            @RequestParam String reportType,
+
+            @Parameter(description = "Дата начала периода (YYYY-MM-DD)", required = true, example = "2024-01-01")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+
+            @Parameter(description = "Дата окончания периода (YYYY-MM-DD)", required = true, example = "2024-01-31")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        try {
+            ReportResponse report = reportJobService.submit(reportType, startDate, endDate);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                    "message", "Отчет поставлен в очередь",
+                    "reportId", report.reportId(),
+                    "status", report.status(),
+                    "statusUrl", "/reports/jobs/" + report.reportId(),
+                    "eventsUrl", "/reports/jobs/" + report.reportId() + "/events"
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "Статус отчета",
+            description = "Возвращает статус отчета; у готового отчета данные в parameters, путь к графику в filePath"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Статус отчета получен",
+                    content = @Content(schema = @Schema(implementation = ReportResponse.class))
+            ),
+            @ApiResponse(responseCode = "404", description = "Отчет не найден")
+    })
+    @GetMapping("/{reportId}")
+    public ResponseEntity<ReportResponse> getJob(
+            @Parameter(description = "ID отчета", required = true, example = "1")
+            @PathVariable Long reportId) {
+        return reportJobService.getJob(reportId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @Operation(
+            summary = "Поток статуса отчета",
+            description = "Server-Sent Events: событие status с текущим состоянием отчета и при каждом его изменении. " +
+                    "Поток закрывается после статуса COMPLETED или FAILED"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Поток событий открыт",
+                    content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)),
+            @ApiResponse(responseCode = "404", description = "Отчет не найден")
+    })
+    @GetMapping(value = "/{reportId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(
+            @Parameter(description = "ID отчета", required = true, example = "1")
+            @PathVariable Long reportId) {
+        return reportJobService.streamStatus(reportId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
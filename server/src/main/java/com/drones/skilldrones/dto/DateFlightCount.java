@@ -0,0 +1,9 @@
+package com.drones.skilldrones.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Количество полетов за день (проекция для отчетов)
+ */
+public record DateFlightCount(LocalDate date, Long flightCount) {
+}
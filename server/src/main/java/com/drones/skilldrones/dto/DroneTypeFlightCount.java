@@ -0,0 +1,7 @@
+package com.drones.skilldrones.dto;
+
+/**
+ * Количество полетов по типу БПЛА за период (проекция для отчетов)
+ */
+public record DroneTypeFlightCount(String droneType, Long flightCount) {
+}
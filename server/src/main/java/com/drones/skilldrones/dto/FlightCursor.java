@@ -0,0 +1,34 @@
+package com.drones.skilldrones.dto;
+
+import com.drones.skilldrones.dto.response.FlightResponse;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Позиция в списке полетов, отсортированном по (flightDate, flightId) по убыванию.
+ * Передается клиенту строкой "2024-05-01_123456": следующая страница начинается с полетов строго после нее
+ */
+public record FlightCursor(LocalDate flightDate, Long flightId) {
+
+    public static FlightCursor of(FlightResponse flight) {
+        return new FlightCursor(flight.flightDate(), flight.flightId());
+    }
+
+    public static FlightCursor parse(String cursor) {
+        int separator = cursor.indexOf('_');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Неверный курсор: " + cursor);
+        }
+        try {
+            return new FlightCursor(LocalDate.parse(cursor.substring(0, separator)),
+                    Long.parseLong(cursor.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Неверный курсор: " + cursor, e);
+        }
+    }
+
+    public String encode() {
+        return flightDate + "_" + flightId;
+    }
+}
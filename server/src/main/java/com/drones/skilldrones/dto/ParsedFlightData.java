@@ -8,6 +8,7 @@ public class ParsedFlightData {
 
         private String flightId;
         private String droneType;
+        private String droneRegistration;
         private LocalDate flightDate;
         private String coordinates;
         private RawTelegram rawTelegram;
@@ -68,6 +69,9 @@ public class ParsedFlightData {
         public String getDroneType() { return droneType; }
         public void setDroneType(String droneType) { this.droneType = droneType; }
 
+        public String getDroneRegistration() { return droneRegistration; }
+        public void setDroneRegistration(String droneRegistration) { this.droneRegistration = droneRegistration; }
+
         public LocalDate getFlightDate() { return flightDate; }
         public void setFlightDate(LocalDate flightDate) { this.flightDate = flightDate; }
 
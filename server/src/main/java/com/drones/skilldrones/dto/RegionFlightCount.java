@@ -0,0 +1,7 @@
+package com.drones.skilldrones.dto;
+
+/**
+ * Количество полетов по региону вылета за период (проекция для отчетов)
+ */
+public record RegionFlightCount(Long regionId, String regionName, Double areaKm2, Long flightCount) {
+}
@@ -0,0 +1,44 @@
+package com.drones.skilldrones.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+@Schema(description = "Состояние фоновой задачи загрузки файла")
+public record IngestJobResponse(
+        @Schema(description = "ID задачи", example = "42")
+        Long jobId,
+        @Schema(description = "Имя загруженного файла", example = "2025.xlsx")
+        String fileName,
+        @Schema(description = "Статус: QUEUED, RUNNING, COMPLETED, FAILED, INTERRUPTED", example = "RUNNING")
+        String status,
+        @Schema(description = "Оценка количества строк в файле (по размеру листа)", example = "1000000")
+        Long rowsEstimate,
+        @Schema(description = "Прочитано строк", example = "250000")
+        long rowsRead,
+        @Schema(description = "Разобрано телеграмм", example = "249800")
+        long rowsParsed,
+        @Schema(description = "Сохранено полетов", example = "249500")
+        long rowsPersisted,
+        @Schema(description = "Строк с ошибками", example = "200")
+        long rowsFailed,
+        @Schema(description = "Полетов отсеяно как дубликаты уже сохраненных", example = "300")
+        long rowsDuplicate,
+        @Schema(description = "Контрольная точка: все строки файла до этой включительно сохранены", example = "249000")
+        long lastCommittedRow,
+        @Schema(description = "Прогресс в процентах (если известна оценка количества строк)", example = "25.0")
+        Double progressPercent,
+        @Schema(description = "Скорость чтения, строк в секунду", example = "8500.0")
+        Double rowsPerSecond,
+        @Schema(description = "Оценка оставшегося времени, секунд", example = "88")
+        Long etaSeconds,
+        @Schema(description = "Текст ошибки")
+        String errorMessage,
+        @Schema(description = "Дата создания")
+        LocalDateTime createdAt,
+        @Schema(description = "Дата начала обработки")
+        LocalDateTime startedAt,
+        @Schema(description = "Дата завершения")
+        LocalDateTime finishedAt
+) {
+}
@@ -0,0 +1,17 @@
+package com.drones.skilldrones.dto.response;
+
+import java.util.List;
+
+/**
+ * Страница без общего количества элементов: hasNext определяется по лишней строке выборки, COUNT не выполняется.
+ * pageNumber равен -1 для страницы, запрошенной по курсору; nextCursor - позиция для запроса следующей страницы
+ * по ключу (null, если страниц больше нет или сортировка не поддерживает курсор)
+ */
+public record SliceResponse<T>(List<T> content,
+                               int pageNumber,
+                               int pageSize,
+                               boolean first,
+                               boolean hasNext,
+                               String nextCursor
+) {
+}
@@ -3,12 +3,12 @@ package com.drones.skilldrones.mapper;
 import com.drones.skilldrones.dto.ParsedFlightData;
 import com.drones.skilldrones.dto.response.FlightResponse;
 import com.drones.skilldrones.model.Flight;
+import com.drones.skilldrones.service.ShrTelegramTokenizer;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Named;
 
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -84,12 +84,6 @@ public interface FlightMapper {
     }
 
     default LocalTime extractTime(String timeText) {
-        if (timeText == null) return null;
-        try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HHmm");
-            return LocalTime.parse(timeText, formatter);
-        } catch (Exception e) {
-            return null;
-        }
+        return ShrTelegramTokenizer.parseTime(timeText);
     }
 }
@@ -18,14 +18,18 @@ import java.util.Set;
                                 "departure_time",
                                 "arrival_time",
                                 "departure_coords",
-                                "arrival_coords"
+                                "arrival_coords",
+                                // Ключ секционированной таблицы включает ключ секционирования
+                                "flight_date"
                         }
                 )
         }
 )
 public class Flight {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // SEQUENCE + pooled-оптимизатор: id выдаются без обращения к БД, что позволяет Hibernate батчить вставки
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "flights_seq")
+    @SequenceGenerator(name = "flights_seq", sequenceName = "flights_flight_id_seq", allocationSize = 50)
     @Column(name = "flight_id") // Явно указываем имя столбца
     private Long flightId;
 
@@ -0,0 +1,195 @@
+package com.drones.skilldrones.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Фоновая задача загрузки файла с телеграммами.
+ * Счетчики прогресса и контрольная точка (последняя зафиксированная строка файла)
+ * сохраняются после каждой записанной пачки, поэтому прерванную задачу можно продолжить.
+ */
+@Entity
+@Table(name = "ingest_jobs")
+public class IngestJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long jobId;
+
+    private String fileName;
+    private String storedPath; // Копия загруженного файла, которую читает задача
+    private String fileHash; // SHA-256 содержимого файла - по нему находится задача при повторной загрузке
+
+    @Enumerated(EnumType.STRING)
+    private IngestJobStatus status;
+
+    private Long rowsEstimate;
+    private long rowsRead;
+    private long rowsParsed;
+    private long rowsPersisted;
+    private long rowsFailed;
+    private long rowsDuplicate; // Полеты, отсеянные как уже сохраненные
+    private long lastCommittedRow; // Все строки файла до этой включительно сохранены в БД
+    private long resumedFromRow; // Контрольная точка, с которой начат текущий запуск
+
+    @Column(columnDefinition = "TEXT")
+    private String errorMessage;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private LocalDateTime updatedAt;
+
+    public enum IngestJobStatus {
+        QUEUED, RUNNING, COMPLETED, FAILED, INTERRUPTED
+    }
+
+    public IngestJob() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getStoredPath() {
+        return storedPath;
+    }
+
+    public void setStoredPath(String storedPath) {
+        this.storedPath = storedPath;
+    }
+
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public void setFileHash(String fileHash) {
+        this.fileHash = fileHash;
+    }
+
+    public IngestJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(IngestJobStatus status) {
+        this.status = status;
+    }
+
+    public Long getRowsEstimate() {
+        return rowsEstimate;
+    }
+
+    public void setRowsEstimate(Long rowsEstimate) {
+        this.rowsEstimate = rowsEstimate;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public void setRowsRead(long rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed;
+    }
+
+    public void setRowsParsed(long rowsParsed) {
+        this.rowsParsed = rowsParsed;
+    }
+
+    public long getRowsPersisted() {
+        return rowsPersisted;
+    }
+
+    public void setRowsPersisted(long rowsPersisted) {
+        this.rowsPersisted = rowsPersisted;
+    }
+
+    public long getRowsFailed() {
+        return rowsFailed;
+    }
+
+    public void setRowsFailed(long rowsFailed) {
+        this.rowsFailed = rowsFailed;
+    }
+
+    public long getRowsDuplicate() {
+        return rowsDuplicate;
+    }
+
+    public void setRowsDuplicate(long rowsDuplicate) {
+        this.rowsDuplicate = rowsDuplicate;
+    }
+
+    public long getLastCommittedRow() {
+        return lastCommittedRow;
+    }
+
+    public void setLastCommittedRow(long lastCommittedRow) {
+        this.lastCommittedRow = lastCommittedRow;
+    }
+
+    public long getResumedFromRow() {
+        return resumedFromRow;
+    }
+
+    public void setResumedFromRow(long resumedFromRow) {
+        this.resumedFromRow = resumedFromRow;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
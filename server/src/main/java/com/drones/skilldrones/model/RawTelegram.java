@@ -9,7 +9,8 @@ import java.util.List;
 @Table(name = "raw_telegrams")
 public class RawTelegram {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "raw_telegrams_seq")
+    @SequenceGenerator(name = "raw_telegrams_seq", sequenceName = "raw_telegrams_id_seq", allocationSize = 50)
     private Long id;
     
     private String center;
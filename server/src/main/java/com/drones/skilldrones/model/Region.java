@@ -1,14 +1,23 @@
 package com.drones.skilldrones.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.SQLInsert;
 import org.locationtech.jts.geom.Geometry;
 
 import java.time.LocalDateTime;
 
+// Справочник регионов читается при каждой загрузке полетов (регионы вылета и прилета) - в кэше второго уровня.
+// Границы (RegionGeometry) не кэшируются
 @Entity
 @Table(name = "regions")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Region.CACHE_REGION)
 public class Region {
+    public static final String CACHE_REGION = "regions";
+    public static final String QUERY_CACHE_REGION = "region-queries";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "region_id")
@@ -20,7 +29,9 @@ public class Region {
     @Column(name = "area_km2")
     private Double areaKm2;
 
-    @Column(name = "geometry", columnDefinition = "geometry(Geometry,4326)")
+    // Границы хранятся в RegionGeometry и с регионом не загружаются. Поле только передает границы
+    // из загрузчиков (шейп-файл, GeoJSON) в RegionAnalysisService.saveRegions; у прочитанного из БД региона null
+    @Transient
     private Geometry geometry;
 
     @Column(name = "created_at", insertable = false, updatable = false)
@@ -0,0 +1,37 @@
+package com.drones.skilldrones.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Границы региона - столбец regions.geometry, вынесенный из {@link Region} в отдельную сущность.
+ * Region загружается с каждым полетом (departureRegion/arrivalRegion), а полигоны весят мегабайты,
+ * поэтому они читаются только там, где нужны: пространственный индекс и каталог регионов.
+ * <p>
+ * Сущность только для чтения: строку regions создает Region, а границы записываются
+ * {@link com.drones.skilldrones.repository.RegionGeometryRepository#updateGeometry} без чтения прежнего полигона.
+ */
+@Entity
+@Immutable
+@Table(name = "regions")
+public class RegionGeometry {
+    @Id
+    @Column(name = "region_id")
+    private Long regionId;
+
+    @Column(name = "geometry", columnDefinition = "geometry(Geometry,4326)")
+    private Geometry geometry;
+
+    public RegionGeometry() {
+        // Пустой конструктор для JPA
+    }
+
+    public Long getRegionId() {
+        return regionId;
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+}
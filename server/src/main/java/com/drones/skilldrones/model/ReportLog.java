@@ -32,6 +32,9 @@ public class ReportLog {
     private LocalDateTime createdAt;
     private LocalDateTime completedAt;
 
+    // Версия данных периода, по которой построен отчет (FlightRollupService.dataVersion)
+    private Long dataVersion;
+
     public enum ReportStatus {
         PENDING, PROCESSING, COMPLETED, FAILED
     }
@@ -48,7 +51,6 @@ public class ReportLog {
 
     public ReportLog() {
         this.createdAt = LocalDateTime.now();
-        this.completedAt = LocalDateTime.now();
     }
 
     public Long getReportId() {
@@ -139,7 +141,16 @@ public class ReportLog {
         this.completedAt = completedAt;
     }
 
+    public Long getDataVersion() {
+        return dataVersion;
+    }
+
+    public void setDataVersion(Long dataVersion) {
+        this.dataVersion = dataVersion;
+    }
+
     // Вспомогательные методы
+    @PrePersist
     @PreUpdate
     public void onUpdate() {
         if (status == ReportStatus.COMPLETED || status == ReportStatus.FAILED) {
@@ -1,21 +1,67 @@
 package com.drones.skilldrones.repository;
 
+import com.drones.skilldrones.dto.DateFlightCount;
+import com.drones.skilldrones.dto.DroneTypeFlightCount;
+import com.drones.skilldrones.dto.RegionFlightCount;
+import com.drones.skilldrones.dto.response.FlightResponse;
 import com.drones.skilldrones.model.Flight;
 import com.drones.skilldrones.model.Region;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
 
 public interface FlightRepository extends JpaRepository<Flight, Long> {
 
+    // Строка списка полетов: только поля FlightResponse, имена регионов через JOIN, сущности не загружаются
+    String FLIGHT_RESPONSE = "SELECT new com.drones.skilldrones.dto.response.FlightResponse(" +
+            "f.flightId, f.droneId, f.rawTelegram.id, f.flightCode, f.droneType, f.droneRegistration, " +
+            "f.flightDate, f.departureTime, f.arrivalTime, f.durationMinutes, " +
+            "f.departureCoords, f.arrivalCoords, dr.regionId, ar.regionId, dr.name, ar.name, " +
+            "f.createdAt, f.updatedAt) " +
+            "FROM Flight f LEFT JOIN f.departureRegion dr LEFT JOIN f.arrivalRegion ar ";
+    // Продолжение после курсора при сортировке (flightDate, flightId) по убыванию
+    String AFTER_CURSOR = "(f.flightDate < :afterDate OR (f.flightDate = :afterDate AND f.flightId < :afterId)) ";
+    String KEYSET_ORDER = "ORDER BY f.flightDate DESC, f.flightId DESC";
+
     List<Flight> findByFlightDateBetween(LocalDate startDate, LocalDate endDate);
 
-    Page<Flight> findByFlightDateBetween(LocalDate startDate, LocalDate endDate, Pageable pageable);
+    // Списки полетов для API: Slice вместо Page - без COUNT(*), следующая страница определяется по лишней строке
+    @Query(FLIGHT_RESPONSE)
+    Slice<FlightResponse> findResponses(Pageable pageable);
+
+    @Query(FLIGHT_RESPONSE + "WHERE f.flightDate BETWEEN :startDate AND :endDate")
+    Slice<FlightResponse> findResponsesByDateRange(@Param("startDate") LocalDate startDate,
+                                                   @Param("endDate") LocalDate endDate,
+                                                   Pageable pageable);
+
+    @Query(FLIGHT_RESPONSE + "WHERE f.droneType = :droneType")
+    Slice<FlightResponse> findResponsesByDroneType(@Param("droneType") String droneType, Pageable pageable);
+
+    // То же по ключу: без OFFSET, страница на любой глубине читается по индексу (flight_date, flight_id)
+    @Query(FLIGHT_RESPONSE + "WHERE " + AFTER_CURSOR + KEYSET_ORDER)
+    Slice<FlightResponse> findResponsesAfter(@Param("afterDate") LocalDate afterDate,
+                                             @Param("afterId") Long afterId,
+                                             Pageable pageable);
+
+    @Query(FLIGHT_RESPONSE + "WHERE f.flightDate BETWEEN :startDate AND :endDate AND " + AFTER_CURSOR + KEYSET_ORDER)
+    Slice<FlightResponse> findResponsesByDateRangeAfter(@Param("startDate") LocalDate startDate,
+                                                        @Param("endDate") LocalDate endDate,
+                                                        @Param("afterDate") LocalDate afterDate,
+                                                        @Param("afterId") Long afterId,
+                                                        Pageable pageable);
+
+    @Query(FLIGHT_RESPONSE + "WHERE f.droneType = :droneType AND " + AFTER_CURSOR + KEYSET_ORDER)
+    Slice<FlightResponse> findResponsesByDroneTypeAfter(@Param("droneType") String droneType,
+                                                        @Param("afterDate") LocalDate afterDate,
+                                                        @Param("afterId") Long afterId,
+                                                        Pageable pageable);
 
     @Query("SELECT f FROM Flight f WHERE f.departureRegion = :region OR f.arrivalRegion = :region")
     List<Flight> findByRegion(@Param("region") Region region);
@@ -38,18 +84,97 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
     @Query("SELECT COUNT(f) FROM Flight f WHERE f.departureRegion.regionId = :regionId")
     long countByDepartureRegion(@Param("regionId") Long regionId);
 
-    Page<Flight> findByDroneType(String droneType, Pageable pageable);
-
     long countByFlightDate(LocalDate flightDate);
 
     @Query("SELECT COUNT(DISTINCT f.droneType) FROM Flight f")
     long countDistinctDroneTypes();
 
+    // Агрегаты для отчетов за произвольный период: считаются в PostgreSQL, сущности не загружаются
+    @Query("SELECT new com.drones.skilldrones.dto.RegionFlightCount(r.regionId, r.name, r.areaKm2, COUNT(f)) " +
+            "FROM Flight f JOIN f.departureRegion r " +
+            "WHERE f.flightDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY r.regionId, r.name, r.areaKm2 " +
+            "ORDER BY COUNT(f) DESC, r.regionId")
+    List<RegionFlightCount> regionFlightCountsBetween(@Param("startDate") LocalDate startDate,
+                                                      @Param("endDate") LocalDate endDate,
+                                                      Pageable pageable);
+
+    @Query("SELECT new com.drones.skilldrones.dto.DateFlightCount(f.flightDate, COUNT(f)) " +
+            "FROM Flight f " +
+            "WHERE f.flightDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY f.flightDate " +
+            "ORDER BY f.flightDate")
+    List<DateFlightCount> countByDate(@Param("startDate") LocalDate startDate,
+                                      @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT new com.drones.skilldrones.dto.DroneTypeFlightCount(f.droneType, COUNT(f)) " +
+            "FROM Flight f " +
+            "WHERE f.flightDate BETWEEN :startDate AND :endDate AND f.droneType IS NOT NULL " +
+            "GROUP BY f.droneType " +
+            "ORDER BY COUNT(f) DESC")
+    List<DroneTypeFlightCount> countByDroneType(@Param("startDate") LocalDate startDate,
+                                                @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT COUNT(DISTINCT r.regionId) FROM Flight f JOIN f.departureRegion r " +
+            "WHERE f.flightDate BETWEEN :startDate AND :endDate")
+    long countDepartureRegionsBetween(@Param("startDate") LocalDate startDate,
+                                      @Param("endDate") LocalDate endDate);
+
     boolean existsByDepartureTimeAndArrivalTimeAndDepartureCoords(
             LocalTime departureTime,
             LocalTime arrivalTime,
             String departureCoords
     );
-}
-
 
+    // Пакетная геопривязка в PostGIS (см. BulkGeolocationService)
+    @Query(value = "SELECT MIN(flight_id) FROM flights " +
+            "WHERE departure_region_id IS NULL AND departure_point IS NOT NULL AND flight_id > :afterId",
+            nativeQuery = true)
+    Long findMinUnassignedFlightId(@Param("afterId") long afterId);
+
+    @Query(value = "SELECT MAX(flight_id) FROM flights " +
+            "WHERE departure_region_id IS NULL AND departure_point IS NOT NULL",
+            nativeQuery = true)
+    Long findMaxUnassignedFlightId();
+
+    // Вместе с регионами обновляет счетчики flight_stats_daily_region (см. FlightRollupService)
+    // и версии дат, отмечает дни для пересчета метрик регионов
+    @Transactional
+    @Query(value = "WITH assigned AS (" +
+            "UPDATE flights f SET departure_region_id = r.region_id " +
+            "FROM regions r " +
+            "WHERE f.flight_id BETWEEN :fromId AND :toId " +
+            "AND f.departure_region_id IS NULL AND f.departure_point IS NOT NULL " +
+            "AND ST_Within(f.departure_point, r.geometry) " +
+            "RETURNING f.flight_date, f.departure_region_id), " +
+            "rollup AS (" +
+            "INSERT INTO flight_stats_daily_region (flight_date, region_id, flight_count) " +
+            "SELECT flight_date, departure_region_id, COUNT(*) FROM assigned " +
+            "WHERE flight_date IS NOT NULL GROUP BY flight_date, departure_region_id " +
+            "ORDER BY flight_date, departure_region_id " +
+            "ON CONFLICT (flight_date, region_id) " +
+            "DO UPDATE SET flight_count = flight_stats_daily_region.flight_count + EXCLUDED.flight_count), " +
+            "data_versions AS (" +
+            "INSERT INTO flight_data_versions (flight_date, version) " +
+            "SELECT DISTINCT flight_date, 1 FROM assigned WHERE flight_date IS NOT NULL ORDER BY flight_date " +
+            "ON CONFLICT (flight_date) DO UPDATE SET version = flight_data_versions.version + 1), " +
+            "metrics_days AS (" +
+            "INSERT INTO region_metrics_dirty_days (metric_date) " +
+            "SELECT DISTINCT flight_date FROM assigned WHERE flight_date IS NOT NULL ORDER BY flight_date " +
+            "ON CONFLICT DO NOTHING) " +
+            "SELECT COUNT(*) FROM assigned",
+            nativeQuery = true)
+    int assignDepartureRegions(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Как и при геопривязке во время загрузки: без точки прилета считаем ее равной точке вылета
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE flights f SET arrival_region_id = r.region_id, " +
+            "arrival_point = COALESCE(f.arrival_point, f.departure_point) " +
+            "FROM regions r " +
+            "WHERE f.flight_id BETWEEN :fromId AND :toId " +
+            "AND f.arrival_region_id IS NULL " +
+            "AND ST_Within(COALESCE(f.arrival_point, f.departure_point), r.geometry)",
+            nativeQuery = true)
+    int assignArrivalRegions(@Param("fromId") long fromId, @Param("toId") long toId);
+}
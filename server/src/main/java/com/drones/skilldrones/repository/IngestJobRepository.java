@@ -0,0 +1,54 @@
+package com.drones.skilldrones.repository;
+
+import com.drones.skilldrones.model.IngestJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface IngestJobRepository extends JpaRepository<IngestJob, Long> {
+    /**
+     * Последние задачи загрузки (новые сначала)
+     */
+    List<IngestJob> findTop50ByOrderByCreatedAtDesc();
+
+    /**
+     * Задачи в указанных статусах (при старте - незавершенные)
+     */
+    List<IngestJob> findByStatusIn(Collection<IngestJob.IngestJobStatus> statuses);
+
+    /**
+     * Последняя задача по тому же файлу (по SHA-256 содержимого)
+     */
+    Optional<IngestJob> findFirstByFileHashOrderByCreatedAtDesc(String fileHash);
+
+    /**
+     * Контрольная точка в БД: пишется в транзакции пачки, может опережать загруженную сущность
+     */
+    @Query("SELECT j.lastCommittedRow FROM IngestJob j WHERE j.jobId = :jobId")
+    long findLastCommittedRow(@Param("jobId") Long jobId);
+
+    /**
+     * Сохраняет счетчики прогресса и контрольную точку без чтения сущности (вызывается после каждой пачки)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestJob j SET j.rowsEstimate = :rowsEstimate, j.rowsRead = :rowsRead, " +
+            "j.rowsParsed = :rowsParsed, j.rowsPersisted = :rowsPersisted, j.rowsFailed = :rowsFailed, " +
+            "j.rowsDuplicate = :rowsDuplicate, j.lastCommittedRow = :lastCommittedRow, j.updatedAt = :updatedAt WHERE j.jobId = :jobId")
+    int updateProgress(@Param("jobId") Long jobId,
+                       @Param("rowsEstimate") Long rowsEstimate,
+                       @Param("rowsRead") long rowsRead,
+                       @Param("rowsParsed") long rowsParsed,
+                       @Param("rowsPersisted") long rowsPersisted,
+                       @Param("rowsFailed") long rowsFailed,
+                       @Param("rowsDuplicate") long rowsDuplicate,
+                       @Param("lastCommittedRow") long lastCommittedRow,
+                       @Param("updatedAt") LocalDateTime updatedAt);
+}
@@ -0,0 +1,28 @@
+package com.drones.skilldrones.repository;
+
+import com.drones.skilldrones.model.RegionGeometry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface RegionGeometryRepository extends JpaRepository<RegionGeometry, Long> {
+
+    /**
+     * Границы всех регионов, у которых они заданы
+     */
+    @Query("SELECT g FROM RegionGeometry g WHERE g.geometry IS NOT NULL")
+    List<RegionGeometry> findAllWithGeometry();
+
+    /**
+     * Записывает границы региона одним UPDATE, без чтения прежнего полигона (wkb - WKB в EPSG:4326, null - очистить)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE regions SET geometry = ST_GeomFromWKB(:wkb, 4326) WHERE region_id = :regionId",
+            nativeQuery = true)
+    int updateGeometry(@Param("regionId") Long regionId, @Param("wkb") byte[] wkb);
+}
@@ -1,19 +1,40 @@
 package com.drones.skilldrones.repository;
 
 import com.drones.skilldrones.model.Region;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.locationtech.jts.geom.Point;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 import java.util.Optional;
 
 public interface RegionRepository extends JpaRepository<Region, Long> {
 
+    // Справочные выборки - в кэше запросов (регион region-queries). Кэш хранит идентификаторы,
+    // регионы берутся из кэша сущностей; сбрасывается при изменении таблицы regions через Hibernate
+    // и явно после загрузки регионов
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Region.QUERY_CACHE_REGION)
+    })
     Optional<Region> findByName(String name);
 
-    @Query("SELECT r FROM Region r WHERE within(:point, r.geometry) = true")
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Region.QUERY_CACHE_REGION)
+    })
+    List<Region> findAll();
+
+    @Query("SELECT r FROM Region r JOIN RegionGeometry g ON g.regionId = r.regionId " +
+            "WHERE within(:point, g.geometry) = true")
     Optional<Region> findRegionByPoint(@Param("point") Point point);
-    @Query(value = "SELECT r.* FROM regions r WHERE ST_Within(:point, r.geometry)", nativeQuery = true)
+    @Query(value = "SELECT r.region_id, r.name, r.area_km2, r.created_at, r.updated_at " +
+            "FROM regions r WHERE ST_Within(:point, r.geometry)", nativeQuery = true)
     Region findRegionContainingPoint(@Param("point") Point point);
 
 }
@@ -6,7 +6,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ReportLogRepository extends JpaRepository<ReportLog, Long> {
     /**
@@ -24,6 +26,11 @@ public interface ReportLogRepository extends JpaRepository<ReportLog, Long> {
      */
     List<ReportLog> findByStatusOrderByCreatedAtDesc(ReportLog.ReportStatus status);
 
+    /**
+     * Находит отчеты в указанных статусах, старые сначала (для восстановления очереди отчетов)
+     */
+    List<ReportLog> findByStatusInOrderByCreatedAtAsc(Collection<ReportLog.ReportStatus> statuses);
+
     /**
      * Находит отчеты за определенный период
      */
@@ -36,6 +43,17 @@ public interface ReportLogRepository extends JpaRepository<ReportLog, Long> {
     List<ReportLog> findByReportPeriod(@Param("startDate") LocalDate startDate,
                                        @Param("endDate") LocalDate endDate);
 
+    /**
+     * Последний завершенный отчет того же типа за тот же период, построенный по той же версии данных
+     */
+    @Query("SELECT r FROM ReportLog r WHERE r.reportType = :reportType " +
+            "AND r.reportPeriodStart = :startDate AND r.reportPeriodEnd = :endDate " +
+            "AND r.dataVersion = :dataVersion AND r.status = 'COMPLETED' ORDER BY r.createdAt DESC LIMIT 1")
+    Optional<ReportLog> findCompletedByDataVersion(@Param("reportType") String reportType,
+                                                   @Param("startDate") LocalDate startDate,
+                                                   @Param("endDate") LocalDate endDate,
+                                                   @Param("dataVersion") long dataVersion);
+
     /**
      * Находит завершенные отчеты
      */
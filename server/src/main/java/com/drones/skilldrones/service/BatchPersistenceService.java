@@ -0,0 +1,87 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.Flight;
+import com.drones.skilldrones.model.RawTelegram;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Пакетное сохранение телеграмм и полетов через EntityManager.
+ * Вставки группируются Hibernate в JDBC batch (hibernate.jdbc.batch_size),
+ * контекст персистентности сбрасывается и очищается каждые app.ingest.batch-size сущностей,
+ * чтобы не копить в памяти весь импорт.
+ */
+@Service
+public class BatchPersistenceService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final FlightRollupService flightRollupService;
+    private final int batchSize;
+
+    public BatchPersistenceService(FlightRollupService flightRollupService,
+                                   @Value("${app.ingest.batch-size:500}") int batchSize) {
+        this.flightRollupService = flightRollupService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Сохраняет новые телеграммы одной транзакцией
+     */
+    @Transactional
+    public void saveTelegrams(List<RawTelegram> telegrams) {
+        int pending = 0;
+        for (RawTelegram telegram : telegrams) {
+            if (telegram.getId() == null) {
+                entityManager.persist(telegram);
+                pending = flushIfNeeded(pending + 1);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * Сохраняет новые телеграммы и созданные из них полеты одной транзакцией.
+     * Уже сохраненные телеграммы (с id) повторно не вставляются.
+     * Счетчики полетов для отчетов и контрольная точка задачи загрузки (если не null)
+     * обновляются в той же транзакции.
+     */
+    @Transactional
+    public void saveTelegramsAndFlights(List<RawTelegram> telegrams, List<Flight> flights,
+                                        IngestCheckpoint checkpoint) {
+        int pending = 0;
+        for (RawTelegram telegram : telegrams) {
+            if (telegram.getId() == null) {
+                entityManager.persist(telegram);
+                pending = flushIfNeeded(pending + 1);
+            }
+        }
+        for (Flight flight : flights) {
+            entityManager.persist(flight);
+            pending = flushIfNeeded(pending + 1);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        flightRollupService.recordInserted(flights);
+        if (checkpoint != null) {
+            entityManager.unwrap(Session.class).doWork(checkpoint::write);
+        }
+    }
+
+    private int flushIfNeeded(int pending) {
+        if (pending < batchSize) {
+            return pending;
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return 0;
+    }
+}
@@ -0,0 +1,63 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.repository.FlightRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+/**
+ * Геопривязка полетов одним UPDATE ... FROM regions WHERE ST_Within(...) на диапазон flight_id.
+ * Используется как отдельная стадия после больших загрузок (app.ingest.geolocation=post-load):
+ * PostGIS сопоставляет точки с полигонами по GiST-индексу regions.geometry, без обращения к каждой строке из Java.
+ * Каждый диапазон обновляется в своей транзакции, чтобы не держать долгие блокировки на flights.
+ */
+@Service
+public class BulkGeolocationService {
+    private static final Logger log = LoggerFactory.getLogger(BulkGeolocationService.class);
+
+    private final FlightRepository flightRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    public BulkGeolocationService(FlightRepository flightRepository,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${app.ingest.geolocation-chunk-size:50000}") int chunkSize) {
+        this.flightRepository = flightRepository;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Привязывает к регионам все полеты без региона.
+     * <p>
+     * Диапазоны идут по flight_id полетов без региона (частичный индекс idx_flights_unassigned_region):
+     * каждый следующий начинается с первого непривязанного полета после предыдущего, пропуски между ними
+     * не просматриваются. Полеты вне всех регионов остаются без региона и при следующем запуске
+     * снова только перешагиваются.
+     *
+     * @return количество полетов, получивших регион вылета
+     */
+    public int geolocateUnassigned() {
+        Long toId = flightRepository.findMaxUnassignedFlightId();
+        Long fromId = toId != null ? flightRepository.findMinUnassignedFlightId(0) : null;
+        if (fromId == null) {
+            return 0;
+        }
+
+        log.info("Пакетная геопривязка полетов {}..{} диапазонами по {}", fromId, toId, chunkSize);
+        int updated = 0;
+        for (Long start = fromId; start != null && start <= toId;
+             start = flightRepository.findMinUnassignedFlightId(start + chunkSize - 1)) {
+            long end = Math.min(start + chunkSize - 1, toId);
+            updated += flightRepository.assignDepartureRegions(start, end);
+            flightRepository.assignArrivalRegions(start, end);
+        }
+        log.info("Пакетная геопривязка завершена: регион определен для {} полетов", updated);
+        if (updated > 0) {
+            eventPublisher.publishEvent(new FlightsModifiedEvent("пакетная геопривязка"));
+        }
+        return updated;
+    }
+}
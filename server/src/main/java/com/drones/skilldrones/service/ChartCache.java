@@ -0,0 +1,292 @@
+package com.drones.skilldrones.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Кэш PNG графиков на диске.
+ * <p>
+ * Файл называется SHA-256 от параметров графика (период, тип, размер, версия данных периода, поколение регионов),
+ * поэтому одинаковые параметры всегда дают один и тот же файл, а ключ служит и ETag ответа.
+ * Объем кэша ограничен app.report.chart-cache.max-size-mb: при превышении удаляются графики,
+ * к которым дольше всего не обращались (LRU). Графики, не запрошенные дольше app.report.retention.days,
+ * удаляются по расписанию. Графики устаревших версий данных больше не запрашиваются и уходят тем же путем.
+ * Время последнего обращения хранится во времени доступа (atime) файла, время построения - во времени изменения,
+ * поэтому порядок LRU и срок хранения переживают перезапуск.
+ */
+@Component
+public class ChartCache {
+    private static final Logger log = LoggerFactory.getLogger(ChartCache.class);
+
+    private static final String EXTENSION = ".png";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Duration retention;
+
+    // Порядок доступа: первый элемент - давно не запрашиваемый график. Под this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    public ChartCache(@Value("${app.report.chart-cache.dir:./uploads/charts}") String directory,
+                      @Value("${app.report.chart-cache.max-size-mb:256}") long maxSizeMb,
+                      @Value("${app.report.retention.days:30}") int retentionDays) {
+        this.directory = Paths.get(directory).toAbsolutePath();
+        this.maxBytes = maxSizeMb * 1024 * 1024;
+        this.retention = Duration.ofDays(retentionDays);
+    }
+
+    /**
+     * Ключ кэша из параметров графика
+     */
+    public static String key(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '|');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Восстанавливает кэш с диска: порядок LRU - по времени доступа к файлам.
+     * Временные файлы, оставшиеся от прерванной записи, удаляются
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(directory)) {
+                files = stream.toList();
+            }
+
+            List<Entry> loaded = new ArrayList<>(files.size());
+            int tempFiles = 0;
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_EXTENSION)) {
+                    Files.deleteIfExists(file);
+                    tempFiles++;
+                } else if (name.endsWith(EXTENSION)) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    Instant created = attributes.lastModifiedTime().toInstant();
+                    // Файловая система может не обновлять atime при чтении, но не раньше записи
+                    Instant lastAccess = attributes.lastAccessTime().toInstant();
+                    loaded.add(new Entry(name.substring(0, name.length() - EXTENSION.length()), file,
+                            attributes.size(), created, lastAccess.isAfter(created) ? lastAccess : created));
+                }
+            }
+            if (tempFiles > 0) {
+                log.info("Из кэша графиков удалено {} недописанных временных файлов", tempFiles);
+            }
+            loaded.sort(Comparator.comparing(Entry::lastAccess));
+            for (Entry entry : loaded) {
+                entries.put(entry.key(), entry);
+                totalBytes += entry.size();
+            }
+            evict();
+            log.info("Кэш графиков: {} файлов, {} КБ", entries.size(), totalBytes / 1024);
+        } catch (IOException e) {
+            log.error("Не удалось прочитать каталог кэша графиков {}: {}", directory, e.getMessage());
+        }
+    }
+
+    public Optional<CachedChart> get(String key) {
+        Entry entry;
+        Instant now = Instant.now();
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (!Files.exists(entry.file())) {
+                remove(entry);
+                return Optional.empty();
+            }
+            entries.put(key, entry.accessed(now));
+        }
+        touch(entry.file(), now);
+        return Optional.of(entry.toChart());
+    }
+
+    /**
+     * График из кэша с уже открытым файлом: вытеснение после открытия удаляет только имя файла,
+     * и содержимое дочитывается полностью. Файл, удаленный до открытия, - промах кэша
+     */
+    public Optional<OpenChart> open(String key) {
+        Optional<CachedChart> cached = get(key);
+        if (cached.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new OpenChart(cached.get(), Files.newInputStream(cached.get().file())));
+        } catch (NoSuchFileException e) {
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null && !Files.exists(entry.file())) {
+                    remove(entry);
+                }
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения графика из кэша: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Сохраняет PNG под ключом. Файл пишется во временный и переименовывается,
+     * поэтому читатели не увидят недописанный график
+     */
+    public CachedChart put(String key, byte[] png) {
+        Path file = directory.resolve(key + EXTENSION);
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, key, TEMP_EXTENSION);
+            Files.write(temp, png);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new UncheckedIOException("Ошибка записи графика в кэш: " + e.getMessage(), e);
+        }
+
+        Instant now = Instant.now();
+        Entry entry = new Entry(key, file, png.length, now, now);
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalBytes -= previous.size();
+            }
+            totalBytes += entry.size();
+            evict();
+        }
+        return entry.toChart();
+    }
+
+    /**
+     * Удаляет графики, к которым не обращались дольше срока хранения
+     */
+    @Scheduled(fixedDelayString = "${app.report.chart-cache.cleanup-interval-ms:3600000}")
+    public synchronized void removeExpired() {
+        Instant expiredBefore = Instant.now().minus(retention);
+        int removed = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            // Порядок доступа: дальше идут более свежие
+            if (!entry.lastAccess().isBefore(expiredBefore)) {
+                break;
+            }
+            it.remove();
+            totalBytes -= entry.size();
+            deleteFile(entry);
+            removed++;
+        }
+        if (removed > 0) {
+            log.info("Из кэша графиков удалено {} устаревших файлов", removed);
+        }
+    }
+
+    private void evict() {
+        for (Iterator<Entry> it = entries.values().iterator(); totalBytes > maxBytes && it.hasNext(); ) {
+            Entry entry = it.next();
+            it.remove();
+            totalBytes -= entry.size();
+            deleteFile(entry);
+        }
+    }
+
+    /**
+     * Записывает время обращения в atime файла; время изменения (время построения) не меняется
+     */
+    private static void touch(Path file, Instant time) {
+        try {
+            Files.getFileAttributeView(file, BasicFileAttributeView.class)
+                    .setTimes(null, FileTime.from(time), null);
+        } catch (IOException e) {
+            // Файл мог быть вытеснен параллельным put; порядок в памяти уже обновлен
+            log.debug("Не удалось обновить время доступа к графику {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.key());
+        totalBytes -= entry.size();
+    }
+
+    private void deleteFile(Entry entry) {
+        try {
+            Files.deleteIfExists(entry.file());
+        } catch (IOException e) {
+            log.warn("Не удалось удалить график {} из кэша: {}", entry.file(), e.getMessage());
+        }
+    }
+
+    /**
+     * График в кэше: etag - ключ кэша, lastModified - время построения
+     */
+    public record CachedChart(String etag, Path file, long size, Instant lastModified) {
+    }
+
+    /**
+     * График из кэша и открытый поток его файла; поток закрывает тот, кто его читает
+     */
+    public record OpenChart(CachedChart chart, InputStream in) implements Closeable {
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private record Entry(String key, Path file, long size, Instant created, Instant lastAccess) {
+        Entry accessed(Instant time) {
+            return new Entry(key, file, size, created, time);
+        }
+
+        CachedChart toChart() {
+            return new CachedChart(key, file, size, created);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.drones.skilldrones.service;
+
+import jakarta.annotation.PreDestroy;
+import org.jfree.chart.JFreeChart;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Построение графиков в PNG на ограниченном пуле потоков.
+ * <ul>
+ *     <li>построение (включая запросы данных) выполняют app.report.render.threads потоков,
+ *     в очереди ждут не больше app.report.render.queue-capacity графиков, остальные отклоняются;</li>
+ *     <li>каждый поток рисует в BufferedImage размером app.report.image.width x height из общего пула,
+ *     поэтому память на изображения не превышает threads * width * height * 4 байт;</li>
+ *     <li>PNG кодируется сразу в выходной поток (ответ или буфер кэша), без временных файлов ImageIO.</li>
+ * </ul>
+ */
+@Component
+public class ChartRenderer {
+    private final int width;
+    private final int height;
+    private final ThreadPoolExecutor executor;
+    private final BlockingQueue<BufferedImage> images;
+
+    public ChartRenderer(@Value("${app.report.image.width:1200}") int width,
+                         @Value("${app.report.image.height:800}") int height,
+                         @Value("${app.report.render.threads:2}") int threads,
+                         @Value("${app.report.render.queue-capacity:16}") int queueCapacity) {
+        this.width = width;
+        this.height = height;
+        this.images = new ArrayBlockingQueue<>(threads);
+
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "chart-render-" + threadNo.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Есть ли место в очереди построения. Проверка предварительная: при одновременных запросах
+     * график все равно может быть отклонен в {@link #render}
+     */
+    public boolean hasCapacity() {
+        return executor.getQueue().remainingCapacity() > 0 || executor.getActiveCount() < executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Строит график на пуле и пишет PNG в out; вызывающий поток ждет окончания
+     *
+     * @throws java.util.concurrent.RejectedExecutionException если очередь построения заполнена
+     */
+    public void render(Supplier<JFreeChart> chart, OutputStream out) throws IOException {
+        Future<?> task = executor.submit(() -> {
+            try {
+                draw(chart.get(), out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Построение графика прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Ошибка построения графика: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void draw(JFreeChart chart, OutputStream out) throws IOException {
+        BufferedImage image = images.poll();
+        if (image == null) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        try {
+            Graphics2D graphics = image.createGraphics();
+            try {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                chart.draw(graphics, new Rectangle2D.Double(0, 0, width, height));
+            } finally {
+                graphics.dispose();
+            }
+            writePng(image, out);
+        } finally {
+            images.offer(image);
+        }
+    }
+
+    /**
+     * ImageIO.write(image, "png", OutputStream) при включенном кэше ImageIO пишет через временный файл,
+     * поэтому поток изображения создается явно с буфером в памяти
+     */
+    private static void writePng(BufferedImage image, OutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        try (ImageOutputStream imageOut = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            writer.write(image);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,219 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.RawTelegram;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Потоковое чтение CSV файла с телеграммами в той же раскладке, что и Excel: Центр, SHR, DEP, ARR.
+ * <p>
+ * Файл читается через FileChannel в прямой буфер и декодируется из UTF-8 блоками,
+ * строки разбираются конечным автоматом по RFC 4180: ячейки в кавычках могут содержать
+ * разделитель, переводы строк (многострочные телеграммы) и экранированные кавычки "".
+ * Разделитель (запятая, точка с запятой или табуляция) определяется по строке заголовка.
+ */
+@Component
+public class CsvTelegramReader {
+    private static final int TELEGRAM_COLUMNS = 4; // Центр, SHR, DEP, ARR
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Читает файл и передает каждую строку с данными (кроме заголовка) в consumer.
+     * Оценка количества строк передается в rowsEstimate после первого прочитанного блока
+     * (по среднему размеру строки в нем).
+     *
+     * @return количество переданных телеграмм
+     */
+    public int read(Path csvFile, String fileName, IntConsumer rowsEstimate, Consumer<RawTelegram> consumer) {
+        try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+            TelegramRecordParser parser = new TelegramRecordParser(fileName, consumer);
+
+            long bytesRead = 0;
+            boolean estimated = false;
+            boolean eof = false;
+            while (!eof) {
+                int read = channel.read(bytes);
+                eof = read < 0;
+                if (read > 0) {
+                    bytesRead += read;
+                }
+
+                bytes.flip();
+                decoder.decode(bytes, chars, eof);
+                if (eof) {
+                    decoder.flush(chars);
+                }
+                bytes.compact();
+
+                chars.flip();
+                parser.parse(chars);
+                chars.clear();
+
+                if (!estimated && !eof && parser.emitted > 0) {
+                    rowsEstimate.accept((int) Math.min(Integer.MAX_VALUE, fileSize * parser.emitted / bytesRead));
+                    estimated = true;
+                }
+            }
+            parser.finish();
+            return parser.emitted;
+
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка потокового чтения CSV файла: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Конечный автомат разбора CSV: состояние сохраняется между блоками,
+     * поэтому ячейка или запись может начинаться в одном блоке и заканчиваться в другом
+     */
+    private static final class TelegramRecordParser {
+        private final String fileName;
+        private final Consumer<RawTelegram> consumer;
+        private final String[] cells = new String[TELEGRAM_COLUMNS];
+        private final StringBuilder field = new StringBuilder(512);
+        private char delimiter;
+        private boolean inQuotes;
+        private boolean quoteClosed; // Предыдущий символ закрыл кавычки: следующая " - экранированная
+        private boolean headerSkipped;
+        private boolean firstChar = true;
+        private int column;
+        private int emitted;
+
+        private TelegramRecordParser(String fileName, Consumer<RawTelegram> consumer) {
+            this.fileName = fileName;
+            this.consumer = consumer;
+        }
+
+        private void parse(CharBuffer chars) {
+            if (delimiter == 0) {
+                delimiter = detectDelimiter(chars);
+            }
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (firstChar) {
+                    firstChar = false;
+                    if (c == '\uFEFF') {
+                        continue; // BOM
+                    }
+                }
+
+                if (inQuotes) {
+                    if (c == '"') {
+                        inQuotes = false;
+                        quoteClosed = true;
+                    } else {
+                        field.append(c);
+                    }
+                    continue;
+                }
+
+                // Кавычка открывает ячейку только в ее начале, внутри ячейки без кавычек - обычный символ
+                if (c == '"' && (quoteClosed || field.isEmpty())) {
+                    if (quoteClosed) {
+                        field.append('"');
+                    }
+                    inQuotes = true;
+                    quoteClosed = false;
+                    continue;
+                }
+                quoteClosed = false;
+
+                if (c == delimiter) {
+                    endField();
+                } else if (c == '\n') {
+                    endField();
+                    endRecord();
+                } else if (c != '\r') {
+                    field.append(c);
+                }
+            }
+        }
+
+        /**
+         * Последняя запись файла может быть без завершающего перевода строки
+         */
+        private void finish() {
+            if (column > 0 || field.length() > 0) {
+                endField();
+                endRecord();
+            }
+        }
+
+        private void endField() {
+            if (column < TELEGRAM_COLUMNS) {
+                String value = field.toString().trim();
+                cells[column] = value.isEmpty() ? null : value;
+            }
+            column++;
+            field.setLength(0);
+        }
+
+        private void endRecord() {
+            boolean complete = column >= TELEGRAM_COLUMNS;
+            for (int i = 0; complete && i < TELEGRAM_COLUMNS; i++) {
+                complete = cells[i] != null;
+            }
+            boolean blank = column == 1 && cells[0] == null;
+            column = 0;
+
+            if (blank) {
+                return;
+            }
+            // Первая строка - заголовок
+            if (!headerSkipped) {
+                headerSkipped = true;
+                return;
+            }
+            // Как и в Excel, строки с неполным набором ячеек пропускаем
+            if (!complete) {
+                return;
+            }
+
+            RawTelegram telegram = new RawTelegram();
+            telegram.setCenter(cells[0]);
+            telegram.setShrRawText(cells[1]);
+            telegram.setDepRawText(cells[2]);
+            telegram.setArrRawText(cells[3]);
+            telegram.setFileName(fileName);
+            telegram.setProcessingStatus("PENDING");
+
+            consumer.accept(telegram);
+            emitted++;
+        }
+
+        /**
+         * Первый из ; , табуляции вне кавычек в строке заголовка; по умолчанию запятая
+         */
+        private static char detectDelimiter(CharBuffer chars) {
+            boolean quoted = false;
+            for (int i = chars.position(); i < chars.limit(); i++) {
+                char c = chars.get(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (!quoted && (c == ';' || c == ',' || c == '\t')) {
+                    return c;
+                } else if (!quoted && c == '\n') {
+                    break;
+                }
+            }
+            return ',';
+        }
+    }
+}
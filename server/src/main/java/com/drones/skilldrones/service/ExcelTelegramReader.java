@@ -0,0 +1,192 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.RawTelegram;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Потоковое (SAX) чтение Excel файла с телеграммами.
+ * В отличие от XSSFWorkbook не строит DOM всего листа: строки читаются по одной
+ * и сразу передаются потребителю, поэтому расход памяти не зависит от размера файла.
+ */
+@Component
+public class ExcelTelegramReader {
+    private static final int TELEGRAM_COLUMNS = 4; // Центр, SHR, DEP, ARR
+
+    /**
+     * Читает первый лист файла и передает каждую строку с данными (кроме заголовка) в consumer
+     *
+     * @return количество переданных телеграмм
+     */
+    public int read(Path xlsxFile, String fileName, Consumer<RawTelegram> consumer) {
+        return read(xlsxFile, fileName, rows -> { }, consumer);
+    }
+
+    /**
+     * То же, но до первой строки сообщает оценку количества строк с данными
+     * по элементу &lt;dimension&gt; листа (например A1:D1000001 -> 1000000).
+     * Если размер листа не записан в файле, оценка не передается.
+     */
+    public int read(Path xlsxFile, String fileName, IntConsumer rowsEstimate, Consumer<RawTelegram> consumer) {
+        try (OPCPackage pkg = OPCPackage.open(xlsxFile.toFile(), PackageAccess.READ)) {
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg, false);
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            StylesTable styles = xssfReader.getStylesTable();
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return 0;
+            }
+
+            TelegramRowHandler rowHandler = new TelegramRowHandler(fileName, consumer);
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = new DimensionFilter(XMLHelper.newXMLReader(), rowsEstimate);
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        styles, null, sharedStrings, rowHandler, new DataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+            return rowHandler.emitted;
+
+        } catch (IOException | OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new RuntimeException("Ошибка потокового чтения Excel файла: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Перехватывает &lt;dimension ref="A1:D1000001"/&gt; перед передачей событий обработчику листа
+     */
+    private static final class DimensionFilter extends XMLFilterImpl {
+        private final IntConsumer rowsEstimate;
+
+        private DimensionFilter(XMLReader parent, IntConsumer rowsEstimate) {
+            super(parent);
+            this.rowsEstimate = rowsEstimate;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            if ("dimension".equals(localName)) {
+                int lastRow = lastRowOf(atts.getValue("ref"));
+                if (lastRow > 1) {
+                    rowsEstimate.accept(lastRow - 1); // без заголовка
+                }
+            }
+            super.startElement(uri, localName, qName, atts);
+        }
+
+        /**
+         * "A1:D1000001" -> 1000001; 0, если диапазон не указан
+         */
+        private static int lastRowOf(String ref) {
+            if (ref == null) {
+                return 0;
+            }
+            int row = 0;
+            for (int i = ref.indexOf(':') + 1; i > 0 && i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    row = row * 10 + (c - '0');
+                }
+            }
+            return row;
+        }
+    }
+
+    /**
+     * Собирает ячейки текущей строки и создает RawTelegram при закрытии строки
+     */
+    private static final class TelegramRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final String fileName;
+        private final Consumer<RawTelegram> consumer;
+        private final String[] cells = new String[TELEGRAM_COLUMNS];
+        private int filledCells;
+        private int nextColumn;
+        private int emitted;
+
+        private TelegramRowHandler(String fileName, Consumer<RawTelegram> consumer) {
+            this.fileName = fileName;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            for (int i = 0; i < TELEGRAM_COLUMNS; i++) {
+                cells[i] = null;
+            }
+            filledCells = 0;
+            nextColumn = 0;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? columnIndex(cellReference) : nextColumn;
+            nextColumn = column + 1;
+
+            if (column < TELEGRAM_COLUMNS && formattedValue != null) {
+                if (cells[column] == null) {
+                    filledCells++;
+                }
+                cells[column] = formattedValue.trim();
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            // Первая строка - заголовок
+            if (rowNum == 0) {
+                return;
+            }
+            // Как и раньше, строки с неполным набором ячеек пропускаем
+            if (filledCells < TELEGRAM_COLUMNS) {
+                return;
+            }
+
+            RawTelegram telegram = new RawTelegram();
+            telegram.setCenter(cells[0]);
+            telegram.setShrRawText(cells[1]);
+            telegram.setDepRawText(cells[2]);
+            telegram.setArrRawText(cells[3]);
+            telegram.setFileName(fileName);
+            telegram.setProcessingStatus("PENDING");
+
+            consumer.accept(telegram);
+            emitted++;
+        }
+
+        /**
+         * "C15" -> 2, без создания промежуточных объектов CellReference
+         */
+        private static int columnIndex(String cellReference) {
+            int column = 0;
+            for (int i = 0; i < cellReference.length(); i++) {
+                char c = cellReference.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+    }
+}
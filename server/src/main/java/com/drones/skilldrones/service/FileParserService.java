@@ -4,8 +4,11 @@ import com.drones.skilldrones.dto.ParsedFlightData;
 import com.drones.skilldrones.model.RawTelegram;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public interface FileParserService {
     /**
@@ -13,6 +16,23 @@ public interface FileParserService {
      */
     List<RawTelegram> parseExcelFile(MultipartFile file);
 
+    /**
+     * Потоково читает Excel файл и передает телеграммы пачками
+     * размером app.ingest.batch-size, не держа весь файл в памяти.
+     * Телеграммы не сохраняются - это делает processBatch вместе с полетами
+     *
+     * @return общее количество прочитанных телеграмм
+     */
+    int parseExcelFileInBatches(MultipartFile file, Consumer<List<RawTelegram>> batchHandler);
+
+    /**
+     * Потоково читает уже сохраненный на диск файл с телеграммами (фоновые задачи загрузки).
+     * Оценка количества строк передается в rowsEstimate до первой телеграммы, если ее можно получить
+     *
+     * @return общее количество прочитанных телеграмм
+     */
+    int readTelegrams(Path file, String fileName, IntConsumer rowsEstimate, Consumer<RawTelegram> consumer);
+
     /**
      * Парсит Excel файл и возвращает структурированные данные о полетах
      */
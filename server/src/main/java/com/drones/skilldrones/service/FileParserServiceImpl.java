@@ -4,72 +4,153 @@ import com.drones.skilldrones.dto.ParsedFlightData;
 import com.drones.skilldrones.model.Flight;
 import com.drones.skilldrones.model.RawTelegram;
 import com.drones.skilldrones.repository.FlightRepository;
-import com.drones.skilldrones.repository.RawTelegramRepository;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 @Service
 public class FileParserServiceImpl implements FileParserService {
-    private final RawTelegramRepository rawTelegramRepository;
+    private static final Logger log = LoggerFactory.getLogger(FileParserServiceImpl.class);
+
     private final FlightRepository flightRepository;
+    private final ExcelTelegramReader excelTelegramReader;
+    private final CsvTelegramReader csvTelegramReader;
+    private final FlightRollupService flightRollupService;
+    private final BatchPersistenceService batchPersistenceService;
     private final GeometryFactory geometryFactory;
-
-    public FileParserServiceImpl(RawTelegramRepository rawTelegramRepository,
-                                 FlightRepository flightRepository) {
-        this.rawTelegramRepository = rawTelegramRepository;
+    private final String uploadTempDir;
+    private final int ingestBatchSize;
+
+    public FileParserServiceImpl(FlightRepository flightRepository,
+                                 ExcelTelegramReader excelTelegramReader,
+                                 CsvTelegramReader csvTelegramReader,
+                                 FlightRollupService flightRollupService,
+                                 BatchPersistenceService batchPersistenceService,
+                                 @Value("${app.upload.temp-dir:./uploads/temp}") String uploadTempDir,
+                                 @Value("${app.ingest.batch-size:500}") int ingestBatchSize) {
         this.flightRepository = flightRepository;
+        this.excelTelegramReader = excelTelegramReader;
+        this.csvTelegramReader = csvTelegramReader;
+        this.flightRollupService = flightRollupService;
+        this.batchPersistenceService = batchPersistenceService;
         this.geometryFactory = new GeometryFactory();
+        this.uploadTempDir = uploadTempDir;
+        this.ingestBatchSize = ingestBatchSize;
     }
 
     @Override
     public List<RawTelegram> parseExcelFile(MultipartFile file) {
         List<RawTelegram> telegrams = new ArrayList<>();
-        System.out.println("Начало парсинга Excel файла: " + file.getOriginalFilename());
+        log.info("Начало парсинга Excel файла: {}", file.getOriginalFilename());
+
+        List<RawTelegram> chunk = new ArrayList<>(ingestBatchSize);
+        readTelegrams(file, telegram -> {
+            chunk.add(telegram);
+            if (chunk.size() >= ingestBatchSize) {
+                batchPersistenceService.saveTelegrams(chunk);
+                telegrams.addAll(chunk);
+                chunk.clear();
+            }
+        });
+        batchPersistenceService.saveTelegrams(chunk);
+        telegrams.addAll(chunk);
 
-        try (InputStream inputStream = file.getInputStream();
-             Workbook workbook = new XSSFWorkbook(inputStream)) {
+        log.info("Всего распарсено телеграмм: {}", telegrams.size());
+        return telegrams;
+    }
 
-            Sheet sheet = workbook.getSheetAt(0);
-            System.out.println("Всего строк в файле: " + (sheet.getLastRowNum() + 1));
+    @Override
+    public int parseExcelFileInBatches(MultipartFile file, Consumer<List<RawTelegram>> batchHandler) {
+        log.info("Начало потокового парсинга Excel файла: {}", file.getOriginalFilename());
+        List<RawTelegram> batch = new ArrayList<>(ingestBatchSize);
+
+        // Телеграммы не сохраняются здесь: processBatch вставляет их вместе с полетами одной транзакцией
+        int total = readTelegrams(file, telegram -> {
+            batch.add(telegram);
+            if (batch.size() >= ingestBatchSize) {
+                batchHandler.accept(new ArrayList<>(batch));
+                batch.clear();
+            }
+        });
 
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) {
-                    System.out.println("Строка " + i + " пустая - пропускаем");
-                    continue;
-                }
+        if (!batch.isEmpty()) {
+            batchHandler.accept(batch);
+        }
 
-                RawTelegram telegram = parseRow(row);
-                if (telegram != null) {
-                    telegram.setFileName(file.getOriginalFilename());
-                    rawTelegramRepository.save(telegram);
-                    telegrams.add(telegram);
-                    System.out.println("Сохранен RawTelegram: " + telegram.getShrRawText());
-                }
-            }
+        log.info("Всего прочитано телеграмм: {}", total);
+        return total;
+    }
 
+    @Override
+    public int readTelegrams(Path file, String fileName, IntConsumer rowsEstimate, Consumer<RawTelegram> consumer) {
+        try {
+            return read(file, fileName, rowsEstimate, consumer);
         } catch (Exception e) {
-            throw new RuntimeException("Ошибка парсинга Excel файла: " + e.getMessage(), e);
+            throw new RuntimeException("Ошибка парсинга файла: " + e.getMessage(), e);
         }
+    }
 
-        System.out.println("Всего распарсено телеграмм: " + telegrams.size());
-        return telegrams;
+    /**
+     * Выбор читателя по расширению: .csv читается напрямую, остальное - как xlsx
+     */
+    private int read(Path file, String fileName, IntConsumer rowsEstimate, Consumer<RawTelegram> consumer) {
+        String name = fileName != null ? fileName : file.getFileName().toString();
+        if (isCsv(name)) {
+            return csvTelegramReader.read(file, fileName, rowsEstimate, consumer);
+        }
+        return excelTelegramReader.read(file, fileName, rowsEstimate, consumer);
+    }
+
+    static boolean isCsv(String fileName) {
+        return fileName != null && fileName.toLowerCase().endsWith(".csv");
+    }
+
+    /**
+     * Сохраняет загрузку во временный файл и читает его потоково:
+     * OPCPackage, открытый из файла, не держит архив целиком в памяти, CSV читается блоками
+     */
+    private int readTelegrams(MultipartFile file, Consumer<RawTelegram> consumer) {
+        Path tempFile = null;
+        try {
+            Path tempDir = Paths.get(uploadTempDir);
+            Files.createDirectories(tempDir);
+            tempFile = Files.createTempFile(tempDir, "telegrams_", isCsv(file.getOriginalFilename()) ? ".csv" : ".xlsx");
+            file.transferTo(tempFile);
+
+            return read(tempFile, file.getOriginalFilename(), rows -> { }, consumer);
+
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка парсинга файла: " + e.getMessage(), e);
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    private void deleteTempFile(Path tempFile) {
+        if (tempFile == null) return;
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл {}: {}", tempFile, e.getMessage());
+        }
     }
 
     @Override
@@ -110,6 +191,7 @@ public class FileParserServiceImpl implements FileParserService {
             flight.setRawTelegram(flightData.getRawTelegram());
             flight.setFlightCode(flightData.getFlightId());
             flight.setDroneType(flightData.getDroneType());
+            flight.setDroneRegistration(flightData.getDroneRegistration());
             flight.setFlightDate(flightData.getFlightDate());
 
             // Устанавливаем время
@@ -144,6 +226,7 @@ public class FileParserServiceImpl implements FileParserService {
 
             // Сохраняем Flight
             Flight savedFlight = flightRepository.save(flight);
+            flightRollupService.recordInserted(List.of(savedFlight));
             System.out.println("Сохранен Flight ID: " + savedFlight.getFlightId() +
                     " с координатами: " + coordinates);
 
@@ -196,64 +279,18 @@ public class FileParserServiceImpl implements FileParserService {
 
     @Override
     public LocalTime extractTimeFromTelegram(String text, String timeType) {
-        if (text == null) return null;
-
-        try {
-            Pattern pattern = Pattern.compile("-(\\d{4})");
-            Matcher matcher = pattern.matcher(text);
-
-            if (matcher.find()) {
-                String timeStr = matcher.group(1);
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HHmm");
-                LocalTime time = LocalTime.parse(timeStr, formatter);
-                System.out.println("Извлечено время " + timeType + ": " + time);
-                return time;
-            }
-        } catch (Exception e) {
-            System.err.println("Ошибка парсинга времени: " + e.getMessage());
-        }
-
-        return null;
+        return ShrTelegramTokenizer.findFirstTime(text);
     }
 
     @Override
     public ParsedFlightData extractFlightDataFromTelegram(RawTelegram telegram) {
         ParsedFlightData data = new ParsedFlightData();
-        System.out.println("Извлекаем данные из телеграммы: " + telegram.getId());
 
+        // Все поля SHR (координаты, DOF/, TYP/, REG/, ID полета, время) - за один проход по тексту
         if (telegram.getShrRawText() != null) {
-            System.out.println("SHR текст: " + telegram.getShrRawText());
-
-            // Извлекаем координаты в формате "5957N02905E"
-            String coords = extractCoordinates(telegram.getShrRawText());
-            if (coords != null) {
-                data.setCoordinates(coords);
-                data.setDepartureCoords(coords);
-                data.setArrivalCoords(coords);
-                System.out.println("Извлечены координаты: " + coords);
-            } else {
-                System.out.println("Координаты не найдены в тексте");
-            }
-
-            LocalDate flightDate = extractFlightDate(telegram.getShrRawText());
-            data.setFlightDate(flightDate);
-            System.out.println("Дата полета: " + flightDate);
-
-            String droneType = extractDroneType(telegram.getShrRawText());
-            data.setDroneType(droneType);
-            System.out.println("Тип дрона: " + droneType);
-
-            String flightId = extractFlightId(telegram.getShrRawText());
-            data.setFlightId(flightId);
-            System.out.println("ID полета: " + flightId);
-
-            // Извлекаем время
-            LocalTime departureTime = extractTimeFromTelegram(telegram.getShrRawText(), "departure");
-            LocalTime arrivalTime = extractTimeFromTelegram(telegram.getShrRawText(), "arrival");
-            data.setDepartureTime(departureTime);
-            data.setArrivalTime(arrivalTime);
+            ShrTelegramTokenizer.tokenize(telegram.getShrRawText(), data);
         } else {
-            System.out.println("SHR текст пустой");
+            log.debug("SHR текст пустой, телеграмма: {}", telegram.getId());
         }
 
         data.setRawTelegram(telegram);
@@ -278,131 +315,6 @@ public class FileParserServiceImpl implements FileParserService {
         return duration;
     }
 
-    private RawTelegram parseRow(Row row) {
-        if (row.getPhysicalNumberOfCells() < 4) {
-            System.out.println("Строка содержит меньше 4 ячеек - пропускаем");
-            return null;
-        }
-
-        RawTelegram telegram = new RawTelegram();
-        telegram.setCenter(getCellStringValue(row.getCell(0)));
-        telegram.setShrRawText(getCellStringValue(row.getCell(1)));
-        telegram.setDepRawText(getCellStringValue(row.getCell(2)));
-        telegram.setArrRawText(getCellStringValue(row.getCell(3)));
-        telegram.setProcessingStatus("PENDING");
-
-        System.out.println("Создан RawTelegram: " + telegram.getShrRawText());
-        return telegram;
-    }
-
-    private String getCellStringValue(Cell cell) {
-        if (cell == null) return "";
-
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue().trim();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getLocalDateTimeCellValue().toString();
-                } else {
-                    return String.valueOf((long) cell.getNumericCellValue());
-                }
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            default:
-                return "";
-        }
-    }
-
-    private String extractCoordinates(String text) {
-        if (text == null) {
-            System.out.println("Текст для поиска координат пустой");
-            return null;
-        }
-
-        // Паттерн для координат типа "5957N02905E" или "5548N03730E"
-        Pattern pattern = Pattern.compile("(\\d{4}[NS]\\d{5}[EW])");
-        Matcher matcher = pattern.matcher(text);
-
-        if (matcher.find()) {
-            String foundCoords = matcher.group(1);
-            System.out.println("Найдены координаты в тексте: " + foundCoords);
-            String normalized = normalizeCoordinates(foundCoords);
-            System.out.println("Нормализованные координаты: " + normalized);
-            return normalized;
-        } else {
-            System.out.println("Координаты не найдены в тексте: " + text);
-            return null;
-        }
-    }
-
-    private String normalizeCoordinates(String coords) {
-        try {
-            // Пример: "6057N07345E" -> "60.950000,73.750000"
-            // Формат: DDMMNDDDMME (4 цифры широта + направление + 5 цифр долгота + направление)
-            String latStr = coords.substring(0, 4);  // "6057"
-            String latDir = coords.substring(4, 5);  // "N"
-            String lonStr = coords.substring(5, 10); // "07345" - берем 5 цифр!
-            String lonDir = coords.substring(10, 11); // "E"
-
-            System.out.println("Парсим координаты: lat=" + latStr + latDir + " lon=" + lonStr + lonDir);
-
-            // Преобразуем широту: 6057 -> 60 градусов 57 минут
-            double latDegrees = Double.parseDouble(latStr.substring(0, 2)); // 60
-            double latMinutes = Double.parseDouble(latStr.substring(2, 4)); // 57
-            double lat = latDegrees + (latMinutes / 60.0);
-            if ("S".equals(latDir)) lat = -lat;
-
-            // Преобразуем долготу: 07345 -> 073 градуса 45 минут
-            double lonDegrees = Double.parseDouble(lonStr.substring(0, 3)); // 073
-            double lonMinutes = Double.parseDouble(lonStr.substring(3, 5)); // 45
-            double lon = lonDegrees + (lonMinutes / 60.0);
-            if ("W".equals(lonDir)) lon = -lon;
-
-            String result = String.format("%.6f,%.6f", lat, lon);
-            System.out.println("Результат нормализации: " + result);
-            return result;
-
-        } catch (Exception e) {
-            System.err.println("Ошибка нормализации координат '" + coords + "': " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        }
-    }
-
-    private LocalDate extractFlightDate(String text) {
-        if (text == null) return LocalDate.now();
-
-        Pattern pattern = Pattern.compile("DOF/(\\d{6})");
-        Matcher matcher = pattern.matcher(text);
-
-        if (matcher.find()) {
-            String dateStr = matcher.group(1);
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("ddMMyy");
-            return LocalDate.parse(dateStr, formatter);
-        }
-        return LocalDate.now();
-    }
-
-    private String extractDroneType(String text) {
-        if (text == null) return "UNKNOWN";
-
-        Pattern pattern = Pattern.compile("TYP/([A-Z]{3})");
-        Matcher matcher = pattern.matcher(text);
-
-        return matcher.find() ? matcher.group(1) : "UNKNOWN";
-    }
-
-    private String extractFlightId(String text) {
-        if (text == null) return null;
-
-        String[] lines = text.split("\n");
-        if (lines.length > 0 && lines[0].startsWith("SHR-")) {
-            return lines[0].substring(4).trim();
-        }
-        return null;
-    }
-
 }
 //package com.drones.skilldrones.service;
 //
@@ -0,0 +1,412 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.Flight;
+import com.drones.skilldrones.model.RawTelegram;
+import org.locationtech.jts.geom.Point;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Загрузка телеграмм и полетов через PostgreSQL COPY (app.ingest.sink=copy).
+ * Строки потоково пишутся в текстовом формате COPY во временную staging-таблицу,
+ * после чего одной транзакцией переносятся в raw_telegrams и flights.
+ * Дубликаты по uk_flight_composite_key отбрасываются в SQL (DISTINCT ON, NOT EXISTS и ON CONFLICT DO NOTHING),
+ * телеграммы таких полетов получают статус DUPLICATE.
+ * <p>
+ * Id телеграмм и полетов выдаются блоками, как pooled-оптимизатор Hibernate (allocationSize = 50, шаг
+ * последовательностей - 02_batch_insert_sequences.sql): один nextval резервирует id с value - 49 по value,
+ * поэтому id пачки идут подряд и не пересекаются с блоками, которые выдает Hibernate.
+ */
+@Service
+public class FlightCopyLoader {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String CREATE_STAGING = """
+            CREATE TEMP TABLE flight_ingest_staging (
+                row_no              INTEGER,
+                raw_id              BIGINT,
+                flight_id           BIGINT,
+                new_raw             BOOLEAN,
+                center              VARCHAR(255),
+                shr_raw_text        TEXT,
+                dep_raw_text        TEXT,
+                arr_raw_text        TEXT,
+                file_name           VARCHAR(255),
+                raw_status          VARCHAR(50),
+                has_flight          BOOLEAN,
+                flight_code         VARCHAR(100),
+                drone_type          VARCHAR(100),
+                drone_registration  VARCHAR(100),
+                flight_date         DATE,
+                departure_time      TIME,
+                arrival_time        TIME,
+                duration_minutes    INTEGER,
+                departure_coords    VARCHAR(100),
+                arrival_coords      VARCHAR(100),
+                flight_status       VARCHAR(50),
+                departure_point     GEOMETRY(Point, 4326),
+                arrival_point       GEOMETRY(Point, 4326),
+                departure_region_id BIGINT,
+                arrival_region_id   BIGINT,
+                created_at          TIMESTAMP,
+                inserted            BOOLEAN DEFAULT FALSE
+            ) ON COMMIT DROP
+            """;
+
+    private static final String COPY_STAGING = """
+            COPY flight_ingest_staging (
+                row_no, raw_id, new_raw, center, shr_raw_text, dep_raw_text, arr_raw_text, file_name, raw_status,
+                has_flight, flight_code, drone_type, drone_registration, flight_date, departure_time, arrival_time,
+                duration_minutes, departure_coords, arrival_coords, flight_status, departure_point, arrival_point,
+                departure_region_id, arrival_region_id, created_at
+            ) FROM STDIN (FORMAT text)
+            """;
+
+    // Размер блока id - allocationSize в @SequenceGenerator RawTelegram и Flight и шаг их последовательностей
+    static final int ID_BLOCK_SIZE = 50;
+
+    private static final String SELECT_NEW_RAW_ROWS =
+            "SELECT row_no FROM flight_ingest_staging WHERE new_raw ORDER BY row_no";
+
+    private static final String ASSIGN_RAW_IDS = """
+            UPDATE flight_ingest_staging s SET raw_id = v.id
+            FROM unnest(?::int[], ?::bigint[]) AS v(row_no, id)
+            WHERE s.row_no = v.row_no
+            """;
+
+    // Полеты, которые будут вставлены: первая строка каждой четверки ключа, которой еще нет в flights
+    private static final String SELECT_NEW_FLIGHT_ROWS = """
+            SELECT row_no FROM (
+                SELECT DISTINCT ON (departure_time, arrival_time, departure_coords, arrival_coords) *
+                FROM flight_ingest_staging
+                WHERE has_flight
+                ORDER BY departure_time, arrival_time, departure_coords, arrival_coords, row_no
+            ) unique_rows
+            WHERE NOT EXISTS (SELECT 1 FROM flights f
+                              WHERE f.departure_time = unique_rows.departure_time
+                                AND f.arrival_time = unique_rows.arrival_time
+                                AND f.departure_coords = unique_rows.departure_coords
+                                AND f.arrival_coords = unique_rows.arrival_coords)
+            ORDER BY row_no
+            """;
+
+    private static final String ASSIGN_FLIGHT_IDS = """
+            UPDATE flight_ingest_staging s SET flight_id = v.id
+            FROM unnest(?::int[], ?::bigint[]) AS v(row_no, id)
+            WHERE s.row_no = v.row_no
+            """;
+
+    private static final String NEXT_BLOCKS = "SELECT nextval(?::regclass) FROM generate_series(1, ?)";
+
+    private static final String MERGE_RAW_TELEGRAMS = """
+            INSERT INTO raw_telegrams (id, center, shr_raw_text, dep_raw_text, arr_raw_text,
+                                       file_name, processed_at, processing_status)
+            SELECT raw_id, center, shr_raw_text, dep_raw_text, arr_raw_text, file_name, NOW(), raw_status
+            FROM flight_ingest_staging
+            WHERE new_raw
+            ORDER BY row_no
+            """;
+
+    // uk_flight_composite_key включает flight_date (ключ секционирования flights), поэтому полет
+    // с той же четверкой ключа и другой датой отсекается NOT EXISTS (SELECT_NEW_FLIGHT_ROWS), а не ON CONFLICT.
+    // Id выданы только отобранным строкам; ON CONFLICT - для полетов параллельной загрузки
+    private static final String MERGE_FLIGHTS = """
+            WITH inserted AS (
+                INSERT INTO flights (flight_id, raw_id, flight_code, drone_type, drone_registration, flight_date,
+                                     departure_time, arrival_time, duration_minutes, departure_coords, arrival_coords,
+                                     processing_status, departure_point, arrival_point,
+                                     departure_region_id, arrival_region_id, created_at, updated_at)
+                SELECT flight_id, raw_id, flight_code, drone_type, drone_registration, flight_date,
+                       departure_time, arrival_time, duration_minutes, departure_coords, arrival_coords,
+                       flight_status, departure_point, arrival_point,
+                       departure_region_id, arrival_region_id, created_at, created_at
+                FROM flight_ingest_staging
+                WHERE flight_id IS NOT NULL
+                ORDER BY row_no
+                ON CONFLICT DO NOTHING
+                RETURNING raw_id
+            )
+            UPDATE flight_ingest_staging s SET inserted = TRUE
+            FROM inserted i
+            WHERE s.raw_id = i.raw_id
+            """;
+
+    private static final String MARK_DUPLICATES = """
+            UPDATE raw_telegrams r SET processing_status = 'DUPLICATE'
+            FROM flight_ingest_staging s
+            WHERE r.id = s.raw_id AND s.has_flight AND NOT s.inserted
+            """;
+
+    private static final String SELECT_INSERTED_ROWS =
+            "SELECT row_no FROM flight_ingest_staging WHERE inserted ORDER BY row_no";
+
+    private final DataSource dataSource;
+    private final FlightRollupService flightRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public FlightCopyLoader(DataSource dataSource, FlightRollupService flightRollupService,
+                            ApplicationEventPublisher eventPublisher) {
+        this.dataSource = dataSource;
+        this.flightRollupService = flightRollupService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Загружает пачку телеграмм и созданных из них полетов.
+     * Контрольная точка задачи загрузки (если не null) пишется в той же транзакции
+     *
+     * @return количество реально вставленных полетов (без дубликатов)
+     */
+    public int load(List<RawTelegram> telegrams, List<Flight> flights, IngestCheckpoint checkpoint) {
+        Map<RawTelegram, Flight> flightByTelegram = new IdentityHashMap<>(flights.size());
+        for (Flight flight : flights) {
+            flightByTelegram.put(flight.getRawTelegram(), flight);
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                List<Flight> inserted = copyAndMerge(connection, telegrams, flightByTelegram);
+                if (checkpoint != null) {
+                    checkpoint.write(connection);
+                }
+                connection.commit();
+                eventPublisher.publishEvent(new FlightsInsertedEvent(inserted));
+                return inserted.size();
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Ошибка загрузки полетов через COPY: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return реально вставленные полеты (без дубликатов)
+     */
+    private List<Flight> copyAndMerge(Connection connection, List<RawTelegram> telegrams,
+                             Map<RawTelegram, Flight> flightByTelegram) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING);
+        }
+
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        LocalDateTime now = LocalDateTime.now();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new PGCopyOutputStream(pgConnection, COPY_STAGING, COPY_BUFFER_SIZE), StandardCharsets.UTF_8),
+                COPY_BUFFER_SIZE)) {
+            int rowNo = 0;
+            for (RawTelegram telegram : telegrams) {
+                writeRow(out, rowNo++, telegram, flightByTelegram.get(telegram), now);
+            }
+        }
+
+        assignIds(connection, SELECT_NEW_RAW_ROWS, ASSIGN_RAW_IDS, "raw_telegrams_id_seq");
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(MERGE_RAW_TELEGRAMS);
+        }
+        assignIds(connection, SELECT_NEW_FLIGHT_ROWS, ASSIGN_FLIGHT_IDS, "flights_flight_id_seq");
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(MERGE_FLIGHTS);
+            statement.executeUpdate(MARK_DUPLICATES);
+            flightRollupService.recordInsertedFromStaging(statement);
+
+            List<Flight> inserted = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery(SELECT_INSERTED_ROWS)) {
+                while (rs.next()) {
+                    inserted.add(flightByTelegram.get(telegrams.get(rs.getInt(1))));
+                }
+            }
+            return inserted;
+        }
+    }
+
+    /**
+     * Выдает строкам staging, отобранным selectRows, id из блоков последовательности sequence
+     */
+    private static void assignIds(Connection connection, String selectRows, String assign,
+                                  String sequence) throws SQLException {
+        List<Integer> rows = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(selectRows)) {
+            while (rs.next()) {
+                rows.add(rs.getInt(1));
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        long[] ids = allocateIds(nextBlocks(connection, sequence, (rows.size() + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE),
+                rows.size());
+        Long[] boxedIds = new Long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            boxedIds[i] = ids[i];
+        }
+        try (PreparedStatement statement = connection.prepareStatement(assign)) {
+            statement.setArray(1, connection.createArrayOf("int4", rows.toArray()));
+            statement.setArray(2, connection.createArrayOf("int8", boxedIds));
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Концы блоков: сначала blocks значений одним запросом, дальше (если allocateIds отбросил значение) - по одному
+     */
+    private static LongSupplier nextBlocks(Connection connection, String sequence, int blocks) throws SQLException {
+        List<Long> prefetched = new ArrayList<>(blocks);
+        try (PreparedStatement statement = connection.prepareStatement(NEXT_BLOCKS)) {
+            statement.setString(1, sequence);
+            statement.setInt(2, blocks);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    prefetched.add(rs.getLong(1));
+                }
+            }
+        }
+        Iterator<Long> values = prefetched.iterator();
+        return () -> {
+            if (values.hasNext()) {
+                return values.next();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(NEXT_BLOCKS)) {
+                statement.setString(1, sequence);
+                statement.setInt(2, 1);
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Ошибка чтения последовательности " + sequence, e);
+            }
+        };
+    }
+
+    /**
+     * count id из блоков по ID_BLOCK_SIZE: значение последовательности - конец блока, как у pooled-оптимизатора.
+     * Значение меньше размера блока (первое значение новой последовательности) блоком не считается
+     */
+    static long[] allocateIds(LongSupplier nextBlockEnd, int count) {
+        long[] ids = new long[count];
+        int i = 0;
+        while (i < count) {
+            long blockEnd = nextBlockEnd.getAsLong();
+            if (blockEnd < ID_BLOCK_SIZE) {
+                continue;
+            }
+            for (long id = blockEnd - ID_BLOCK_SIZE + 1; id <= blockEnd && i < count; id++) {
+                ids[i++] = id;
+            }
+        }
+        return ids;
+    }
+
+    private void writeRow(Writer out, int rowNo, RawTelegram telegram, Flight flight,
+                          LocalDateTime now) throws IOException {
+        writeValue(out, rowNo);
+        writeValue(out, telegram.getId());
+        writeValue(out, telegram.getId() == null);
+        writeValue(out, telegram.getCenter());
+        writeValue(out, telegram.getShrRawText());
+        writeValue(out, telegram.getDepRawText());
+        writeValue(out, telegram.getArrRawText());
+        writeValue(out, telegram.getFileName());
+        writeValue(out, telegram.getProcessingStatus());
+        writeValue(out, flight != null);
+
+        if (flight != null) {
+            writeValue(out, flight.getFlightCode());
+            writeValue(out, flight.getDroneType());
+            writeValue(out, flight.getDroneRegistration());
+            writeValue(out, flight.getFlightDate());
+            writeValue(out, flight.getDepartureTime());
+            writeValue(out, flight.getArrivalTime());
+            writeValue(out, flight.getDurationMinutes());
+            writeValue(out, flight.getDepartureCoords());
+            writeValue(out, flight.getArrivalCoords());
+            writeValue(out, flight.getProcessingStatus());
+            writePoint(out, flight.getDeparturePoint());
+            writePoint(out, flight.getArrivalPoint());
+            writeValue(out, flight.getDepartureRegion() != null ? flight.getDepartureRegion().getRegionId() : null);
+            writeValue(out, flight.getArrivalRegion() != null ? flight.getArrivalRegion().getRegionId() : null);
+        } else {
+            for (int i = 0; i < 14; i++) {
+                writeValue(out, null);
+            }
+        }
+
+        // created_at - последняя колонка строки
+        out.write(now.toString());
+        out.write('\n');
+    }
+
+    /**
+     * Точка в EWKT: PostGIS принимает его как текстовое представление geometry(Point,4326)
+     */
+    private void writePoint(Writer out, Point point) throws IOException {
+        if (point == null) {
+            writeValue(out, null);
+            return;
+        }
+        out.write("SRID=4326;POINT(");
+        out.write(Double.toString(point.getX()));
+        out.write(' ');
+        out.write(Double.toString(point.getY()));
+        out.write(")\t");
+    }
+
+    private void writeValue(Writer out, Object value) throws IOException {
+        if (value == null) {
+            out.write("\\N");
+        } else if (value instanceof String text) {
+            writeEscaped(out, text);
+        } else if (value instanceof Boolean flag) {
+            out.write(flag ? 't' : 'f');
+        } else {
+            out.write(value.toString());
+        }
+        out.write('\t');
+    }
+
+    /**
+     * Экранирование для текстового формата COPY: \, табуляция и переводы строк
+     */
+    private void writeEscaped(Writer out, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> out.write("\\\\");
+                case '\t' -> out.write("\\t");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                default -> out.write(c);
+            }
+        }
+    }
+}
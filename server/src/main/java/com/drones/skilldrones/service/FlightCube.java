@@ -0,0 +1,585 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.Flight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Колоночное in-memory хранилище полетов для метрик (см. {@link MetricsService}).
+ * <p>
+ * Каждый полет с датой занимает по элементу в примитивных массивах: день (epoch day),
+ * минута суток вылета, длительность в минутах, порядковые номера региона вылета и типа БПЛА
+ * в словарях - около 16 байт на полет. Неизвестные значения кодируются так, чтобы проход
+ * обходился без ветвлений: минута {@link #UNKNOWN_MINUTE} попадает в отдельный 25-й "час",
+ * номер 0 в словарях означает "не указан", длительность -1 не входит в среднее.
+ * <p>
+ * Массивы разбиты на блоки по {@link #CHUNK_ROWS} строк с минимальным и максимальным днем блока
+ * (zone map): блоки вне периода пропускаются, блоки целиком внутри периода считаются без проверки даты.
+ * При загрузке строки упорядочены по дате, поэтому границы блоков узкие.
+ * Блоки делятся между потоками ForkJoinPool, частичные результаты складываются.
+ * <p>
+ * Хранилище загружается из flights при старте, вставленные полеты дописываются после фиксации
+ * транзакции записи ({@link FlightsInsertedEvent}), после удаления и пакетной геопривязки
+ * ({@link FlightsModifiedEvent}) - перечитывается в фоне целиком.
+ * Запись идет только в хвост массивов за пределами опубликованного размера,
+ * поэтому читатели работают без блокировок со снимком {@link Columns}.
+ */
+@Component
+public class FlightCube {
+    private static final Logger log = LoggerFactory.getLogger(FlightCube.class);
+
+    static final int UNKNOWN_MINUTE = 24 * 60;
+    static final int HOUR_SLOTS = 25;
+    static final int CHUNK_ROWS = 1 << 14;
+
+    private static final int UNKNOWN_DURATION = -1;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int FETCH_SIZE = 10_000;
+    // Меньше этого блоков на поток параллельный проход не окупается
+    private static final int MIN_CHUNKS_PER_PART = 8;
+
+    private static final String LOAD = """
+            SELECT flight_date, departure_time, duration_minutes, departure_region_id, drone_type
+            FROM flights
+            WHERE flight_date IS NOT NULL
+            ORDER BY flight_date
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Dictionary<Long> regions = new Dictionary<>();
+    private final Dictionary<String> droneTypes = new Dictionary<>();
+
+    private final Object appendLock = new Object();
+    // Не монитор: перечитывание идет в виртуальном потоке и держит блокировку на время чтения из БД,
+    // synchronized закрепил бы поток-носитель на все это время
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+    private volatile Columns columns = Columns.empty(0);
+    private volatile boolean loaded;
+    // Полеты, вставленные во время перечитывания; применяются к новому снимку. Под appendLock
+    private List<Flight> appendedDuringReload;
+
+    public FlightCube(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.error("Хранилище полетов для метрик не загружено: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Загружает хранилище при первом обращении, если при старте это не удалось
+     */
+    public void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        reloadLock.lock();
+        try {
+            if (!loaded) {
+                reload();
+            }
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Перечитывает полеты из БД и атомарно подменяет снимок.
+     * Полеты, вставленные во время чтения, дописываются и в старый снимок, и в новый.
+     * Полет, транзакция которого зафиксирована в момент начала чтения, может быть учтен дважды
+     * до следующего перечитывания - для метрик это допустимо.
+     */
+    public void reload() {
+        reloadLock.lock();
+        try {
+            long start = System.currentTimeMillis();
+            synchronized (appendLock) {
+                appendedDuringReload = new ArrayList<>();
+            }
+
+            Columns fresh;
+            try {
+                fresh = readAll();
+            } catch (RuntimeException e) {
+                synchronized (appendLock) {
+                    appendedDuringReload = null;
+                }
+                throw e;
+            }
+
+            synchronized (appendLock) {
+                List<Flight> appended = appendedDuringReload;
+                appendedDuringReload = null;
+                columns = fresh;
+                appendLocked(appended);
+                loaded = true;
+            }
+            log.info("Хранилище полетов для метрик загружено: {} полетов за {} мс",
+                    columns.size(), System.currentTimeMillis() - start);
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFlightsInserted(FlightsInsertedEvent event) {
+        append(event.flights());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFlightsModified(FlightsModifiedEvent event) {
+        log.debug("Полеты изменены ({}), хранилище для метрик будет перечитано", event.reason());
+        scheduleReload();
+    }
+
+    /**
+     * Дописывает полеты в хранилище (полеты без даты пропускаются)
+     */
+    public void append(Collection<Flight> flights) {
+        if (flights.isEmpty()) {
+            return;
+        }
+        synchronized (appendLock) {
+            if (appendedDuringReload != null) {
+                appendedDuringReload.addAll(flights);
+            }
+            appendLocked(flights);
+        }
+    }
+
+    /**
+     * Перечитывает хранилище в фоне; повторные запросы во время ожидания объединяются в одно перечитывание
+     */
+    public void scheduleReload() {
+        if (!reloadScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("flight-cube-reload").start(() -> {
+            reloadLock.lock();
+            try {
+                reloadScheduled.set(false);
+                reload();
+            } catch (RuntimeException e) {
+                log.error("Ошибка перечитывания хранилища полетов для метрик: {}", e.getMessage(), e);
+            } finally {
+                reloadLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Агрегаты по полетам с датой в диапазоне [startDate, endDate]
+     */
+    public Aggregate aggregate(LocalDate startDate, LocalDate endDate) {
+        // Снимок читается раньше словарей: номера всех его строк уже есть в словарях
+        Columns snapshot = columns;
+        int regionCount = regions.size();
+        int droneTypeCount = droneTypes.size();
+        int fromDay = (int) Math.max(startDate.toEpochDay(), snapshot.minDay());
+        int toDay = (int) Math.min(endDate.toEpochDay(), snapshot.maxDay());
+        if (snapshot.size() == 0 || fromDay > toDay) {
+            return new Aggregate(fromDay, 0, regionCount, droneTypeCount);
+        }
+
+        int days = toDay - fromDay + 1;
+        int chunks = snapshot.chunks();
+        int parts = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), chunks / MIN_CHUNKS_PER_PART));
+        if (parts == 1) {
+            return scan(snapshot, fromDay, toDay, regionCount, droneTypeCount, 0, chunks);
+        }
+
+        int chunksPerPart = (chunks + parts - 1) / parts;
+        return IntStream.range(0, parts)
+                .parallel()
+                .mapToObj(part -> scan(snapshot, fromDay, toDay, regionCount, droneTypeCount,
+                        part * chunksPerPart, Math.min(chunks, (part + 1) * chunksPerPart)))
+                .reduce(Aggregate::merge)
+                .orElseGet(() -> new Aggregate(fromDay, days, regionCount, droneTypeCount));
+    }
+
+    public int size() {
+        return columns.size();
+    }
+
+    /**
+     * id региона по порядковому номеру в словаре; null для номера 0 (регион не определен)
+     */
+    public Long regionId(int ordinal) {
+        return regions.value(ordinal);
+    }
+
+    /**
+     * Тип БПЛА по порядковому номеру в словаре; null для номера 0 (тип не указан)
+     */
+    public String droneType(int ordinal) {
+        return droneTypes.value(ordinal);
+    }
+
+    private static Aggregate scan(Columns c, int fromDay, int toDay, int regionCount, int droneTypeCount,
+                                  int fromChunk, int toChunk) {
+        Aggregate result = new Aggregate(fromDay, toDay - fromDay + 1, regionCount, droneTypeCount);
+        for (int chunk = fromChunk; chunk < toChunk; chunk++) {
+            int chunkMin = c.chunkMinDay()[chunk];
+            int chunkMax = c.chunkMaxDay()[chunk];
+            if (chunkMax < fromDay || chunkMin > toDay) {
+                continue;
+            }
+            int from = chunk * CHUNK_ROWS;
+            int to = Math.min(c.size(), from + CHUNK_ROWS);
+            if (chunkMin >= fromDay && chunkMax <= toDay) {
+                result.addAll(c, from, to);
+            } else {
+                result.addInRange(c, from, to, toDay);
+            }
+        }
+        return result;
+    }
+
+    private Columns readAll() {
+        ColumnsBuilder builder = new ColumnsBuilder(Columns.empty(INITIAL_CAPACITY));
+        readOnlyTransaction.executeWithoutResult(status ->
+                jdbcTemplate.query(LOAD, rs -> {
+                    builder.add(toRow(rs));
+                }));
+        return builder.build();
+    }
+
+    private Row toRow(ResultSet rs) throws SQLException {
+        Date date = rs.getDate(1);
+        Time time = rs.getTime(2);
+        int duration = rs.getInt(3);
+        boolean durationKnown = !rs.wasNull();
+        long regionId = rs.getLong(4);
+        boolean regionKnown = !rs.wasNull();
+        String droneType = rs.getString(5);
+
+        return new Row(
+                (int) date.toLocalDate().toEpochDay(),
+                time != null ? minuteOfDay(time.toLocalTime()) : UNKNOWN_MINUTE,
+                durationKnown ? clampDuration(duration) : UNKNOWN_DURATION,
+                regionKnown ? regions.ordinal(regionId) : 0,
+                droneType != null ? droneTypes.ordinal(droneType) : 0);
+    }
+
+    private void appendLocked(Collection<Flight> flights) {
+        ColumnsBuilder builder = new ColumnsBuilder(columns);
+        for (Flight flight : flights) {
+            if (flight.getFlightDate() == null) {
+                continue;
+            }
+            Long regionId = flight.getDepartureRegion() != null ? flight.getDepartureRegion().getRegionId() : null;
+            builder.add(new Row(
+                    (int) flight.getFlightDate().toEpochDay(),
+                    flight.getDepartureTime() != null ? minuteOfDay(flight.getDepartureTime()) : UNKNOWN_MINUTE,
+                    flight.getDurationMinutes() != null ? clampDuration(flight.getDurationMinutes()) : UNKNOWN_DURATION,
+                    regionId != null ? regions.ordinal(regionId) : 0,
+                    flight.getDroneType() != null ? droneTypes.ordinal(flight.getDroneType()) : 0));
+        }
+        columns = builder.build();
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static int clampDuration(int minutes) {
+        return minutes < 0 ? UNKNOWN_DURATION : Math.min(minutes, Short.MAX_VALUE);
+    }
+
+    /**
+     * Результат прохода по хранилищу. byDayHour индексируется (день от fromDay) * 25 + час,
+     * слот 24 - время вылета неизвестно; byRegion и byDroneType - порядковыми номерами словарей
+     */
+    public static final class Aggregate {
+        private final int fromDay;
+        private final int days;
+        private final int[] byDayHour;
+        private final int[] byRegion;
+        private final int[] byDroneType;
+        private long durationSum;
+        private long durationCount;
+
+        private Aggregate(int fromDay, int days, int regionCount, int droneTypeCount) {
+            this.fromDay = fromDay;
+            this.days = days;
+            this.byDayHour = new int[days * HOUR_SLOTS];
+            this.byRegion = new int[regionCount];
+            this.byDroneType = new int[droneTypeCount];
+        }
+
+        /**
+         * Все строки [from, to) лежат в периоде - без проверки даты и без ветвлений
+         */
+        private void addAll(Columns c, int from, int to) {
+            int[] day = c.day();
+            short[] minute = c.minute();
+            short[] duration = c.duration();
+            int[] region = c.region();
+            int[] droneType = c.droneType();
+            int[] dayHour = byDayHour;
+            int[] regionCounts = byRegion;
+            int[] droneTypeCounts = byDroneType;
+            int base = fromDay;
+            long sum = 0;
+            long count = 0;
+
+            for (int i = from; i < to; i++) {
+                dayHour[(day[i] - base) * HOUR_SLOTS + minute[i] / 60]++;
+                int d = duration[i];
+                sum += d & ~(d >> 31);  // 0 для неизвестной длительности
+                count += ~d >>> 31;     // 1 для известной
+                regionCounts[region[i]]++;
+                droneTypeCounts[droneType[i]]++;
+            }
+            durationSum += sum;
+            durationCount += count;
+        }
+
+        /**
+         * Блок на границе периода - строки вне [fromDay, toDay] пропускаются
+         */
+        private void addInRange(Columns c, int from, int to, int toDay) {
+            int[] day = c.day();
+            short[] minute = c.minute();
+            short[] duration = c.duration();
+            int[] region = c.region();
+            int[] droneType = c.droneType();
+            long sum = 0;
+            long count = 0;
+
+            for (int i = from; i < to; i++) {
+                int d = day[i];
+                if (d < fromDay || d > toDay) {
+                    continue;
+                }
+                byDayHour[(d - fromDay) * HOUR_SLOTS + minute[i] / 60]++;
+                int minutes = duration[i];
+                if (minutes >= 0) {
+                    sum += minutes;
+                    count++;
+                }
+                byRegion[region[i]]++;
+                byDroneType[droneType[i]]++;
+            }
+            durationSum += sum;
+            durationCount += count;
+        }
+
+        private Aggregate merge(Aggregate other) {
+            durationSum += other.durationSum;
+            durationCount += other.durationCount;
+            add(byDayHour, other.byDayHour);
+            add(byRegion, other.byRegion);
+            add(byDroneType, other.byDroneType);
+            return this;
+        }
+
+        private static void add(int[] target, int[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+
+        public long total() {
+            long total = 0;
+            for (int count : byDayHour) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Средняя длительность по полетам с известной длительностью; null, если таких нет
+         */
+        public Double averageDuration() {
+            return durationCount > 0 ? (double) durationSum / durationCount : null;
+        }
+
+        public int days() {
+            return days;
+        }
+
+        public LocalDate date(int dayIndex) {
+            return LocalDate.ofEpochDay(fromDay + dayIndex);
+        }
+
+        public long dayCount(int dayIndex) {
+            long total = 0;
+            for (int hour = 0; hour < HOUR_SLOTS; hour++) {
+                total += byDayHour[dayIndex * HOUR_SLOTS + hour];
+            }
+            return total;
+        }
+
+        /**
+         * Количество вылетов в день dayIndex в час hour (0..23)
+         */
+        public int hourCount(int dayIndex, int hour) {
+            return byDayHour[dayIndex * HOUR_SLOTS + hour];
+        }
+
+        public int[] byRegion() {
+            return byRegion;
+        }
+
+        public int[] byDroneType() {
+            return byDroneType;
+        }
+    }
+
+    private record Row(int day, int minute, int duration, int region, int droneType) {
+    }
+
+    /**
+     * Опубликованный снимок: первые size элементов массивов неизменяемы.
+     * Границы последнего блока могут расшириться дописанными позже строками - это безопасно,
+     * строки за пределами size снимок не читает
+     */
+    private record Columns(int size, int minDay, int maxDay,
+                           int[] day, short[] minute, short[] duration, int[] region, int[] droneType,
+                           int[] chunkMinDay, int[] chunkMaxDay) {
+        static Columns empty(int capacity) {
+            int chunks = capacity / CHUNK_ROWS + 1;
+            return new Columns(0, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                    new int[capacity], new short[capacity], new short[capacity], new int[capacity], new int[capacity],
+                    new int[chunks], new int[chunks]);
+        }
+
+        int chunks() {
+            return (size + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        }
+    }
+
+    /**
+     * Дописывает строки после опубликованного размера, при нехватке места копирует массивы
+     */
+    private static final class ColumnsBuilder {
+        private int size;
+        private int minDay;
+        private int maxDay;
+        private int[] day;
+        private short[] minute;
+        private short[] duration;
+        private int[] region;
+        private int[] droneType;
+        private int[] chunkMinDay;
+        private int[] chunkMaxDay;
+
+        ColumnsBuilder(Columns base) {
+            size = base.size();
+            minDay = base.minDay();
+            maxDay = base.maxDay();
+            day = base.day();
+            minute = base.minute();
+            duration = base.duration();
+            region = base.region();
+            droneType = base.droneType();
+            chunkMinDay = base.chunkMinDay();
+            chunkMaxDay = base.chunkMaxDay();
+        }
+
+        void add(Row row) {
+            if (size == day.length) {
+                grow();
+            }
+            day[size] = row.day();
+            minute[size] = (short) row.minute();
+            duration[size] = (short) row.duration();
+            region[size] = row.region();
+            droneType[size] = row.droneType();
+
+            int chunk = size / CHUNK_ROWS;
+            if (size % CHUNK_ROWS == 0) {
+                chunkMinDay[chunk] = row.day();
+                chunkMaxDay[chunk] = row.day();
+            } else {
+                chunkMinDay[chunk] = Math.min(chunkMinDay[chunk], row.day());
+                chunkMaxDay[chunk] = Math.max(chunkMaxDay[chunk], row.day());
+            }
+            minDay = Math.min(minDay, row.day());
+            maxDay = Math.max(maxDay, row.day());
+            size++;
+        }
+
+        private void grow() {
+            int capacity = Math.max(INITIAL_CAPACITY, day.length + (day.length >> 1));
+            day = Arrays.copyOf(day, capacity);
+            minute = Arrays.copyOf(minute, capacity);
+            duration = Arrays.copyOf(duration, capacity);
+            region = Arrays.copyOf(region, capacity);
+            droneType = Arrays.copyOf(droneType, capacity);
+            chunkMinDay = Arrays.copyOf(chunkMinDay, capacity / CHUNK_ROWS + 1);
+            chunkMaxDay = Arrays.copyOf(chunkMaxDay, capacity / CHUNK_ROWS + 1);
+        }
+
+        Columns build() {
+            return new Columns(size, minDay, maxDay, day, minute, duration, region, droneType,
+                    chunkMinDay, chunkMaxDay);
+        }
+    }
+
+    /**
+     * Словарь значений с порядковыми номерами. Номер 0 зарезервирован за "значение не указано";
+     * номера не переиспользуются и не меняются при перечитывании
+     */
+    private static final class Dictionary<K> {
+        private final Map<K, Integer> ordinals = new HashMap<>();
+        private volatile Object[] values = new Object[1];
+
+        synchronized int ordinal(K key) {
+            Integer ordinal = ordinals.get(key);
+            if (ordinal == null) {
+                ordinal = values.length;
+                ordinals.put(key, ordinal);
+                Object[] grown = Arrays.copyOf(values, ordinal + 1);
+                grown[ordinal] = key;
+                values = grown;
+            }
+            return ordinal;
+        }
+
+        @SuppressWarnings("unchecked")
+        K value(int ordinal) {
+            return (K) values[ordinal];
+        }
+
+        int size() {
+            return values.length;
+        }
+    }
+}
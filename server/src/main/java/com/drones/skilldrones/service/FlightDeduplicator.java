@@ -0,0 +1,144 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.Flight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Отсев дубликатов по uk_flight_composite_key до вставки пачки.
+ * <p>
+ * В секционированной flights ключ дополнен flight_date, но дубликатом здесь по-прежнему считается
+ * совпадение четырех столбцов при любой дате: запрос проверяет индекс ключа в каждой секции.
+ * <p>
+ * Дубликаты внутри пачки отсекаются по хэш-множеству ключей (остается первый полет),
+ * уже сохраненные ключи ищутся одним запросом на всю пачку (unnest массивов по индексу
+ * уникального ключа) вместо построчных existsBy... и исключений при вставке.
+ * Полет, у которого не заполнена часть ключа, дубликатом не считается - как и в PostgreSQL,
+ * NULL в уникальном ключе не конфликтует.
+ */
+@Component
+public class FlightDeduplicator {
+    private static final Logger log = LoggerFactory.getLogger(FlightDeduplicator.class);
+
+    private static final String FIND_EXISTING_KEYS = """
+            SELECT k.idx
+            FROM unnest(?::text[], ?::text[], ?::text[], ?::text[])
+                     WITH ORDINALITY AS k(departure_time, arrival_time, departure_coords, arrival_coords, idx)
+            WHERE EXISTS (SELECT 1
+                          FROM flights f
+                          WHERE f.departure_time = k.departure_time::time
+                            AND f.arrival_time = k.arrival_time::time
+                            AND f.departure_coords = k.departure_coords
+                            AND f.arrival_coords = k.arrival_coords)
+            """;
+
+    private final DataSource dataSource;
+
+    public FlightDeduplicator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Удаляет из списка полеты, ключ которых повторяется в пачке или уже есть в БД.
+     * Телеграммы удаленных полетов получают статус DUPLICATE.
+     *
+     * @return количество удаленных полетов
+     */
+    public int removeDuplicates(List<Flight> flights) {
+        Set<FlightKey> seen = new HashSet<>(flights.size() * 2);
+        List<Flight> candidates = new ArrayList<>(flights.size());
+        List<Flight> duplicates = new ArrayList<>();
+
+        for (Flight flight : flights) {
+            FlightKey key = FlightKey.of(flight);
+            if (key == null) {
+                continue;
+            }
+            if (seen.add(key)) {
+                candidates.add(flight);
+            } else {
+                duplicates.add(flight);
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            try {
+                duplicates.addAll(findExisting(candidates));
+            } catch (SQLException e) {
+                // Не критично: оставшиеся дубликаты отсечет уникальный ключ при вставке
+                log.warn("Не удалось проверить дубликаты полетов пачкой: {}", e.getMessage());
+            }
+        }
+        if (duplicates.isEmpty()) {
+            return 0;
+        }
+
+        Set<Flight> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+        dropped.addAll(duplicates);
+        flights.removeIf(dropped::contains);
+        for (Flight flight : dropped) {
+            if (flight.getRawTelegram() != null) {
+                flight.getRawTelegram().setProcessingStatus("DUPLICATE");
+            }
+        }
+        return dropped.size();
+    }
+
+    private List<Flight> findExisting(List<Flight> candidates) throws SQLException {
+        int size = candidates.size();
+        String[] departureTimes = new String[size];
+        String[] arrivalTimes = new String[size];
+        String[] departureCoords = new String[size];
+        String[] arrivalCoords = new String[size];
+        for (int i = 0; i < size; i++) {
+            Flight flight = candidates.get(i);
+            departureTimes[i] = flight.getDepartureTime().toString();
+            arrivalTimes[i] = flight.getArrivalTime().toString();
+            departureCoords[i] = flight.getDepartureCoords();
+            arrivalCoords[i] = flight.getArrivalCoords();
+        }
+
+        List<Flight> existing = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(FIND_EXISTING_KEYS)) {
+            statement.setArray(1, connection.createArrayOf("text", departureTimes));
+            statement.setArray(2, connection.createArrayOf("text", arrivalTimes));
+            statement.setArray(3, connection.createArrayOf("text", departureCoords));
+            statement.setArray(4, connection.createArrayOf("text", arrivalCoords));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(candidates.get(rs.getInt(1) - 1));
+                }
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Значения столбцов uk_flight_composite_key; null, если ключ заполнен не полностью
+     */
+    private record FlightKey(LocalTime departureTime, LocalTime arrivalTime, String departureCoords, String arrivalCoords) {
+        static FlightKey of(Flight flight) {
+            if (flight.getDepartureTime() == null || flight.getArrivalTime() == null
+                    || flight.getDepartureCoords() == null || flight.getArrivalCoords() == null) {
+                return null;
+            }
+            return new FlightKey(flight.getDepartureTime(), flight.getArrivalTime(),
+                    flight.getDepartureCoords(), flight.getArrivalCoords());
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.response.FlightResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковая выгрузка полетов в NDJSON или CSV.
+ * <p>
+ * Полеты читаются страницами по возрастанию flight_id: следующая страница начинается после последнего
+ * выгруженного id (WHERE flight_id > ?), поэтому стоимость страницы не растет с глубиной выгрузки,
+ * а COUNT не нужен. С периодом страницы идут по возрастанию (flight_date, flight_id) по индексу
+ * idx_flights_date_id: страница читает только строки периода, а не весь первичный ключ с фильтром
+ * по дате. Каждая страница читается в своей короткой транзакции курсором (fetch size),
+ * строки пишутся в выходной поток сразу после чтения - память не зависит от объема выгрузки.
+ * Прерванную выгрузку можно продолжить с последнего полученного flightId (параметр afterId),
+ * с периодом - с последних полученных flightDate и flightId.
+ */
+@Service
+public class FlightExportService {
+    private static final Logger log = LoggerFactory.getLogger(FlightExportService.class);
+
+    private static final String SELECT = """
+            SELECT f.flight_id, f.drone_id, f.raw_id, f.flight_code, f.drone_type, f.drone_registration,
+                   f.flight_date, f.departure_time, f.arrival_time, f.duration_minutes,
+                   f.departure_coords, f.arrival_coords, f.departure_region_id, f.arrival_region_id,
+                   dr.name, ar.name, f.created_at, f.updated_at
+            FROM flights f
+            LEFT JOIN regions dr ON dr.region_id = f.departure_region_id
+            LEFT JOIN regions ar ON ar.region_id = f.arrival_region_id
+            """;
+    private static final String PAGE_BY_ID = SELECT + "WHERE f.flight_id > ? ORDER BY f.flight_id LIMIT ?";
+    private static final String PAGE_BY_DATE = SELECT + """
+            WHERE f.flight_date BETWEEN ? AND ? AND (f.flight_date, f.flight_id) > (?, ?)
+            ORDER BY f.flight_date, f.flight_id LIMIT ?
+            """;
+
+    private static final String[] CSV_HEADER = {
+            "flightId", "droneId", "rawId", "flightCode", "droneType", "droneRegistration",
+            "flightDate", "departureTime", "arrivalTime", "durationMinutes",
+            "departureCoords", "arrivalCoords", "departureRegionId", "arrivalRegionId",
+            "departureRegionName", "arrivalRegionName", "createdAt", "updatedAt"
+    };
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter jsonWriter;
+    private final int pageSize;
+
+    public FlightExportService(DataSource dataSource,
+                               PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper,
+                               @Value("${app.export.page-size:10000}") int pageSize,
+                               @Value("${app.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // PostgreSQL читает курсором только внутри транзакции
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Поток сбрасывается после страницы, а не после каждой строки; строки разделяются только '\n'
+        this.jsonWriter = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("");
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Пишет полеты в out: без периода - с flight_id больше afterId, с периодом - с датой в периоде
+     * после (afterDate, afterId) в порядке (flight_date, flight_id); afterDate null - с начала периода
+     *
+     * @return количество выгруженных полетов
+     */
+    public long export(Format format, LocalDate startDate, LocalDate endDate, LocalDate afterDate, long afterId,
+                       OutputStream out) throws IOException {
+        RowWriter writer = format == Format.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out, jsonWriter);
+        boolean byDate = startDate != null && endDate != null;
+        String sql = byDate ? PAGE_BY_DATE : PAGE_BY_ID;
+
+        long exported = 0;
+        // С периодом без afterDate - с первого полета периода: (startDate, 0) предшествует всем его строкам
+        LocalDate lastDate = afterDate != null ? afterDate : startDate;
+        long lastId = byDate && afterDate == null ? 0 : afterId;
+        long started = System.currentTimeMillis();
+        try {
+            while (true) {
+                List<Object> args = new ArrayList<>(5);
+                if (byDate) {
+                    args.add(startDate);
+                    args.add(endDate);
+                    args.add(lastDate);
+                }
+                args.add(lastId);
+                args.add(pageSize);
+
+                PageResult page = readOnlyTransaction.execute(status -> {
+                    PageResult result = new PageResult();
+                    jdbcTemplate.query(sql, rs -> {
+                        FlightResponse flight = toResponse(rs);
+                        try {
+                            writer.write(flight);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        result.rows++;
+                        result.lastDate = flight.flightDate();
+                        result.lastId = flight.flightId();
+                    }, args.toArray());
+                    return result;
+                });
+
+                if (page == null || page.rows == 0) {
+                    break;
+                }
+                writer.flush();
+                exported += page.rows;
+                lastDate = page.lastDate;
+                lastId = page.lastId;
+                if (page.rows < pageSize) {
+                    break;
+                }
+            }
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            // Клиент прервал загрузку
+            log.warn("Выгрузка полетов прервана после flightId {} ({} строк): {}", lastId, exported, e.getMessage());
+            throw e.getCause();
+        }
+
+        log.info("Выгружено полетов в {}: {} за {} мс", format, exported, System.currentTimeMillis() - started);
+        return exported;
+    }
+
+    private static FlightResponse toResponse(ResultSet rs) throws SQLException {
+        Date flightDate = rs.getDate(7);
+        Time departureTime = rs.getTime(8);
+        Time arrivalTime = rs.getTime(9);
+        Timestamp createdAt = rs.getTimestamp(17);
+        Timestamp updatedAt = rs.getTimestamp(18);
+        return new FlightResponse(
+                rs.getLong(1),
+                rs.getObject(2, Integer.class),
+                rs.getObject(3, Long.class),
+                rs.getString(4),
+                rs.getString(5),
+                rs.getString(6),
+                flightDate != null ? flightDate.toLocalDate() : null,
+                departureTime != null ? departureTime.toLocalTime() : null,
+                arrivalTime != null ? arrivalTime.toLocalTime() : null,
+                rs.getObject(10, Integer.class),
+                rs.getString(11),
+                rs.getString(12),
+                rs.getObject(13, Long.class),
+                rs.getObject(14, Long.class),
+                rs.getString(15),
+                rs.getString(16),
+                createdAt != null ? createdAt.toLocalDateTime() : null,
+                updatedAt != null ? updatedAt.toLocalDateTime() : null
+        );
+    }
+
+    private static final class PageResult {
+        long rows;
+        LocalDate lastDate;
+        long lastId;
+    }
+
+    private interface RowWriter {
+        void write(FlightResponse flight) throws IOException;
+
+        void flush() throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * Одна строка JSON на полет
+     */
+    private static final class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+        private final ObjectWriter jsonWriter;
+
+        NdjsonRowWriter(OutputStream out, ObjectWriter jsonWriter) throws IOException {
+            this.generator = jsonWriter.createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.jsonWriter = jsonWriter;
+        }
+
+        @Override
+        public void write(FlightResponse flight) throws IOException {
+            jsonWriter.writeValue(generator, flight);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * CSV по RFC 4180: заголовок с именами полей FlightResponse, значения с запятыми,
+     * кавычками или переводами строк заключаются в кавычки
+     */
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            writeRow((Object[]) CSV_HEADER);
+        }
+
+        @Override
+        public void write(FlightResponse f) throws IOException {
+            writeRow(f.flightId(), f.droneId(), f.rawId(), f.flightCode(), f.droneType(), f.droneRegistration(),
+                    f.flightDate(), f.departureTime(), f.arrivalTime(), f.durationMinutes(),
+                    f.departureCoords(), f.arrivalCoords(), f.departureRegionId(), f.arrivalRegionId(),
+                    f.departureRegionName(), f.arrivalRegionName(), f.createdAt(), f.updatedAt());
+        }
+
+        private void writeRow(Object... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writeValue(values[i].toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeValue(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+}
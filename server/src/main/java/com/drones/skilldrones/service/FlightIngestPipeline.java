@@ -0,0 +1,219 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.Flight;
+import com.drones.skilldrones.model.RawTelegram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Конвейер загрузки телеграмм: разбор → геопривязка → сохранение.
+ * <ul>
+ *     <li>разбор и геопривязка выполняются на виртуальных потоках, по одному на телеграмму;
+ *     геопривязка - поиск в индексе регионов в памяти, без обращений к БД, и загрузку процессора
+ *     ограничивает пул потоков-носителей виртуальных потоков (по числу ядер);</li>
+ *     <li>сохранение выполняет единственный поток-писатель пачками по batchSize;
+ *     перед записью из пачки удаляются дубликаты уже сохраненных полетов.</li>
+ * </ul>
+ * Число телеграмм, находящихся в обработке, ограничено queueCapacity: источник блокируется,
+ * пока писатель не заберет готовые полеты, поэтому память не растет с размером файла.
+ * Писатель восстанавливает порядок строк файла, поэтому у каждой пачки известна
+ * последняя строка (контрольная точка для продолжения загрузки): пачка - строки файла подряд
+ * с lastRow - size + 1 по lastRow.
+ */
+public class FlightIngestPipeline {
+    private static final Logger log = LoggerFactory.getLogger(FlightIngestPipeline.class);
+    private static final Converted END = new Converted(0, null, null);
+
+    private final Function<RawTelegram, Flight> parser;
+    private final Consumer<Flight> geolocator;
+    private final ToIntFunction<List<Flight>> deduplicator;
+    private final ChunkWriter writer;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    public FlightIngestPipeline(Function<RawTelegram, Flight> parser,
+                                Consumer<Flight> geolocator,
+                                ToIntFunction<List<Flight>> deduplicator,
+                                ChunkWriter writer,
+                                int batchSize,
+                                int queueCapacity) {
+        this.parser = parser;
+        this.geolocator = geolocator;
+        this.deduplicator = deduplicator;
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.queueCapacity = Math.max(queueCapacity, batchSize);
+    }
+
+    /**
+     * Пропускает через конвейер все телеграммы, которые источник передаст в полученный consumer.
+     * Источник выполняется в вызывающем потоке.
+     *
+     * @return количество сохраненных полетов
+     */
+    public int run(Consumer<Consumer<RawTelegram>> source) {
+        return run(source, new IngestProgress());
+    }
+
+    /**
+     * То же, с публикацией счетчиков прогресса в progress.
+     * Строки с номером не больше progress.getLastCommittedRow() уже сохранены ранее и пропускаются.
+     */
+    public int run(Consumer<Consumer<RawTelegram>> source, IngestProgress progress) {
+        long skipRows = progress.getLastCommittedRow();
+        Semaphore inFlight = new Semaphore(queueCapacity);
+        BlockingQueue<Converted> converted = new ArrayBlockingQueue<>(queueCapacity + 1);
+
+        FutureTask<Integer> writerTask = new FutureTask<>(() -> write(converted, inFlight, progress, skipRows + 1));
+        Thread.ofPlatform().name("flight-ingest-writer").start(writerTask);
+
+        RuntimeException sourceFailure = null;
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            long[] rowNo = {0};
+            source.accept(telegram -> {
+                long row = ++rowNo[0];
+                if (row <= skipRows) {
+                    return;
+                }
+                progress.rowRead();
+                acquire(inFlight);
+                workers.execute(() -> converted.add(convert(row, telegram, progress)));
+            });
+        } catch (RuntimeException e) {
+            sourceFailure = e;
+        }
+        // Пул закрыт - все телеграммы уже разобраны и стоят в очереди
+        converted.add(END);
+
+        int written = awaitWriter(writerTask);
+        if (sourceFailure != null) {
+            throw sourceFailure;
+        }
+        return written;
+    }
+
+    private Converted convert(long row, RawTelegram telegram, IngestProgress progress) {
+        try {
+            Flight flight = parser.apply(telegram);
+            geolocator.accept(flight);
+            telegram.setProcessingStatus("PROCESSED");
+            progress.rowParsed();
+            return new Converted(row, telegram, flight);
+        } catch (Exception e) {
+            telegram.setProcessingStatus("FAILED");
+            progress.rowFailed();
+            log.warn("Ошибка обработки телеграммы {}: {}", telegram.getId(), e.getMessage());
+            return new Converted(row, telegram, null);
+        }
+    }
+
+    /**
+     * Поток-писатель: восстанавливает порядок строк, собирает пачки и сохраняет их.
+     * Разрешение на новую строку возвращается источнику, когда строка попала в пачку,
+     * поэтому буфер перестановки тоже ограничен queueCapacity.
+     * После ошибки сохранения продолжает разбирать очередь, чтобы не заблокировать источник.
+     */
+    private int write(BlockingQueue<Converted> converted, Semaphore inFlight,
+                      IngestProgress progress, long firstRow) throws InterruptedException {
+        Map<Long, Converted> outOfOrder = new HashMap<>();
+        long nextRow = firstRow;
+        List<RawTelegram> chunk = new ArrayList<>(batchSize);
+        List<Flight> flights = new ArrayList<>(batchSize);
+        int written = 0;
+        RuntimeException failure = null;
+
+        for (Converted item = converted.take(); item != END; item = converted.take()) {
+            outOfOrder.put(item.row(), item);
+
+            for (Converted next = outOfOrder.remove(nextRow); next != null; next = outOfOrder.remove(nextRow)) {
+                nextRow++;
+                inFlight.release();
+                if (failure != null) {
+                    continue;
+                }
+
+                chunk.add(next.telegram());
+                if (next.flight() != null) {
+                    flights.add(next.flight());
+                }
+                if (chunk.size() >= batchSize) {
+                    try {
+                        written += writeChunk(chunk, flights, progress, nextRow - 1);
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                    chunk = new ArrayList<>(batchSize);
+                    flights = new ArrayList<>(batchSize);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        if (!chunk.isEmpty()) {
+            written += writeChunk(chunk, flights, progress, nextRow - 1);
+        }
+        return written;
+    }
+
+    private int writeChunk(List<RawTelegram> chunk, List<Flight> flights, IngestProgress progress, long lastRow) {
+        // Удаляет дубликаты из flights на месте, их телеграммы сохраняются со статусом DUPLICATE
+        int duplicates = deduplicator.applyAsInt(flights);
+        int written = writer.write(chunk, flights, lastRow);
+        progress.batchPersisted(written, flights.size() - written, duplicates, lastRow);
+        return written;
+    }
+
+    private static void acquire(Semaphore semaphore) {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Загрузка телеграмм прервана", e);
+        }
+    }
+
+    private static int awaitWriter(FutureTask<Integer> writerTask) {
+        try {
+            return writerTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Загрузка телеграмм прервана", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Ошибка сохранения полетов: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Запись пачки: chunk - телеграммы строк файла подряд до lastRow включительно,
+     * flights - полеты, созданные из них (без дубликатов)
+     *
+     * @return количество сохраненных полетов
+     */
+    @FunctionalInterface
+    public interface ChunkWriter {
+        int write(List<RawTelegram> chunk, List<Flight> flights, long lastRow);
+    }
+
+    private record Converted(long row, RawTelegram telegram, Flight flight) {
+    }
+}
@@ -0,0 +1,219 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.Flight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Помесячные секции таблицы flights (см. 13_flights_partitioning.sql).
+ * <p>
+ * PostgreSQL сам направляет вставку в секцию месяца flight_date; полеты месяца без секции попадают
+ * в flights_default, где запросы по периоду их тоже находят, но без отсечения секций.
+ * Поэтому перед записью пачки создаются секции ее месяцев ({@link #ensurePartitions}),
+ * а по расписанию - секции на несколько месяцев вперед. Созданные месяцы запоминаются,
+ * и обычная пачка обходится без обращений к БД.
+ * <p>
+ * Старые секции отсоединяются и переносятся в схему flights_archive вместе с сырыми телеграммами
+ * ({@link #archiveBefore}); счетчики отчетов за архивные месяцы удаляются.
+ * <p>
+ * Если БД не секционирована (скрипт не применен), сервис отключается и загрузка работает как раньше.
+ */
+@Service
+public class FlightPartitionService {
+    private static final Logger log = LoggerFactory.getLogger(FlightPartitionService.class);
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("flights_(\\d{4})_(\\d{2})");
+
+    private static final String SELECT_PARTITIONS = """
+            SELECT c.relname, c.reltuples::BIGINT, pg_total_relation_size(c.oid)
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'flights'::regclass
+            ORDER BY c.relname
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FlightRollupService flightRollupService;
+    private final int premakeMonths;
+
+    private final Set<YearMonth> knownMonths = ConcurrentHashMap.newKeySet();
+    private volatile boolean available;
+
+    public FlightPartitionService(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  FlightRollupService flightRollupService,
+                                  @Value("${app.flights.partitions.premake-months:3}") int premakeMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flightRollupService = flightRollupService;
+        this.premakeMonths = premakeMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepare() {
+        try {
+            Boolean partitioned = jdbcTemplate.queryForObject(
+                    "SELECT relkind = 'p' FROM pg_class WHERE oid = 'flights'::regclass", Boolean.class);
+            if (!Boolean.TRUE.equals(partitioned)) {
+                log.warn("Таблица flights не секционирована, секции по месяцам не создаются");
+                return;
+            }
+            for (PartitionInfo partition : listPartitions()) {
+                if (partition.month() != null) {
+                    knownMonths.add(partition.month());
+                }
+            }
+            available = true;
+            premake();
+        } catch (RuntimeException e) {
+            log.error("Не удалось проверить секции flights: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.flights.partitions.check-interval-ms:86400000}",
+            initialDelayString = "${app.flights.partitions.check-interval-ms:86400000}")
+    public void scheduledPremake() {
+        try {
+            premake();
+        } catch (RuntimeException e) {
+            log.error("Ошибка создания секций flights: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Создает секции текущего и следующих app.flights.partitions.premake-months месяцев
+     */
+    public void premake() {
+        if (!available) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= premakeMonths; i++) {
+            ensureMonth(current.plusMonths(i));
+        }
+    }
+
+    /**
+     * Создает секции месяцев полетов пачки, которых еще нет. Вызывается перед записью пачки,
+     * вне ее транзакции: ошибка здесь не мешает загрузке, полеты попадут в flights_default
+     */
+    public void ensurePartitions(Collection<Flight> flights) {
+        if (!available) {
+            return;
+        }
+        Set<YearMonth> missing = new TreeSet<>();
+        for (Flight flight : flights) {
+            if (flight.getFlightDate() != null) {
+                YearMonth month = YearMonth.from(flight.getFlightDate());
+                if (!knownMonths.contains(month)) {
+                    missing.add(month);
+                }
+            }
+        }
+        for (YearMonth month : missing) {
+            try {
+                ensureMonth(month);
+            } catch (RuntimeException e) {
+                log.warn("Не удалось создать секцию flights за {}: {}", month, e.getMessage());
+            }
+        }
+    }
+
+    private void ensureMonth(YearMonth month) {
+        if (knownMonths.contains(month)) {
+            return;
+        }
+        String name = jdbcTemplate.queryForObject("SELECT flights_ensure_partition(?)", String.class,
+                Date.valueOf(month.atDay(1)));
+        if (knownMonths.add(month)) {
+            log.info("Секция {} готова", name);
+        }
+    }
+
+    /**
+     * Секции flights с оценкой количества строк (по статистике) и размером с индексами
+     */
+    public List<PartitionInfo> listPartitions() {
+        return jdbcTemplate.query(SELECT_PARTITIONS, (rs, rowNum) -> {
+            String name = rs.getString(1);
+            return new PartitionInfo(name, monthOf(name), Math.max(rs.getLong(2), 0), rs.getLong(3));
+        });
+    }
+
+    /**
+     * Переносит в архив секции месяцев, целиком предшествующих месяцу before.
+     * Каждая секция архивируется своей транзакцией: отсоединение (кратковременная эксклюзивная блокировка flights),
+     * перенос телеграмм, удаление ссылок отчетов и счетчиков ее месяца
+     *
+     * @return архивированные секции и количество полетов в них
+     */
+    public Map<String, Long> archiveBefore(LocalDate before) {
+        if (!available) {
+            throw new IllegalStateException("Таблица flights не секционирована");
+        }
+        YearMonth limit = YearMonth.from(before);
+        if (!limit.isBefore(YearMonth.now().plusMonths(1))) {
+            throw new IllegalArgumentException("Текущий и будущие месяцы не архивируются");
+        }
+
+        List<PartitionInfo> candidates = new ArrayList<>();
+        for (PartitionInfo partition : listPartitions()) {
+            if (partition.month() != null && partition.month().isBefore(limit)) {
+                candidates.add(partition);
+            }
+        }
+
+        Map<String, Long> archived = new LinkedHashMap<>();
+        for (PartitionInfo partition : candidates) {
+            long start = System.currentTimeMillis();
+            Long rows = transactionTemplate.execute(status -> {
+                LocalDate from = partition.month().atDay(1);
+                flightRollupService.recordArchived(from, from.plusMonths(1));
+                return jdbcTemplate.queryForObject("SELECT flights_archive_partition(?)", Long.class,
+                        partition.name());
+            });
+            knownMonths.remove(partition.month());
+            archived.put(partition.name(), rows);
+            log.info("Секция {} перенесена в flights_archive: {} полетов за {} мс", partition.name(), rows,
+                    System.currentTimeMillis() - start);
+        }
+        return archived;
+    }
+
+    private static YearMonth monthOf(String partitionName) {
+        Matcher matcher = PARTITION_NAME.matcher(partitionName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+
+    /**
+     * Секция flights; month - null для flights_default
+     */
+    public record PartitionInfo(String name, YearMonth month, long estimatedRows, long sizeBytes) {
+    }
+}
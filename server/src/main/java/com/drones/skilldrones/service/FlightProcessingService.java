@@ -4,6 +4,7 @@ import com.drones.skilldrones.model.Flight;
 import com.drones.skilldrones.model.RawTelegram;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FlightProcessingService {
     /**
@@ -21,6 +22,19 @@ public interface FlightProcessingService {
      */
     int processBatch(List<RawTelegram> telegrams);
 
+    /**
+     * Потоковая обработка: источник передает телеграммы в конвейер по одной
+     * (разбор и геопривязка параллельно, сохранение пачками)
+     *
+     * @return количество сохраненных полетов
+     */
+    int processTelegrams(Consumer<Consumer<RawTelegram>> source);
+
+    /**
+     * Потоковая обработка с публикацией прогресса (фоновые задачи загрузки)
+     */
+    int processTelegrams(Consumer<Consumer<RawTelegram>> source, IngestProgress progress);
+
     /**
      * Получает статистику обработки
      */
@@ -7,87 +7,238 @@ import com.drones.skilldrones.model.Flight;
 import com.drones.skilldrones.model.RawTelegram;
 import com.drones.skilldrones.model.Region;
 import com.drones.skilldrones.repository.FlightRepository;
-import com.drones.skilldrones.repository.RegionRepository;
+import com.drones.skilldrones.repository.RawTelegramRepository;
+import org.locationtech.jts.geom.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class FlightProcessingServiceImpl implements FlightProcessingService {
+    private static final Logger log = LoggerFactory.getLogger(FlightProcessingServiceImpl.class);
 
     private final FileParserService fileParserService;
-    private final RegionRepository regionRepository;
     private final FlightRepository flightRepository;
+    private final RawTelegramRepository rawTelegramRepository;
     private final FlightMapper flightProcessingMapper;
+    private final BatchPersistenceService batchPersistenceService;
+    private final FlightCopyLoader flightCopyLoader;
+    private final FlightDeduplicator flightDeduplicator;
+    private final FlightRollupService flightRollupService;
+    private final FlightPartitionService flightPartitionService;
+    private final RegionSpatialIndex regionSpatialIndex;
+    private final BulkGeolocationService bulkGeolocationService;
+    private final int ingestBatchSize;
+    private final int ingestQueueCapacity;
+    private final boolean copySink;
+    private final boolean postLoadGeolocation;
 
     public FlightProcessingServiceImpl(FileParserService fileParserService,
-                                       RegionRepository regionRepository,
                                        FlightRepository flightRepository,
-                                       FlightMapper flightProcessingMapper) {
+                                       RawTelegramRepository rawTelegramRepository,
+                                       FlightMapper flightProcessingMapper,
+                                       BatchPersistenceService batchPersistenceService,
+                                       FlightCopyLoader flightCopyLoader,
+                                       FlightDeduplicator flightDeduplicator,
+                                       FlightRollupService flightRollupService,
+                                       FlightPartitionService flightPartitionService,
+                                       RegionSpatialIndex regionSpatialIndex,
+                                       BulkGeolocationService bulkGeolocationService,
+                                       @Value("${app.ingest.batch-size:500}") int ingestBatchSize,
+                                       @Value("${app.ingest.sink:jpa}") String ingestSink,
+                                       @Value("${app.ingest.queue-capacity:2000}") int ingestQueueCapacity,
+                                       @Value("${app.ingest.geolocation:inline}") String geolocationMode) {
         this.fileParserService = fileParserService;
-        this.regionRepository = regionRepository;
         this.flightRepository = flightRepository;
+        this.rawTelegramRepository = rawTelegramRepository;
         this.flightProcessingMapper = flightProcessingMapper;
+        this.batchPersistenceService = batchPersistenceService;
+        this.flightCopyLoader = flightCopyLoader;
+        this.flightDeduplicator = flightDeduplicator;
+        this.flightRollupService = flightRollupService;
+        this.flightPartitionService = flightPartitionService;
+        this.regionSpatialIndex = regionSpatialIndex;
+        this.bulkGeolocationService = bulkGeolocationService;
+        this.ingestBatchSize = ingestBatchSize;
+        this.ingestQueueCapacity = ingestQueueCapacity;
+        this.copySink = "copy".equalsIgnoreCase(ingestSink);
+        this.postLoadGeolocation = "post-load".equalsIgnoreCase(geolocationMode);
     }
 
     @Override
     @Transactional
     public void processRawTelegrams(List<RawTelegram> rawTelegrams) {
+        List<Flight> saved = new ArrayList<>();
         for (RawTelegram telegram : rawTelegrams) {
             try {
                 Flight flight = convertToFlight(telegram);
-                flightRepository.save(flight);
+                saved.add(flightRepository.save(flight));
                 telegram.setProcessingStatus("PROCESSED");
             } catch (Exception e) {
                 telegram.setProcessingStatus("FAILED");
             }
         }
+        flightRollupService.recordInserted(saved);
     }
 
     @Override
     public int processBatch(List<RawTelegram> telegrams) {
-        int successful = 0;
-        System.out.println("Начало обработки " + telegrams.size() + " телеграмм");
+        return processTelegrams(telegrams::forEach);
+    }
+
+    @Override
+    public int processTelegrams(Consumer<Consumer<RawTelegram>> source) {
+        return processTelegrams(source, new IngestProgress());
+    }
+
+    @Override
+    public int processTelegrams(Consumer<Consumer<RawTelegram>> source, IngestProgress progress) {
+        log.info("Начало обработки телеграмм");
+
+        // В режиме post-load регионы назначаются одним UPDATE в PostGIS после загрузки
+        Consumer<Flight> geolocator = postLoadGeolocation ? flight -> { } : this::performGeolocation;
+
+        // Контрольная точка задачи загрузки пишется в транзакции пачки
+        Long jobId = progress.getJobId();
+        FlightIngestPipeline pipeline = new FlightIngestPipeline(
+                this::parseFlight, geolocator, flightDeduplicator::removeDuplicates,
+                (chunk, flights, lastRow) -> persistChunk(chunk, flights,
+                        jobId != null ? new IngestCheckpoint(jobId, lastRow) : null),
+                ingestBatchSize, ingestQueueCapacity);
+        int successful = pipeline.run(source, progress);
+
+        if (postLoadGeolocation) {
+            // Все полеты без региона, а не только после максимального id до загрузки: id из блоков,
+            // выделенных раньше (pooled-оптимизатор), и id параллельных загрузок идут не по порядку
+            bulkGeolocationService.geolocateUnassigned();
+        }
+
+        log.info("Успешно обработано: {}", successful);
+        return successful;
+    }
+
+    /**
+     * Сохраняет пачку телеграмм и полетов одной транзакцией с JDBC batch-вставками,
+     * в той же транзакции - контрольную точку задачи загрузки (если не null).
+     * Если пачка не сохранилась (например, нарушение уникальности одной из строк),
+     * повторяет сохранение построчно, чтобы ошибка одной строки не теряла остальные.
+     * При app.ingest.sink=copy пачка загружается через COPY, дубликаты отбрасываются в SQL.
+     * Секции flights для месяцев пачки создаются до ее транзакции.
+     */
+    private int persistChunk(List<RawTelegram> chunk, List<Flight> flights, IngestCheckpoint checkpoint) {
+        flightPartitionService.ensurePartitions(flights);
+        if (copySink) {
+            return flightCopyLoader.load(chunk, flights, checkpoint);
+        }
+
+        List<RawTelegram> newTelegrams = new ArrayList<>();
+        for (RawTelegram telegram : chunk) {
+            if (telegram.getId() == null) {
+                newTelegrams.add(telegram);
+            }
+        }
+
+        try {
+            batchPersistenceService.saveTelegramsAndFlights(chunk, flights, checkpoint);
+            return flights.size();
+        } catch (Exception e) {
+            log.warn("Ошибка пакетного сохранения, сохраняем построчно: {}", e.getMessage());
+            // Транзакция откатилась, но id, выданные последовательностью, остались в объектах
+            newTelegrams.forEach(telegram -> telegram.setId(null));
+            flights.forEach(flight -> flight.setFlightId(null));
+            return saveRowByRow(chunk, flights, checkpoint);
+        }
+    }
+
+    /**
+     * Построчное сохранение: телеграмма, ее полет и контрольная точка на этой строке - одной транзакцией,
+     * поэтому после аварии посреди пачки уже сохраненные строки повторно не вставляются.
+     * Телеграмма, полет которой не сохранился, сохраняется со статусом FAILED
+     */
+    private int saveRowByRow(List<RawTelegram> chunk, List<Flight> flights, IngestCheckpoint checkpoint) {
+        Map<RawTelegram, Flight> flightByTelegram = new IdentityHashMap<>(flights.size());
+        for (Flight flight : flights) {
+            flightByTelegram.put(flight.getRawTelegram(), flight);
+        }
 
-        for (RawTelegram telegram : telegrams) {
+        int saved = 0;
+        // Пачка - строки файла подряд, последняя - checkpoint.lastRow()
+        long row = checkpoint != null ? checkpoint.lastRow() - chunk.size() + 1 : 0;
+        for (RawTelegram telegram : chunk) {
+            IngestCheckpoint rowCheckpoint = checkpoint != null ? checkpoint.atRow(row++) : null;
+            Flight flight = flightByTelegram.get(telegram);
+            boolean newTelegram = telegram.getId() == null;
             try {
-                Flight flight = convertToFlight(telegram);
-                Flight savedFlight = flightRepository.save(flight);
-                telegram.setProcessingStatus("PROCESSED");
-                successful++;
-                System.out.println("Создан Flight с ID: " + savedFlight.getFlightId());
+                batchPersistenceService.saveTelegramsAndFlights(List.of(telegram),
+                        flight != null ? List.of(flight) : List.of(), rowCheckpoint);
+                if (flight != null) {
+                    saved++;
+                }
             } catch (Exception e) {
+                if (flight == null) {
+                    throw e;
+                }
+                log.warn("Ошибка сохранения полета для телеграммы {}: {}", telegram.getId(), e.getMessage());
                 telegram.setProcessingStatus("FAILED");
-                System.err.println("Ошибка обработки телеграммы " + telegram.getId() + ": " + e.getMessage());
-                e.printStackTrace(); // Добавьте для деталей ошибки
+                if (newTelegram) {
+                    telegram.setId(null);
+                    batchPersistenceService.saveTelegramsAndFlights(List.of(telegram), List.of(), rowCheckpoint);
+                } else {
+                    rawTelegramRepository.save(telegram);
+                }
             }
         }
-
-        System.out.println("Успешно обработано: " + successful + " из " + telegrams.size());
-        return successful;
+        return saved;
     }
 
-    @Transactional
     @Override
     public Flight convertToFlight(RawTelegram telegram) {
+        Flight flight = parseFlight(telegram);
+        performGeolocation(flight);
+        return flight;
+    }
+
+    /**
+     * Разбор телеграммы в полет без обращений к БД (стадия разбора конвейера)
+     */
+    private Flight parseFlight(RawTelegram telegram) {
         // Парсим данные из телеграммы
         ParsedFlightData parsedData = fileParserService.extractFlightDataFromTelegram(telegram);
 
         // Используем маппер для основного преобразования
         Flight flight = flightProcessingMapper.toFlight(parsedData);
+        flight.setRawTelegram(telegram);
 
         // Дополнительная бизнес-логика, которая не входит в маппер
         setFlightTimes(flight, parsedData, telegram);
-        performGeolocation(flight);
+        setDeparturePoint(flight, parsedData.getCoordinates());
         calculateDuration(flight);
 
         return flight;
     }
 
+    /**
+     * Точка вылета из нормализованных координат "lat,lon" (маппер ее не заполняет)
+     */
+    private void setDeparturePoint(Flight flight, String coordinates) {
+        Point point = flightProcessingMapper.coordinatesToPoint(coordinates);
+        if (point != null) {
+            point.setSRID(4326);
+            flight.setDeparturePoint(point);
+        }
+    }
+
     private void setFlightTimes(Flight flight, ParsedFlightData parsedData, RawTelegram telegram) {
         // Парсим время из телеграммы (если есть соответствующая логика в FileParserService)
         LocalTime departureTime = parseDepartureTime(telegram);
@@ -109,11 +260,11 @@ public class FlightProcessingServiceImpl implements FlightProcessingService {
     }
 
     /**
-     * Выполняет геопривязку к регионам
+     * Выполняет геопривязку к регионам по in-memory индексу, без запроса к БД
      */
     private void performGeolocation(Flight flight) {
         if (flight.getDeparturePoint() != null) {
-            Optional<Region> departureRegion = regionRepository.findRegionByPoint(flight.getDeparturePoint());
+            Optional<Region> departureRegion = regionSpatialIndex.findRegion(flight.getDeparturePoint());
             departureRegion.ifPresent(flight::setDepartureRegion);
 
             // Для простоты считаем, что вылет и прилет в одном месте
@@ -138,33 +289,16 @@ public class FlightProcessingServiceImpl implements FlightProcessingService {
      * Парсит время вылета из телеграммы
      */
     private LocalTime parseDepartureTime(RawTelegram telegram) {
-        // Реализация парсинга времени из DEP-телеграммы
-        // Пример: поиск паттерна времени в dep_raw_text
-        if (telegram.getDepRawText() != null) {
-            // Паттерн для времени: ATD 0705
-            java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("ATD (\\d{4})");
-            java.util.regex.Matcher matcher = pattern.matcher(telegram.getDepRawText());
-            if (matcher.find()) {
-                return flightProcessingMapper.extractTime(matcher.group(1));
-            }
-        }
-        return null;
+        // Пример: "-ATD 0705" в dep_raw_text
+        return ShrTelegramTokenizer.findTimeAfter(telegram.getDepRawText(), "ATD ");
     }
 
     /**
      * Парсит время прилета из телеграммы
      */
     private LocalTime parseArrivalTime(RawTelegram telegram) {
-        // Реализация парсинга времени из ARR-телеграммы
-        if (telegram.getArrRawText() != null) {
-            // Паттерн для времени: ATA 1250
-            java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("ATA (\\d{4})");
-            java.util.regex.Matcher matcher = pattern.matcher(telegram.getArrRawText());
-            if (matcher.find()) {
-                return flightProcessingMapper.extractTime(matcher.group(1));
-            }
-        }
-        return null;
+        // Пример: "-ATA 1250" в arr_raw_text
+        return ShrTelegramTokenizer.findTimeAfter(telegram.getArrRawText(), "ATA ");
     }
 
     @Override
@@ -0,0 +1,443 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.RegionFlightCount;
+import com.drones.skilldrones.model.Flight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Предагрегированные счетчики полетов для отчетов:
+ * <ul>
+ *     <li>flight_stats_daily_region - по дате и региону вылета;</li>
+ *     <li>flight_stats_daily_drone_type - по дате и типу БПЛА;</li>
+ *     <li>flight_stats_hourly - по дате и часу вылета (-1 - время вылета неизвестно),
+ *     сумма по этой таблице дает общее число полетов.</li>
+ * </ul>
+ * Счетчики обновляются приращениями в той же транзакции, что и запись полетов
+ * (пакетная вставка, COPY, построчное сохранение, удаление, пакетная геопривязка),
+ * поэтому отчет за любой период читает несколько сотен строк вместо всех полетов.
+ * Там же дни полетов с регионом отмечаются в region_metrics_dirty_days для пересчета метрик регионов,
+ * а версии затронутых дат в flight_data_versions увеличиваются (см. {@link #dataVersion}).
+ * Полеты без даты в счетчики не попадают - отчеты выбирают полеты по дате.
+ * <p>
+ * Пока счетчики не построены (или отключены app.report.use-rollups), отчеты считаются
+ * группировкой в SQL по таблице flights, см. {@link #isAvailable()}.
+ * <p>
+ * Через этот же сервис проходят все записи полетов, поэтому он публикует
+ * {@link FlightsInsertedEvent} и {@link FlightsModifiedEvent} для данных в памяти ({@link FlightCube}).
+ */
+@Service
+public class FlightRollupService {
+    private static final Logger log = LoggerFactory.getLogger(FlightRollupService.class);
+
+    private static final int UNKNOWN_HOUR = -1;
+
+    private static final String UPSERT_REGION = """
+            INSERT INTO flight_stats_daily_region (flight_date, region_id, flight_count) VALUES (?, ?, ?)
+            ON CONFLICT (flight_date, region_id)
+            DO UPDATE SET flight_count = flight_stats_daily_region.flight_count + EXCLUDED.flight_count
+            """;
+    private static final String UPSERT_DRONE_TYPE = """
+            INSERT INTO flight_stats_daily_drone_type (flight_date, drone_type, flight_count) VALUES (?, ?, ?)
+            ON CONFLICT (flight_date, drone_type)
+            DO UPDATE SET flight_count = flight_stats_daily_drone_type.flight_count + EXCLUDED.flight_count
+            """;
+    private static final String UPSERT_HOURLY = """
+            INSERT INTO flight_stats_hourly (flight_date, hour, flight_count) VALUES (?, ?, ?)
+            ON CONFLICT (flight_date, hour)
+            DO UPDATE SET flight_count = flight_stats_hourly.flight_count + EXCLUDED.flight_count
+            """;
+
+    private static final String BUMP_DATA_VERSION = """
+            INSERT INTO flight_data_versions (flight_date, version) VALUES (?, 1)
+            ON CONFLICT (flight_date) DO UPDATE SET version = flight_data_versions.version + 1
+            """;
+
+    // Дни, метрики регионов за которые нужно пересчитать (см. RegionMetricsServiceImpl)
+    private static final String MARK_METRICS_DAY =
+            "INSERT INTO region_metrics_dirty_days (metric_date) VALUES (?) ON CONFLICT DO NOTHING";
+
+    // Приращения из staging-таблицы загрузки через COPY (см. FlightCopyLoader)
+    private static final String STAGING_REGION = """
+            INSERT INTO flight_stats_daily_region (flight_date, region_id, flight_count)
+            SELECT flight_date, departure_region_id, COUNT(*)
+            FROM flight_ingest_staging
+            WHERE inserted AND flight_date IS NOT NULL AND departure_region_id IS NOT NULL
+            GROUP BY flight_date, departure_region_id
+            ORDER BY flight_date, departure_region_id
+            ON CONFLICT (flight_date, region_id)
+            DO UPDATE SET flight_count = flight_stats_daily_region.flight_count + EXCLUDED.flight_count
+            """;
+    private static final String STAGING_DRONE_TYPE = """
+            INSERT INTO flight_stats_daily_drone_type (flight_date, drone_type, flight_count)
+            SELECT flight_date, drone_type, COUNT(*)
+            FROM flight_ingest_staging
+            WHERE inserted AND flight_date IS NOT NULL AND drone_type IS NOT NULL
+            GROUP BY flight_date, drone_type
+            ORDER BY flight_date, drone_type
+            ON CONFLICT (flight_date, drone_type)
+            DO UPDATE SET flight_count = flight_stats_daily_drone_type.flight_count + EXCLUDED.flight_count
+            """;
+    private static final String STAGING_HOURLY = """
+            INSERT INTO flight_stats_hourly (flight_date, hour, flight_count)
+            SELECT flight_date, COALESCE(EXTRACT(HOUR FROM departure_time)::SMALLINT, -1) AS hour, COUNT(*)
+            FROM flight_ingest_staging
+            WHERE inserted AND flight_date IS NOT NULL
+            GROUP BY 1, 2
+            ORDER BY 1, 2
+            ON CONFLICT (flight_date, hour)
+            DO UPDATE SET flight_count = flight_stats_hourly.flight_count + EXCLUDED.flight_count
+            """;
+    private static final String STAGING_DATA_VERSIONS = """
+            INSERT INTO flight_data_versions (flight_date, version)
+            SELECT DISTINCT flight_date, 1
+            FROM flight_ingest_staging
+            WHERE inserted AND flight_date IS NOT NULL
+            ORDER BY flight_date
+            ON CONFLICT (flight_date) DO UPDATE SET version = flight_data_versions.version + 1
+            """;
+    private static final String STAGING_METRICS_DAYS = """
+            INSERT INTO region_metrics_dirty_days (metric_date)
+            SELECT DISTINCT flight_date
+            FROM flight_ingest_staging
+            WHERE inserted AND flight_date IS NOT NULL AND departure_region_id IS NOT NULL
+            ORDER BY flight_date
+            ON CONFLICT DO NOTHING
+            """;
+
+    // Полеты периода [start, end) перенесены в архив (см. FlightPartitionService): их счетчики удаляются
+    private static final String[] ARCHIVE_PERIOD = {
+            """
+            INSERT INTO region_metrics_dirty_days (metric_date)
+            SELECT DISTINCT flight_date FROM flight_stats_daily_region
+            WHERE flight_date >= ? AND flight_date < ?
+            ORDER BY flight_date
+            ON CONFLICT DO NOTHING
+            """,
+            "UPDATE flight_data_versions SET version = version + 1 WHERE flight_date >= ? AND flight_date < ?",
+            "DELETE FROM flight_stats_daily_region WHERE flight_date >= ? AND flight_date < ?",
+            "DELETE FROM flight_stats_daily_drone_type WHERE flight_date >= ? AND flight_date < ?",
+            "DELETE FROM flight_stats_hourly WHERE flight_date >= ? AND flight_date < ?"
+    };
+
+    // Регионы загружены заново (RegionAnalysisService.saveRegions): названия и площади регионов входят
+    // в отчеты и метрики регионов, поэтому устаревают версии всех дат и метрики всех дней с полетами
+    private static final String[] REGIONS_CHANGED = {
+            "UPDATE regions_generation SET generation = generation + 1",
+            "UPDATE flight_data_versions SET version = version + 1",
+            """
+            INSERT INTO region_metrics_dirty_days (metric_date)
+            SELECT flight_date FROM flight_data_versions
+            ORDER BY flight_date
+            ON CONFLICT DO NOTHING
+            """
+    };
+
+    private static final String[] REBUILD = {
+            "LOCK TABLE flight_stats_daily_region, flight_stats_daily_drone_type, flight_stats_hourly IN EXCLUSIVE MODE",
+            "DELETE FROM flight_stats_daily_region",
+            "DELETE FROM flight_stats_daily_drone_type",
+            "DELETE FROM flight_stats_hourly",
+            """
+            INSERT INTO flight_stats_daily_region (flight_date, region_id, flight_count)
+            SELECT flight_date, departure_region_id, COUNT(*) FROM flights
+            WHERE flight_date IS NOT NULL AND departure_region_id IS NOT NULL
+            GROUP BY flight_date, departure_region_id
+            """,
+            """
+            INSERT INTO flight_stats_daily_drone_type (flight_date, drone_type, flight_count)
+            SELECT flight_date, drone_type, COUNT(*) FROM flights
+            WHERE flight_date IS NOT NULL AND drone_type IS NOT NULL
+            GROUP BY flight_date, drone_type
+            """,
+            """
+            INSERT INTO flight_stats_hourly (flight_date, hour, flight_count)
+            SELECT flight_date, COALESCE(EXTRACT(HOUR FROM departure_time)::SMALLINT, -1), COUNT(*) FROM flights
+            WHERE flight_date IS NOT NULL
+            GROUP BY 1, 2
+            """
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private volatile boolean ready;
+
+    public FlightRollupService(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${app.report.use-rollups:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Если счетчики пусты, а полеты уже есть (таблицы добавлены в существующую БД), строит их заново
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        try {
+            Boolean empty = jdbcTemplate.queryForObject(
+                    "SELECT NOT EXISTS (SELECT 1 FROM flight_stats_hourly) " +
+                            "AND EXISTS (SELECT 1 FROM flights WHERE flight_date IS NOT NULL)", Boolean.class);
+            if (Boolean.TRUE.equals(empty)) {
+                log.info("Счетчики полетов для отчетов пусты, строим по таблице flights");
+                rebuild();
+            }
+            ready = true;
+        } catch (RuntimeException e) {
+            log.error("Счетчики полетов для отчетов не построены, отчеты будут считаться по flights: {}",
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Полностью пересчитывает счетчики по таблице flights.
+     * Таблицы счетчиков блокируются на время пересчета: загрузки, которые обновляют их приращениями,
+     * дождутся окончания, поэтому их полеты не будут учтены дважды.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String sql : REBUILD) {
+                jdbcTemplate.execute(sql);
+            }
+        });
+        ready = true;
+        log.info("Счетчики полетов для отчетов пересчитаны за {} мс", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Можно ли строить отчеты по счетчикам: они включены и построены
+     */
+    public boolean isAvailable() {
+        return enabled && ready;
+    }
+
+    /**
+     * Учитывает вставленные полеты. Выполняется в транзакции вызывающего кода, если она есть
+     */
+    public void recordInserted(Collection<Flight> flights) {
+        apply(flights, 1);
+        eventPublisher.publishEvent(new FlightsInsertedEvent(List.copyOf(flights)));
+    }
+
+    /**
+     * Учитывает удаление полета
+     */
+    public void recordDeleted(Flight flight) {
+        apply(List.of(flight), -1);
+        eventPublisher.publishEvent(new FlightsModifiedEvent("удаление полета " + flight.getFlightId()));
+    }
+
+    /**
+     * Учитывает перенос полетов с датами из [start, end) в архив.
+     * Выполняется в транзакции вызывающего кода
+     */
+    public void recordArchived(LocalDate start, LocalDate end) {
+        for (String sql : ARCHIVE_PERIOD) {
+            jdbcTemplate.update(sql, Date.valueOf(start), Date.valueOf(end));
+        }
+        eventPublisher.publishEvent(new FlightsModifiedEvent("архивирование полетов с " + start + " по " + end));
+    }
+
+    /**
+     * Учитывает загрузку регионов: отчеты, сохраненные по прежним версиям данных, больше не используются
+     */
+    public void recordRegionsChanged() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String sql : REGIONS_CHANGED) {
+                jdbcTemplate.update(sql);
+            }
+        });
+    }
+
+    /**
+     * Учитывает полеты, вставленные из staging-таблицы загрузки через COPY, в той же транзакции
+     */
+    void recordInsertedFromStaging(Statement statement) throws SQLException {
+        statement.executeUpdate(STAGING_REGION);
+        statement.executeUpdate(STAGING_DRONE_TYPE);
+        statement.executeUpdate(STAGING_HOURLY);
+        statement.executeUpdate(STAGING_DATA_VERSIONS);
+        statement.executeUpdate(STAGING_METRICS_DAYS);
+    }
+
+    private void apply(Collection<Flight> flights, int sign) {
+        Map<RegionDay, Long> byRegion = new HashMap<>();
+        Map<DroneTypeDay, Long> byDroneType = new HashMap<>();
+        Map<HourDay, Long> byHour = new HashMap<>();
+        Set<LocalDate> dates = new TreeSet<>();
+        Set<LocalDate> metricsDays = new TreeSet<>();
+
+        for (Flight flight : flights) {
+            LocalDate date = flight.getFlightDate();
+            if (date == null) {
+                continue;
+            }
+            dates.add(date);
+            if (flight.getDepartureRegion() != null && flight.getDepartureRegion().getRegionId() != null) {
+                byRegion.merge(new RegionDay(date, flight.getDepartureRegion().getRegionId()), (long) sign, Long::sum);
+                metricsDays.add(date);
+            }
+            if (flight.getDroneType() != null) {
+                byDroneType.merge(new DroneTypeDay(date, flight.getDroneType()), (long) sign, Long::sum);
+            }
+            int hour = flight.getDepartureTime() != null ? flight.getDepartureTime().getHour() : UNKNOWN_HOUR;
+            byHour.merge(new HourDay(date, hour), (long) sign, Long::sum);
+        }
+
+        // Ключи обновляются в одном порядке, чтобы параллельные загрузки не взаимоблокировались
+        upsert(UPSERT_REGION, byRegion, Comparator.comparing(RegionDay::date).thenComparing(RegionDay::regionId),
+                key -> new Object[]{Date.valueOf(key.date()), key.regionId()});
+        upsert(UPSERT_DRONE_TYPE, byDroneType, Comparator.comparing(DroneTypeDay::date).thenComparing(DroneTypeDay::droneType),
+                key -> new Object[]{Date.valueOf(key.date()), key.droneType()});
+        upsert(UPSERT_HOURLY, byHour, Comparator.comparing(HourDay::date).thenComparing(HourDay::hour),
+                key -> new Object[]{Date.valueOf(key.date()), (short) key.hour()});
+
+        batchByDate(BUMP_DATA_VERSION, dates);
+        batchByDate(MARK_METRICS_DAY, metricsDays);
+    }
+
+    private void batchByDate(String sql, Set<LocalDate> dates) {
+        if (dates.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(dates.size());
+        for (LocalDate date : dates) {
+            rows.add(new Object[]{Date.valueOf(date)});
+        }
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    private <K> void upsert(String sql, Map<K, Long> counts, Comparator<K> order,
+                            Function<K, Object[]> keyColumns) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(order))
+                .forEach(entry -> {
+                    Object[] key = keyColumns.apply(entry.getKey());
+                    rows.add(new Object[]{key[0], key[1], entry.getValue()});
+                });
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    // Чтение для отчетов
+
+    /**
+     * Версия данных периода: растет при любом изменении полетов с датой в [startDate, endDate]
+     * и при загрузке регионов ({@link #recordRegionsChanged})
+     */
+    public long dataVersion(LocalDate startDate, LocalDate endDate) {
+        Long version = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(version), 0) FROM flight_data_versions WHERE flight_date BETWEEN ? AND ?",
+                Long.class, startDate, endDate);
+        return version != null ? version : 0;
+    }
+
+    /**
+     * Поколение справочника регионов: растет при каждой загрузке регионов ({@link #recordRegionsChanged})
+     */
+    public long regionsGeneration() {
+        Long generation = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(generation), 0) FROM regions_generation", Long.class);
+        return generation != null ? generation : 0;
+    }
+
+    public long countFlights(LocalDate startDate, LocalDate endDate) {
+        Long total = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(flight_count), 0) FROM flight_stats_hourly WHERE flight_date BETWEEN ? AND ?",
+                Long.class, startDate, endDate);
+        return total != null ? total : 0;
+    }
+
+    public Map<LocalDate, Long> countByDate(LocalDate startDate, LocalDate endDate) {
+        Map<LocalDate, Long> result = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT flight_date, SUM(flight_count) FROM flight_stats_hourly " +
+                        "WHERE flight_date BETWEEN ? AND ? GROUP BY flight_date HAVING SUM(flight_count) > 0 ORDER BY flight_date",
+                rs -> {
+                    result.put(rs.getDate(1).toLocalDate(), rs.getLong(2));
+                }, startDate, endDate);
+        return result;
+    }
+
+    public Map<String, Long> countByRegionName(LocalDate startDate, LocalDate endDate) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT r.name, SUM(s.flight_count) FROM flight_stats_daily_region s " +
+                        "JOIN regions r ON r.region_id = s.region_id " +
+                        "WHERE s.flight_date BETWEEN ? AND ? GROUP BY r.name HAVING SUM(s.flight_count) > 0 ORDER BY 2 DESC",
+                rs -> {
+                    result.put(rs.getString(1), rs.getLong(2));
+                }, startDate, endDate);
+        return result;
+    }
+
+    public Map<String, Long> countByDroneType(LocalDate startDate, LocalDate endDate) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT drone_type, SUM(flight_count) FROM flight_stats_daily_drone_type " +
+                        "WHERE flight_date BETWEEN ? AND ? GROUP BY drone_type HAVING SUM(flight_count) > 0 ORDER BY 2 DESC",
+                rs -> {
+                    result.put(rs.getString(1), rs.getLong(2));
+                }, startDate, endDate);
+        return result;
+    }
+
+    /**
+     * Регионы с наибольшим числом вылетов за период
+     */
+    public List<RegionFlightCount> topRegions(LocalDate startDate, LocalDate endDate, int limit) {
+        return jdbcTemplate.query("SELECT r.region_id, r.name, r.area_km2, t.flight_count FROM (" +
+                        "SELECT region_id, SUM(flight_count) AS flight_count FROM flight_stats_daily_region " +
+                        "WHERE flight_date BETWEEN ? AND ? GROUP BY region_id HAVING SUM(flight_count) > 0 " +
+                        "ORDER BY 2 DESC, region_id LIMIT ?) t " +
+                        "JOIN regions r ON r.region_id = t.region_id ORDER BY t.flight_count DESC, r.region_id",
+                (rs, rowNum) -> new RegionFlightCount(
+                        rs.getLong(1), rs.getString(2), rs.getObject(3, Double.class), rs.getLong(4)),
+                startDate, endDate, limit);
+    }
+
+    public long countRegionsWithFlights(LocalDate startDate, LocalDate endDate) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (SELECT region_id FROM flight_stats_daily_region " +
+                "WHERE flight_date BETWEEN ? AND ? GROUP BY region_id HAVING SUM(flight_count) > 0) t",
+                Long.class, startDate, endDate);
+        return count != null ? count : 0;
+    }
+
+    private record RegionDay(LocalDate date, long regionId) {
+    }
+
+    private record DroneTypeDay(LocalDate date, String droneType) {
+    }
+
+    private record HourDay(LocalDate date, int hour) {
+    }
+}
@@ -1,18 +1,24 @@
 package com.drones.skilldrones.service;
 
-import com.drones.skilldrones.model.Flight;
-import org.springframework.data.domain.Page;
+import com.drones.skilldrones.dto.response.FlightResponse;
+import com.drones.skilldrones.dto.response.SliceResponse;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.time.LocalDate;
 import java.util.Map;
 import java.util.Optional;
 
 public interface FlightService<T> {
-    Page<T> getAllFlights(Pageable pageable);
+    Sort KEYSET_SORT = Sort.by(Sort.Order.desc("flightDate"), Sort.Order.desc("flightId"));
+
+    // Списки полетов: без cursor - страница pageable, с cursor - следующая страница по ключу
+    // (только для сортировки FlightService.KEYSET_SORT, размер из pageable)
+    SliceResponse<FlightResponse> getAllFlights(Pageable pageable, String cursor);
     Optional<T> getFlightById(Long flightId);
-    Page<T> getFlightsByDateRange(LocalDate startDate, LocalDate endDate, Pageable pageable);
-    Page<T> getFlightsByDroneType(String droneType, Pageable pageable);
+    SliceResponse<FlightResponse> getFlightsByDateRange(LocalDate startDate, LocalDate endDate,
+                                                        Pageable pageable, String cursor);
+    SliceResponse<FlightResponse> getFlightsByDroneType(String droneType, Pageable pageable, String cursor);
     Map<String, Object> getFlightsStatistics();
     boolean deleteFlight(Long flightId);
 }
@@ -1,10 +1,15 @@
 package com.drones.skilldrones.service;
 
+import com.drones.skilldrones.dto.FlightCursor;
+import com.drones.skilldrones.dto.response.FlightResponse;
+import com.drones.skilldrones.dto.response.SliceResponse;
 import com.drones.skilldrones.model.Flight;
 import com.drones.skilldrones.repository.FlightRepository;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.Map;
@@ -14,15 +19,23 @@ import java.util.Optional;
 public class FlightServiceImpl implements FlightService<Flight> {
 
     private final FlightRepository flightRepository;
+    private final FlightRollupService flightRollupService;
 
 
-    public FlightServiceImpl (FlightRepository flightRepository) {
+    public FlightServiceImpl (FlightRepository flightRepository, FlightRollupService flightRollupService) {
         this.flightRepository = flightRepository;
+        this.flightRollupService = flightRollupService;
     }
 
     @Override
-    public Page<Flight> getAllFlights(Pageable pageable) {
-        return flightRepository.findAll(pageable);
+    @Transactional(readOnly = true)
+    public SliceResponse<FlightResponse> getAllFlights(Pageable pageable, String cursor) {
+        if (cursor == null) {
+            return toResponse(flightRepository.findResponses(pageable), pageable, false);
+        }
+        FlightCursor after = parseCursor(cursor, pageable);
+        return toResponse(flightRepository.findResponsesAfter(
+                after.flightDate(), after.flightId(), firstPage(pageable)), pageable, true);
     }
 
     @Override
@@ -31,13 +44,54 @@ public class FlightServiceImpl implements FlightService<Flight> {
     }
 
     @Override
-    public Page<Flight> getFlightsByDateRange(LocalDate startDate, LocalDate endDate, Pageable pageable) {
-        return flightRepository.findByFlightDateBetween(startDate, endDate, pageable);
+    @Transactional(readOnly = true)
+    public SliceResponse<FlightResponse> getFlightsByDateRange(LocalDate startDate, LocalDate endDate,
+                                                               Pageable pageable, String cursor) {
+        if (cursor == null) {
+            return toResponse(flightRepository.findResponsesByDateRange(startDate, endDate, pageable), pageable, false);
+        }
+        FlightCursor after = parseCursor(cursor, pageable);
+        return toResponse(flightRepository.findResponsesByDateRangeAfter(
+                startDate, endDate, after.flightDate(), after.flightId(), firstPage(pageable)), pageable, true);
     }
 
     @Override
-    public Page<Flight> getFlightsByDroneType(String droneType, Pageable pageable) {
-        return flightRepository.findByDroneType(droneType, pageable);
+    @Transactional(readOnly = true)
+    public SliceResponse<FlightResponse> getFlightsByDroneType(String droneType, Pageable pageable, String cursor) {
+        if (cursor == null) {
+            return toResponse(flightRepository.findResponsesByDroneType(droneType, pageable), pageable, false);
+        }
+        FlightCursor after = parseCursor(cursor, pageable);
+        return toResponse(flightRepository.findResponsesByDroneTypeAfter(
+                droneType, after.flightDate(), after.flightId(), firstPage(pageable)), pageable, true);
+    }
+
+    private static FlightCursor parseCursor(String cursor, Pageable pageable) {
+        if (!KEYSET_SORT.equals(pageable.getSort())) {
+            throw new IllegalArgumentException("Курсор поддерживается только для сортировки по flightDate desc");
+        }
+        return FlightCursor.parse(cursor);
+    }
+
+    // Запросы по курсору сортируют сами; номер страницы не используется
+    private static Pageable firstPage(Pageable pageable) {
+        return PageRequest.of(0, pageable.getPageSize());
+    }
+
+    private static SliceResponse<FlightResponse> toResponse(Slice<FlightResponse> slice, Pageable pageable,
+                                                            boolean afterCursor) {
+        // Курсор на следующую страницу выдается и после страницы по номеру, если сортировка совпадает
+        String nextCursor = slice.hasNext() && slice.hasContent() && KEYSET_SORT.equals(pageable.getSort())
+                ? FlightCursor.of(slice.getContent().get(slice.getNumberOfElements() - 1)).encode()
+                : null;
+        return new SliceResponse<>(
+                slice.getContent(),
+                afterCursor ? -1 : slice.getNumber(),
+                slice.getSize(),
+                !afterCursor && slice.isFirst(),
+                slice.hasNext(),
+                nextCursor
+        );
     }
 
     @Override
@@ -55,9 +109,12 @@ public class FlightServiceImpl implements FlightService<Flight> {
     }
 
     @Override
+    @Transactional
     public boolean deleteFlight(Long flightId) {
-        if (flightRepository.existsById(flightId)) {
-            flightRepository.deleteById(flightId);
+        Optional<Flight> flight = flightRepository.findById(flightId);
+        if (flight.isPresent()) {
+            flightRollupService.recordDeleted(flight.get());
+            flightRepository.delete(flight.get());
             return true;
         }
         return false;
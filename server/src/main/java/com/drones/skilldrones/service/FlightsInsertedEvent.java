@@ -0,0 +1,12 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.Flight;
+
+import java.util.List;
+
+/**
+ * Полеты вставлены в БД. Публикуется в транзакции записи,
+ * слушатели получают его после фиксации (см. {@link FlightCube})
+ */
+public record FlightsInsertedEvent(List<Flight> flights) {
+}
@@ -0,0 +1,8 @@
+package com.drones.skilldrones.service;
+
+/**
+ * Уже сохраненные полеты изменились (удаление, пакетная геопривязка) -
+ * производные данные в памяти нужно перечитать из БД
+ */
+public record FlightsModifiedEvent(String reason) {
+}
@@ -0,0 +1,33 @@
+package com.drones.skilldrones.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Контрольная точка задачи загрузки: строки файла до lastRow включительно сохранены.
+ * Пишется в ingest_jobs в транзакции пачки, поэтому после аварии пачка либо сохранена вместе
+ * с контрольной точкой, либо не сохранена вовсе и будет прочитана повторно
+ */
+public record IngestCheckpoint(long jobId, long lastRow) {
+    private static final String UPDATE =
+            "UPDATE ingest_jobs SET last_committed_row = ?, updated_at = NOW() WHERE job_id = ?";
+
+    /**
+     * Та же задача, строки до row включительно
+     */
+    public IngestCheckpoint atRow(long row) {
+        return new IngestCheckpoint(jobId, row);
+    }
+
+    /**
+     * Записывает контрольную точку в текущей транзакции соединения
+     */
+    public void write(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE)) {
+            statement.setLong(1, lastRow);
+            statement.setLong(2, jobId);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.response.IngestJobResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface IngestJobService {
+    /**
+     * Сохраняет файл и ставит задачу загрузки в очередь, не дожидаясь обработки.
+     * Если тот же файл (по SHA-256) уже загружался и задача не завершена, она продолжается
+     * с контрольной точки; если файл уже загружен или загружается - возвращается существующая задача.
+     *
+     * @throws IllegalStateException если очередь задач переполнена
+     */
+    IngestJobResponse submit(MultipartFile file);
+
+    /**
+     * Продолжает прерванную или завершившуюся ошибкой задачу после последней зафиксированной строки
+     *
+     * @return пустой Optional, если задача не найдена
+     * @throws IllegalArgumentException если задачу нельзя продолжить (статус или файл удален)
+     * @throws IllegalStateException если очередь задач переполнена
+     */
+    Optional<IngestJobResponse> resume(Long jobId);
+
+    /**
+     * Состояние задачи с прогрессом, скоростью и оценкой оставшегося времени
+     */
+    Optional<IngestJobResponse> getJob(Long jobId);
+
+    /**
+     * Последние задачи загрузки
+     */
+    List<IngestJobResponse> getRecentJobs();
+}
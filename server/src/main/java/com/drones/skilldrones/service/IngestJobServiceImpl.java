@@ -0,0 +1,368 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.response.IngestJobResponse;
+import com.drones.skilldrones.model.IngestJob;
+import com.drones.skilldrones.model.IngestJob.IngestJobStatus;
+import com.drones.skilldrones.repository.IngestJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновые задачи загрузки файлов с телеграммами.
+ * Файл сохраняется на диск, задача выполняется на ограниченном пуле потоков (app.ingest.jobs.workers)
+ * с ограниченной очередью; прогресс пишется в ingest_jobs после каждой сохраненной пачки.
+ * <p>
+ * Задача хранит контрольную точку - SHA-256 файла и последнюю зафиксированную строку.
+ * Незавершенная задача (ошибка, перезапуск приложения) продолжается с этой строки: при повторной
+ * загрузке того же файла, по /processing/jobs/{id}/resume или автоматически при старте.
+ * Контрольная точка пишется в транзакции каждой пачки (при построчном сохранении - каждой строки),
+ * поэтому после аварии строки до нее сохранены ровно один раз, а строки после нее не сохранены вовсе:
+ * повторно не вставляются ни полеты, ни raw_telegrams, у которых нет уникального ключа.
+ * Счетчики прогресса сохраняются после коммита пачки и после аварии могут отставать на одну пачку.
+ */
+@Service
+public class IngestJobServiceImpl implements IngestJobService {
+    private static final Logger log = LoggerFactory.getLogger(IngestJobServiceImpl.class);
+
+    private final IngestJobRepository ingestJobRepository;
+    private final FileParserService fileParserService;
+    private final FlightProcessingService flightProcessingService;
+    private final Path storageDir;
+    private final ThreadPoolExecutor executor;
+    private final boolean resumeOnStartup;
+    // Живые счетчики выполняющихся задач - свежее, чем сохраненные в БД
+    private final Map<Long, IngestProgress> runningJobs = new ConcurrentHashMap<>();
+
+    public IngestJobServiceImpl(IngestJobRepository ingestJobRepository,
+                                FileParserService fileParserService,
+                                FlightProcessingService flightProcessingService,
+                                @Value("${app.ingest.jobs.storage-dir:./uploads/ingest}") String storageDir,
+                                @Value("${app.ingest.jobs.workers:2}") int workers,
+                                @Value("${app.ingest.jobs.queue-capacity:20}") int queueCapacity,
+                                @Value("${app.ingest.jobs.resume-on-startup:true}") boolean resumeOnStartup) {
+        this.ingestJobRepository = ingestJobRepository;
+        this.fileParserService = fileParserService;
+        this.flightProcessingService = flightProcessingService;
+        this.storageDir = Paths.get(storageDir);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("ingest-job-", 1).factory());
+        this.resumeOnStartup = resumeOnStartup;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Задачи, которые выполнялись или ждали в очереди при остановке приложения, помечаются прерванными
+     * и, если включено app.ingest.jobs.resume-on-startup, продолжаются с контрольной точки
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedJobs() {
+        List<IngestJob> unfinished = ingestJobRepository.findByStatusIn(
+                EnumSet.of(IngestJobStatus.QUEUED, IngestJobStatus.RUNNING));
+        for (IngestJob job : unfinished) {
+            job.setStatus(IngestJobStatus.INTERRUPTED);
+            job.setErrorMessage("Задача прервана перезапуском приложения");
+            job.setFinishedAt(LocalDateTime.now());
+            job.setUpdatedAt(LocalDateTime.now());
+            ingestJobRepository.save(job);
+        }
+        if (unfinished.isEmpty()) {
+            return;
+        }
+        log.warn("Помечено прерванными задач загрузки: {}", unfinished.size());
+
+        if (resumeOnStartup) {
+            for (IngestJob job : unfinished) {
+                if (job.getStoredPath() != null && Files.exists(Paths.get(job.getStoredPath()))) {
+                    try {
+                        enqueue(job);
+                        log.info("Задача загрузки {} продолжена после строки {}", job.getJobId(), job.getLastCommittedRow());
+                    } catch (IllegalStateException e) {
+                        log.warn("Задача загрузки {} не продолжена: {}", job.getJobId(), e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public IngestJobResponse submit(MultipartFile file) {
+        StoredUpload upload = storeUpload(file);
+        return attach(upload, file.getOriginalFilename());
+    }
+
+    @Override
+    public synchronized Optional<IngestJobResponse> resume(Long jobId) {
+        Optional<IngestJob> found = ingestJobRepository.findById(jobId);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        IngestJob job = found.get();
+        if (!isResumable(job.getStatus())) {
+            throw new IllegalArgumentException("Задачу в статусе " + job.getStatus() + " нельзя продолжить");
+        }
+        if (job.getStoredPath() == null || !Files.exists(Paths.get(job.getStoredPath()))) {
+            throw new IllegalArgumentException("Файл задачи не найден, загрузите файл повторно");
+        }
+        enqueue(job);
+        log.info("Задача загрузки {} продолжена после строки {}", jobId, job.getLastCommittedRow());
+        return Optional.of(toResponse(job, null));
+    }
+
+    /**
+     * Привязывает сохраненный файл к задаче: тот же файл (по хэшу) продолжает незавершенную задачу,
+     * уже загруженный или загружаемый файл повторно не обрабатывается
+     */
+    private synchronized IngestJobResponse attach(StoredUpload upload, String fileName) {
+        Optional<IngestJob> previous = ingestJobRepository.findFirstByFileHashOrderByCreatedAtDesc(upload.hash());
+        if (previous.isPresent()) {
+            IngestJob job = previous.get();
+            if (!isResumable(job.getStatus())) {
+                deleteStoredFile(upload.path());
+                log.info("Файл {} уже загружен задачей {} ({})", fileName, job.getJobId(), job.getStatus());
+                return toResponse(job, runningJobs.get(job.getJobId()));
+            }
+
+            if (job.getStoredPath() != null && !job.getStoredPath().equals(upload.path().toString())) {
+                deleteStoredFile(Paths.get(job.getStoredPath()));
+            }
+            job.setStoredPath(upload.path().toString());
+            enqueue(job);
+            log.info("Задача загрузки {} продолжена повторной загрузкой файла после строки {}",
+                    job.getJobId(), job.getLastCommittedRow());
+            return toResponse(job, null);
+        }
+
+        IngestJob job = new IngestJob();
+        job.setFileName(fileName);
+        job.setStoredPath(upload.path().toString());
+        job.setFileHash(upload.hash());
+        enqueue(job);
+        log.info("Задача загрузки {} поставлена в очередь: {}", job.getJobId(), job.getFileName());
+        return toResponse(job, null);
+    }
+
+    /**
+     * Ставит задачу в очередь. Сохраненный файл не удаляется и при переполнении очереди -
+     * задачу можно продолжить позже
+     */
+    private void enqueue(IngestJob job) {
+        job.setStatus(IngestJobStatus.QUEUED);
+        job.setErrorMessage(null);
+        job.setFinishedAt(null);
+        job.setUpdatedAt(LocalDateTime.now());
+        IngestJob saved = ingestJobRepository.save(job);
+        job.setJobId(saved.getJobId());
+
+        try {
+            executor.execute(() -> runJob(saved.getJobId()));
+        } catch (RejectedExecutionException e) {
+            saved.setStatus(IngestJobStatus.FAILED);
+            saved.setErrorMessage("Очередь задач загрузки переполнена");
+            saved.setFinishedAt(LocalDateTime.now());
+            ingestJobRepository.save(saved);
+            job.setStatus(saved.getStatus());
+            throw new IllegalStateException("Очередь задач загрузки переполнена, повторите позже", e);
+        }
+    }
+
+    private static boolean isResumable(IngestJobStatus status) {
+        return status == IngestJobStatus.FAILED || status == IngestJobStatus.INTERRUPTED;
+    }
+
+    @Override
+    public Optional<IngestJobResponse> getJob(Long jobId) {
+        return ingestJobRepository.findById(jobId)
+                .map(job -> toResponse(job, runningJobs.get(jobId)));
+    }
+
+    @Override
+    public List<IngestJobResponse> getRecentJobs() {
+        return ingestJobRepository.findTop50ByOrderByCreatedAtDesc().stream()
+                .map(job -> toResponse(job, runningJobs.get(job.getJobId())))
+                .toList();
+    }
+
+    private void runJob(Long jobId) {
+        IngestJob job = ingestJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        job.setStatus(IngestJobStatus.RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        job.setUpdatedAt(LocalDateTime.now());
+        job.setResumedFromRow(job.getLastCommittedRow());
+        ingestJobRepository.save(job);
+
+        Path file = Paths.get(job.getStoredPath());
+        IngestProgress progress = new IngestProgress();
+        // Продолжение с контрольной точки: строки до lastCommittedRow конвейер пропустит
+        progress.restore(job.getLastCommittedRow(), job.getRowsParsed(), job.getRowsPersisted(), job.getRowsDuplicate());
+        if (job.getRowsEstimate() != null) {
+            progress.setRowsEstimate(job.getRowsEstimate());
+        }
+        progress.setJobId(jobId);
+        progress.onBatchPersisted(() -> saveProgress(jobId, progress));
+        runningJobs.put(jobId, progress);
+
+        try {
+            flightProcessingService.processTelegrams(sink -> fileParserService.readTelegrams(
+                    file, job.getFileName(), progress::setRowsEstimate, sink), progress);
+            // После чтения количество строк известно точно
+            progress.setRowsEstimate(progress.getRowsRead());
+            finish(job, progress, IngestJobStatus.COMPLETED, null);
+            deleteStoredFile(file);
+            log.info("Задача загрузки {} завершена: прочитано {}, сохранено {}, дубликатов {}",
+                    jobId, progress.getRowsRead(), progress.getRowsPersisted(), progress.getRowsDuplicate());
+        } catch (Exception e) {
+            // Файл остается на диске - задачу можно продолжить с контрольной точки
+            log.error("Задача загрузки {} завершилась ошибкой после строки {}: {}",
+                    jobId, progress.getLastCommittedRow(), e.getMessage(), e);
+            finish(job, progress, IngestJobStatus.FAILED, e.getMessage());
+        } finally {
+            runningJobs.remove(jobId);
+        }
+    }
+
+    private void saveProgress(Long jobId, IngestProgress progress) {
+        ingestJobRepository.updateProgress(jobId, estimateOrNull(progress),
+                progress.getRowsRead(), progress.getRowsParsed(),
+                progress.getRowsPersisted(), progress.getRowsFailed(), progress.getRowsDuplicate(),
+                progress.getLastCommittedRow(),
+                LocalDateTime.now());
+    }
+
+    private void finish(IngestJob job, IngestProgress progress, IngestJobStatus status, String error) {
+        job.setStatus(status);
+        job.setErrorMessage(error);
+        job.setRowsEstimate(estimateOrNull(progress));
+        job.setRowsRead(progress.getRowsRead());
+        job.setRowsParsed(progress.getRowsParsed());
+        job.setRowsPersisted(progress.getRowsPersisted());
+        job.setRowsFailed(progress.getRowsFailed());
+        job.setRowsDuplicate(progress.getRowsDuplicate());
+        // Пачка могла зафиксироваться вместе с контрольной точкой, но упасть до обновления progress
+        job.setLastCommittedRow(Math.max(progress.getLastCommittedRow(),
+                ingestJobRepository.findLastCommittedRow(job.getJobId())));
+        job.setFinishedAt(LocalDateTime.now());
+        job.setUpdatedAt(LocalDateTime.now());
+        ingestJobRepository.save(job);
+    }
+
+    private IngestJobResponse toResponse(IngestJob job, IngestProgress live) {
+        Long rowsEstimate = live != null ? estimateOrNull(live) : job.getRowsEstimate();
+        long rowsRead = live != null ? live.getRowsRead() : job.getRowsRead();
+        long rowsParsed = live != null ? live.getRowsParsed() : job.getRowsParsed();
+        long rowsPersisted = live != null ? live.getRowsPersisted() : job.getRowsPersisted();
+        long rowsFailed = live != null ? live.getRowsFailed() : job.getRowsFailed();
+        long rowsDuplicate = live != null ? live.getRowsDuplicate() : job.getRowsDuplicate();
+        long lastCommittedRow = live != null ? live.getLastCommittedRow() : job.getLastCommittedRow();
+
+        Double rowsPerSecond = null;
+        if (job.getStartedAt() != null && job.getStatus() != IngestJobStatus.QUEUED) {
+            LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+            double seconds = Duration.between(job.getStartedAt(), end).toMillis() / 1000.0;
+            if (seconds > 0) {
+                // Строки до контрольной точки в этом запуске не читались
+                rowsPerSecond = Math.round((rowsRead - job.getResumedFromRow()) / seconds * 10) / 10.0;
+            }
+        }
+
+        Double progressPercent = null;
+        Long etaSeconds = null;
+        if (job.getStatus() == IngestJobStatus.COMPLETED) {
+            progressPercent = 100.0;
+            etaSeconds = 0L;
+        } else if (rowsEstimate != null && rowsEstimate > 0) {
+            progressPercent = Math.min(100.0, Math.round(rowsRead * 1000.0 / rowsEstimate) / 10.0);
+            if (job.getStatus() == IngestJobStatus.RUNNING && rowsPerSecond != null && rowsPerSecond > 0) {
+                etaSeconds = Math.round(Math.max(0, rowsEstimate - rowsRead) / rowsPerSecond);
+            }
+        }
+
+        return new IngestJobResponse(
+                job.getJobId(),
+                job.getFileName(),
+                job.getStatus().name(),
+                rowsEstimate,
+                rowsRead,
+                rowsParsed,
+                rowsPersisted,
+                rowsFailed,
+                rowsDuplicate,
+                lastCommittedRow,
+                progressPercent,
+                rowsPerSecond,
+                etaSeconds,
+                job.getErrorMessage(),
+                job.getCreatedAt(),
+                job.getStartedAt(),
+                job.getFinishedAt()
+        );
+    }
+
+    private static Long estimateOrNull(IngestProgress progress) {
+        return progress.getRowsEstimate() > 0 ? progress.getRowsEstimate() : null;
+    }
+
+    /**
+     * Сохраняет загруженный файл, одновременно считая SHA-256 содержимого
+     */
+    private StoredUpload storeUpload(MultipartFile file) {
+        try {
+            Files.createDirectories(storageDir);
+            Path storedFile = Files.createTempFile(storageDir, "job_",
+                    FileParserServiceImpl.isCsv(file.getOriginalFilename()) ? ".csv" : ".xlsx");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, storedFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new StoredUpload(storedFile, HexFormat.of().formatHex(digest.digest()));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Не удалось сохранить загруженный файл: " + e.getMessage(), e);
+        }
+    }
+
+    private void deleteStoredFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл задачи загрузки: {}", file);
+        }
+    }
+
+    private record StoredUpload(Path path, String hash) {
+    }
+}
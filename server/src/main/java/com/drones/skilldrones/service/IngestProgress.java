@@ -0,0 +1,105 @@
+package com.drones.skilldrones.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчики прогресса загрузки телеграмм. Обновляются стадиями конвейера
+ * из разных потоков, читаются эндпоинтом статуса задачи.
+ */
+public class IngestProgress {
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong rowsPersisted = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final AtomicLong rowsDuplicate = new AtomicLong();
+    private volatile long rowsEstimate;
+    private volatile long lastCommittedRow;
+    private volatile Runnable batchPersistedListener = () -> { };
+    // Задача загрузки, контрольная точка которой пишется в транзакции каждой пачки; null - загрузка без задачи
+    private volatile Long jobId;
+
+    public void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    public void rowParsed() {
+        rowsParsed.incrementAndGet();
+    }
+
+    public void rowFailed() {
+        rowsFailed.incrementAndGet();
+    }
+
+    /**
+     * Пачка сохранена: persisted полетов записано, failed строк отброшено при сохранении,
+     * duplicates полетов отсеяно как уже существующие,
+     * все строки файла до lastRow включительно зафиксированы в БД
+     */
+    public void batchPersisted(int persisted, int failed, int duplicates, long lastRow) {
+        rowsPersisted.addAndGet(persisted);
+        rowsFailed.addAndGet(failed);
+        rowsDuplicate.addAndGet(duplicates);
+        lastCommittedRow = lastRow;
+        batchPersistedListener.run();
+    }
+
+    /**
+     * Восстанавливает счетчики по контрольной точке прерванной загрузки:
+     * конвейер пропустит строки до lastCommittedRow включительно
+     */
+    public void restore(long lastCommittedRow, long rowsParsed, long rowsPersisted, long rowsDuplicate) {
+        this.lastCommittedRow = lastCommittedRow;
+        this.rowsRead.set(lastCommittedRow);
+        this.rowsParsed.set(Math.min(rowsParsed, lastCommittedRow));
+        this.rowsPersisted.set(rowsPersisted);
+        this.rowsDuplicate.set(rowsDuplicate);
+        this.rowsFailed.set(Math.max(0, lastCommittedRow - rowsPersisted - rowsDuplicate));
+    }
+
+    /**
+     * Вызывается потоком-писателем после каждой сохраненной пачки
+     */
+    public void onBatchPersisted(Runnable listener) {
+        this.batchPersistedListener = listener;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed.get();
+    }
+
+    public long getRowsPersisted() {
+        return rowsPersisted.get();
+    }
+
+    public long getRowsFailed() {
+        return rowsFailed.get();
+    }
+
+    public long getRowsDuplicate() {
+        return rowsDuplicate.get();
+    }
+
+    public long getLastCommittedRow() {
+        return lastCommittedRow;
+    }
+
+    public long getRowsEstimate() {
+        return rowsEstimate;
+    }
+
+    public void setRowsEstimate(long rowsEstimate) {
+        this.rowsEstimate = rowsEstimate;
+    }
+}
@@ -1,40 +1,120 @@
 package com.drones.skilldrones.service;
 
 import com.drones.skilldrones.dto.response.metrics.FlightStatsResponse;
-import com.drones.skilldrones.repository.FlightRepository;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.stream.Collectors;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Метрики полетов за период. Считаются проходом по колоночному хранилищу в памяти ({@link FlightCube}),
+ * без запросов к БД
+ */
 @Service
 public class MetricsService {
-    private final FlightRepository flightRepository;
+    private final FlightCube flightCube;
+    private final RegionSpatialIndex regionSpatialIndex;
 
-    public MetricsService(FlightRepository flightRepository) {
-        this.flightRepository = flightRepository;
+    public MetricsService(FlightCube flightCube, RegionSpatialIndex regionSpatialIndex) {
+        this.flightCube = flightCube;
+        this.regionSpatialIndex = regionSpatialIndex;
     }
 
     public FlightStatsResponse getFlightStats(LocalDate startDate, LocalDate endDate) {
-        Long totalFlights = flightRepository.countFlightsInPeriod(startDate, endDate);
-
-        // Расчет дополнительных метрик
-        var flightsByType = flightRepository.countFlightsByDroneType()
-                .stream()
-                .collect(Collectors.toMap(
-                        arr -> (String) arr[0],
-                        arr -> (Long) arr[1]
-                ));
+        flightCube.ensureLoaded();
+        FlightCube.Aggregate aggregate = flightCube.aggregate(startDate, endDate);
 
         return new FlightStatsResponse(
                 startDate,
                 endDate,
-                totalFlights.intValue(),
-                0.0, // averageDuration - нужно рассчитать
-                null, // flightsByRegion - нужно рассчитать
-                flightsByType,
-                null, // dailyFlights - нужно рассчитать
-                null  // peakLoad - нужно рассчитать
+                (int) aggregate.total(),
+                roundDuration(aggregate.averageDuration()),
+                flightsByRegion(aggregate),
+                flightsByDroneType(aggregate),
+                dailyFlights(aggregate),
+                peakLoad(aggregate)
         );
     }
+
+    private Map<String, Long> flightsByRegion(FlightCube.Aggregate aggregate) {
+        Map<String, Long> counts = new HashMap<>();
+        int[] byRegion = aggregate.byRegion();
+        // Номер 0 - регион не определен
+        for (int ordinal = 1; ordinal < byRegion.length; ordinal++) {
+            if (byRegion[ordinal] == 0) {
+                continue;
+            }
+            long regionId = flightCube.regionId(ordinal);
+            String name = regionSpatialIndex.regionName(regionId);
+            // Регионы с одинаковым названием объединяются, как и в отчетах
+            counts.merge(name != null ? name : "Регион " + regionId, (long) byRegion[ordinal], Long::sum);
+        }
+        return sortedByCount(counts);
+    }
+
+    private Map<String, Long> flightsByDroneType(FlightCube.Aggregate aggregate) {
+        Map<String, Long> counts = new HashMap<>();
+        int[] byDroneType = aggregate.byDroneType();
+        for (int ordinal = 1; ordinal < byDroneType.length; ordinal++) {
+            if (byDroneType[ordinal] > 0) {
+                counts.put(flightCube.droneType(ordinal), (long) byDroneType[ordinal]);
+            }
+        }
+        return sortedByCount(counts);
+    }
+
+    /**
+     * Количество полетов по дням, дни без полетов не включаются
+     */
+    private Map<LocalDate, Long> dailyFlights(FlightCube.Aggregate aggregate) {
+        Map<LocalDate, Long> daily = new LinkedHashMap<>();
+        for (int day = 0; day < aggregate.days(); day++) {
+            long count = aggregate.dayCount(day);
+            if (count > 0) {
+                daily.put(aggregate.date(day), count);
+            }
+        }
+        return daily;
+    }
+
+    /**
+     * Час с наибольшим числом вылетов за период (полеты без времени вылета не учитываются);
+     * при равенстве - более ранний
+     */
+    private FlightStatsResponse.PeakLoadInfo peakLoad(FlightCube.Aggregate aggregate) {
+        int peakDay = -1;
+        int peakHour = -1;
+        int peakCount = 0;
+        for (int day = 0; day < aggregate.days(); day++) {
+            for (int hour = 0; hour < 24; hour++) {
+                int count = aggregate.hourCount(day, hour);
+                if (count > peakCount) {
+                    peakDay = day;
+                    peakHour = hour;
+                    peakCount = count;
+                }
+            }
+        }
+        if (peakCount == 0) {
+            return null;
+        }
+        return new FlightStatsResponse.PeakLoadInfo(
+                aggregate.date(peakDay),
+                String.format("%02d:00", peakHour),
+                peakCount);
+    }
+
+    private static Double roundDuration(Double minutes) {
+        return minutes != null ? Math.round(minutes * 10) / 10.0 : 0.0;
+    }
+
+    private static <K> Map<K, Long> sortedByCount(Map<K, Long> counts) {
+        Map<K, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<K, Long>comparingByValue().reversed())
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
 }
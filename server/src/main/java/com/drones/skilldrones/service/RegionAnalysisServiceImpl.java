@@ -4,10 +4,15 @@ import com.drones.skilldrones.dto.ParsedFlightData;
 import com.drones.skilldrones.dto.response.RegionResponse;
 import com.drones.skilldrones.mapper.RegionMapper;
 import com.drones.skilldrones.model.Region;
+import com.drones.skilldrones.repository.RegionGeometryRepository;
 import com.drones.skilldrones.repository.RegionRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKBWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -20,13 +25,28 @@ import java.util.stream.Collectors;
 public class RegionAnalysisServiceImpl implements RegionAnalysisService {
 
     private final RegionRepository regionRepository;
+    private final RegionGeometryRepository regionGeometryRepository;
     private final RegionMapper regionMapper;
+    private final RegionSpatialIndex regionSpatialIndex;
+    private final RegionCatalog regionCatalog;
+    private final FlightRollupService flightRollupService;
+    private final EntityManagerFactory entityManagerFactory;
     private final GeometryFactory geometryFactory;
 
     public RegionAnalysisServiceImpl(RegionRepository regionRepository,
-                                     RegionMapper regionMapper) {
+                                     RegionGeometryRepository regionGeometryRepository,
+                                     RegionMapper regionMapper,
+                                     RegionSpatialIndex regionSpatialIndex,
+                                     RegionCatalog regionCatalog,
+                                     FlightRollupService flightRollupService,
+                                     EntityManagerFactory entityManagerFactory) {
         this.regionRepository = regionRepository;
+        this.regionGeometryRepository = regionGeometryRepository;
         this.regionMapper = regionMapper;
+        this.regionSpatialIndex = regionSpatialIndex;
+        this.regionCatalog = regionCatalog;
+        this.flightRollupService = flightRollupService;
+        this.entityManagerFactory = entityManagerFactory;
         this.geometryFactory = new GeometryFactory();
     }
 
@@ -40,7 +60,7 @@ public class RegionAnalysisServiceImpl implements RegionAnalysisService {
 
         try {
             Point point = createPointFromCoordinates(coordinates);
-            return regionRepository.findRegionByPoint(point);
+            return regionSpatialIndex.findRegion(point);
         } catch (Exception e) {
             System.err.println("Ошибка определения региона для координат: " + coordinates);
             return Optional.empty();
@@ -157,9 +177,10 @@ public class RegionAnalysisServiceImpl implements RegionAnalysisService {
 
         for (Region region : regions) {
             try {
+                Region saved;
                 // Для новых регионов используем persist, для существующих - аккуратный merge
                 if (region.getRegionId() == null) {
-                    regionRepository.save(region);
+                    saved = regionRepository.save(region);
                 } else {
                     // Для существующих регионов сначала находим entity, затем обновляем поля
                     Region existingRegion = regionRepository.findById(region.getRegionId())
@@ -167,13 +188,34 @@ public class RegionAnalysisServiceImpl implements RegionAnalysisService {
                     // Копируем только необходимые поля
                     existingRegion.setName(region.getName());
                     existingRegion.setAreaKm2(region.getAreaKm2());
-                    existingRegion.setGeometry(region.getGeometry());
-                    regionRepository.save(existingRegion);
+                    saved = regionRepository.save(existingRegion);
                 }
+                // Границы - отдельным UPDATE той же строки regions, без merge с чтением прежнего полигона
+                Geometry geometry = region.getGeometry();
+                regionGeometryRepository.updateGeometry(saved.getRegionId(),
+                        geometry != null ? new WKBWriter(2).write(geometry) : null);
             } catch (Exception e) {
                 log.error("Ошибка при сохранении региона '{}': {}", region.getName(), e.getMessage());
             }
         }
+
+        // Кэш второго уровня хранит регионы в том виде, в каком их записал Hibernate: created_at/updated_at
+        // заполняет БД, и в кэше они остались бы прежними. Сбрасываем регионы и выборки до перестроения индекса,
+        // чтобы он читал регионы из БД
+        evictRegionCache();
+
+        // Геопривязка работает по in-memory индексу - перестраиваем его по сохраненным регионам
+        regionSpatialIndex.rebuild();
+        // Готовые ответы /analysis/regions устарели
+        regionCatalog.invalidate();
+        // Сохраненные отчеты и графики с названиями и площадями регионов - тоже
+        flightRollupService.recordRegionsChanged();
+    }
+
+    private void evictRegionCache() {
+        entityManagerFactory.getCache().evict(Region.class);
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegion(Region.QUERY_CACHE_REGION);
+        log.info("Кэш регионов сброшен");
     }
 
     public long getRegionsCount() {
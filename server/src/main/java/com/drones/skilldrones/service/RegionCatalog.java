@@ -0,0 +1,201 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.response.RegionResponse;
+import com.drones.skilldrones.mapper.RegionMapper;
+import com.drones.skilldrones.model.Region;
+import com.drones.skilldrones.model.RegionGeometry;
+import com.drones.skilldrones.repository.RegionGeometryRepository;
+import com.drones.skilldrones.repository.RegionRepository;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.geojson.GeoJsonWriter;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Каталог регионов для /analysis/regions: метаданные регионов ({@link RegionResponse}) и границы
+ * с заданным уровнем детализации.
+ * <p>
+ * Границы упрощаются TopologyPreservingSimplifier (Douglas-Peucker без самопересечений и схлопывания колец)
+ * с допуском уровня и округляются до числа знаков, соответствующего допуску. Ответ для уровня сериализуется
+ * один раз - в JSON и сразу в gzip - при первом запросе и отдается готовыми байтами до следующей загрузки регионов
+ * ({@link #invalidate()}).
+ */
+@Component
+public class RegionCatalog {
+    private static final Logger log = LoggerFactory.getLogger(RegionCatalog.class);
+
+    /**
+     * Уровень детализации границ: допуск упрощения в градусах (EPSG:4326) и знаков после запятой в координатах
+     */
+    public enum Lod {
+        // Только метаданные, без границ
+        NONE(-1, 0),
+        // ~5 км - обзорная карта страны
+        LOW(0.05, 3),
+        // ~1 км - карта федерального округа
+        MEDIUM(0.01, 4),
+        // ~100 м - карта региона
+        HIGH(0.001, 5),
+        // Исходные границы
+        FULL(0, 7);
+
+        private final double tolerance;
+        private final int decimals;
+
+        Lod(double tolerance, int decimals) {
+            this.tolerance = tolerance;
+            this.decimals = decimals;
+        }
+    }
+
+    private final RegionRepository regionRepository;
+    private final RegionGeometryRepository regionGeometryRepository;
+    private final ObjectMapper objectMapper;
+    private final RegionMapper regionMapper;
+
+    // Поколение растет при каждой загрузке регионов; ответ прошлого поколения в кэш не попадет. Под this
+    private long generation;
+    private final Map<Lod, Serialized> cache = new EnumMap<>(Lod.class);
+
+    public RegionCatalog(RegionRepository regionRepository, RegionGeometryRepository regionGeometryRepository,
+                         ObjectMapper objectMapper, RegionMapper regionMapper) {
+        this.regionRepository = regionRepository;
+        this.regionGeometryRepository = regionGeometryRepository;
+        this.objectMapper = objectMapper;
+        this.regionMapper = regionMapper;
+    }
+
+    /**
+     * Сериализованный список регионов для уровня детализации
+     */
+    public Serialized get(Lod lod) {
+        long builtFor;
+        synchronized (this) {
+            Serialized cached = cache.get(lod);
+            if (cached != null) {
+                return cached;
+            }
+            builtFor = generation;
+        }
+
+        // Построение вне блокировки: уровни строятся независимо, первый запрос FULL не задерживает остальные
+        Serialized built = build(lod);
+        synchronized (this) {
+            if (generation != builtFor) {
+                return built;
+            }
+            // Параллельный запрос мог построить тот же уровень - отдаем один экземпляр
+            return cache.computeIfAbsent(lod, key -> built);
+        }
+    }
+
+    /**
+     * Сбрасывает ответы после загрузки регионов
+     */
+    public synchronized void invalidate() {
+        generation++;
+        cache.clear();
+    }
+
+    private Serialized build(Lod lod) {
+        long start = System.currentTimeMillis();
+        List<Region> regions = regionRepository.findAll().stream()
+                .sorted(Comparator.comparing(Region::getRegionId))
+                .toList();
+        Map<Long, Geometry> geometries = new HashMap<>(regions.size() * 2);
+        if (lod != Lod.NONE) {
+            for (RegionGeometry regionGeometry : regionGeometryRepository.findAllWithGeometry()) {
+                geometries.put(regionGeometry.getRegionId(), regionGeometry.getGeometry());
+            }
+        }
+
+        GeoJsonWriter geoJsonWriter = new GeoJsonWriter(lod.decimals);
+        geoJsonWriter.setEncodeCRS(false);
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream(64 * 1024);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+            generator.writeStartArray();
+            for (Region region : regions) {
+                RegionResponse response = regionMapper.toResponse(region);
+                if (lod == Lod.NONE) {
+                    objectMapper.writeValue(generator, response);
+                } else {
+                    Geometry geometry = simplify(geometries.get(region.getRegionId()), lod);
+                    objectMapper.writeValue(generator, new RegionWithGeometry(response,
+                            geometry != null ? geoJsonWriter.write(geometry) : null));
+                }
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка сериализации регионов: " + e.getMessage(), e);
+        }
+
+        byte[] body = json.toByteArray();
+        byte[] gzipped = gzip(body);
+        // ETag - SHA-256 содержимого: не меняется после перезапуска, пока не изменились регионы,
+        // и не совпадет у разных границ после загрузки регионов. У gzip-представления свой ETag
+        String tag = "regions-" + lod.name().toLowerCase() + "-" + sha256(body);
+        log.info("Каталог регионов {}: {} регионов, {} КБ (gzip {} КБ) за {} мс", lod, regions.size(),
+                body.length / 1024, gzipped.length / 1024, System.currentTimeMillis() - start);
+        return new Serialized(body, gzipped, "\"" + tag + "\"", "\"" + tag + "-gzip\"");
+    }
+
+    private static Geometry simplify(Geometry geometry, Lod lod) {
+        if (geometry == null || geometry.isEmpty()) {
+            return null;
+        }
+        if (lod.tolerance <= 0) {
+            return geometry;
+        }
+        return TopologyPreservingSimplifier.simplify(geometry, lod.tolerance);
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Готовый ответ: JSON и его ETag, он же в gzip и ETag gzip-представления
+     */
+    public record Serialized(byte[] json, byte[] gzipped, String etag, String gzipEtag) {
+    }
+
+    /**
+     * Регион с границами в GeoJSON, уже сериализованными GeoJsonWriter
+     */
+    private record RegionWithGeometry(@JsonUnwrapped RegionResponse region, @JsonRawValue String geometry) {
+    }
+}
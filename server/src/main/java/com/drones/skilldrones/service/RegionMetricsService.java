@@ -0,0 +1,64 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.response.metrics.RegionMetricsResponse;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface RegionMetricsService {
+    /**
+     * Период метрик; metric_date в region_metrics - первый день периода
+     */
+    enum MetricType {
+        DAILY("1 day"),
+        MONTHLY("1 month"),
+        YEARLY("1 year");
+
+        private final String interval;
+
+        MetricType(String interval) {
+            this.interval = interval;
+        }
+
+        /**
+         * Интервал PostgreSQL длиной в один период
+         */
+        public String interval() {
+            return interval;
+        }
+
+        public LocalDate periodStart(LocalDate date) {
+            return switch (this) {
+                case DAILY -> date;
+                case MONTHLY -> date.withDayOfMonth(1);
+                case YEARLY -> date.withDayOfYear(1);
+            };
+        }
+
+        public LocalDate nextPeriodStart(LocalDate periodStart) {
+            return switch (this) {
+                case DAILY -> periodStart.plusDays(1);
+                case MONTHLY -> periodStart.plusMonths(1);
+                case YEARLY -> periodStart.plusYears(1);
+            };
+        }
+    }
+
+    /**
+     * Пересчитывает метрики периодов, затронутых загрузками с прошлого пересчета
+     *
+     * @return количество пересчитанных дней
+     */
+    int refresh();
+
+    /**
+     * Метрики региона за периоды, начинающиеся в [startDate, endDate]
+     */
+    List<RegionMetricsResponse> getRegionMetrics(Long regionId, MetricType metricType,
+                                                 LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Метрики всех регионов за период, содержащий date, по убыванию числа полетов
+     */
+    List<RegionMetricsResponse> getMetricsForPeriod(MetricType metricType, LocalDate date);
+}
@@ -0,0 +1,292 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.response.metrics.RegionMetricsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Предрасчет метрик регионов в region_metrics.
+ * <p>
+ * Запись полетов отмечает дни в region_metrics_dirty_days (см. {@link FlightRollupService}).
+ * По расписанию отмеченные дни забираются одной транзакцией и пересчитываются только затронутые периоды:
+ * <ul>
+ *     <li>DAILY - по таблице flights за эти дни, для всех регионов;</li>
+ *     <li>MONTHLY и YEARLY - по дневным метрикам месяцев и лет, в которые попали эти дни;</li>
+ *     <li>рост к предыдущему периоду - для затронутых периодов и следующих за ними.</li>
+ * </ul>
+ * Число дней без полетов у месяца и года зависит и от текущей даты: периоды, пересчитанные до того, как
+ * закончились прошедшие дни, пересчитываются тем же расписанием, даже если новых полетов нет.
+ * Если транзакция пересчета откатится, отметки дней тоже вернутся и будут обработаны в следующий раз.
+ * Эндпоинты чтения берут готовые строки region_metrics и не обращаются к flights.
+ */
+@Service
+public class RegionMetricsServiceImpl implements RegionMetricsService {
+    private static final Logger log = LoggerFactory.getLogger(RegionMetricsServiceImpl.class);
+
+    private static final String TAKE_DIRTY_DAYS =
+            "DELETE FROM region_metrics_dirty_days RETURNING metric_date";
+
+    private static final String MARK_ALL_DAYS = """
+            INSERT INTO region_metrics_dirty_days (metric_date)
+            SELECT DISTINCT flight_date FROM flights
+            WHERE flight_date IS NOT NULL AND departure_region_id IS NOT NULL
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String UPSERT_COLUMNS = """
+            ON CONFLICT (region_id, metric_date, metric_type) DO UPDATE SET
+                total_flights = EXCLUDED.total_flights,
+                avg_duration_minutes = EXCLUDED.avg_duration_minutes,
+                peak_hourly_flights = EXCLUDED.peak_hourly_flights,
+                flight_density = EXCLUDED.flight_density,
+                zero_days_count = EXCLUDED.zero_days_count,
+                calculated_at = EXCLUDED.calculated_at
+            """;
+
+    // Плотность - полетов на 1000 км², как в отчете по топ регионам
+    private static final String UPSERT_DAILY = """
+            INSERT INTO region_metrics (region_id, metric_date, metric_type, total_flights, avg_duration_minutes,
+                                        peak_hourly_flights, flight_density, zero_days_count, calculated_at)
+            SELECT r.region_id, d.day, 'DAILY', COALESCE(s.total, 0), s.avg_duration, COALESCE(s.peak, 0),
+                   CASE WHEN r.area_km2 > 0 THEN COALESCE(s.total, 0) / r.area_km2 * 1000 END,
+                   CASE WHEN COALESCE(s.total, 0) = 0 THEN 1 ELSE 0 END,
+                   NOW()
+            FROM unnest(?::date[]) AS d(day)
+                     CROSS JOIN regions r
+                     LEFT JOIN (
+                SELECT h.flight_date, h.region_id,
+                       SUM(h.flights) AS total,
+                       SUM(h.duration_sum)::double precision / NULLIF(SUM(h.duration_count), 0) AS avg_duration,
+                       MAX(h.flights) FILTER (WHERE h.hour >= 0) AS peak
+                FROM (
+                    SELECT f.flight_date, f.departure_region_id AS region_id,
+                           COALESCE(EXTRACT(HOUR FROM f.departure_time)::int, -1) AS hour,
+                           COUNT(*) AS flights,
+                           SUM(f.duration_minutes) AS duration_sum,
+                           COUNT(f.duration_minutes) AS duration_count
+                    FROM flights f
+                    WHERE f.flight_date = ANY (?::date[]) AND f.departure_region_id IS NOT NULL
+                    GROUP BY 1, 2, 3
+                ) h
+                GROUP BY h.flight_date, h.region_id
+            ) s ON s.flight_date = d.day AND s.region_id = r.region_id
+            """ + UPSERT_COLUMNS;
+
+    // Средняя длительность периода - среднее дневных значений, взвешенное числом полетов.
+    // Дни без полетов не имеют дневных строк (кроме пересчитанных), поэтому дни без полетов
+    // считаются как прошедшие дни периода минус дни с полетами
+    private static final String UPSERT_FROM_DAILY = """
+            INSERT INTO region_metrics (region_id, metric_date, metric_type, total_flights, avg_duration_minutes,
+                                        peak_hourly_flights, flight_density, zero_days_count, calculated_at)
+            SELECT r.region_id, p.period_start, ?, COALESCE(SUM(d.total_flights), 0),
+                   SUM(d.avg_duration_minutes * d.total_flights)
+                       / NULLIF(SUM(d.total_flights) FILTER (WHERE d.avg_duration_minutes IS NOT NULL), 0),
+                   COALESCE(MAX(d.peak_hourly_flights), 0),
+                   CASE WHEN r.area_km2 > 0 THEN COALESCE(SUM(d.total_flights), 0) / r.area_km2 * 1000 END,
+                   GREATEST(0, LEAST(e.period_end, CURRENT_DATE) - p.period_start + 1
+                       - COUNT(d.metric_id) FILTER (WHERE d.total_flights > 0))::int,
+                   NOW()
+            FROM unnest(?::date[]) AS p(period_start)
+                     CROSS JOIN LATERAL (SELECT (p.period_start + CAST(? AS interval))::date - 1 AS period_end) e
+                     CROSS JOIN regions r
+                     LEFT JOIN region_metrics d ON d.region_id = r.region_id AND d.metric_type = 'DAILY'
+                AND d.metric_date BETWEEN p.period_start AND e.period_end
+            GROUP BY r.region_id, r.area_km2, p.period_start, e.period_end
+            """ + UPSERT_COLUMNS;
+
+    // Периоды, у которых после пересчета прошли дни: их zero_days_count отстал от текущей даты
+    private static final String SELECT_STALE_PERIODS = """
+            SELECT DISTINCT metric_date FROM region_metrics
+            WHERE metric_type = ?
+              AND calculated_at::date < LEAST((metric_date + CAST(? AS interval))::date - 1, CURRENT_DATE)
+            """;
+
+    private static final String UPDATE_GROWTH = """
+            UPDATE region_metrics cur
+            SET growth_percentage = (
+                SELECT CASE WHEN prev.total_flights > 0
+                                THEN (cur.total_flights - prev.total_flights) * 100.0 / prev.total_flights END
+                FROM region_metrics prev
+                WHERE prev.region_id = cur.region_id
+                  AND prev.metric_type = cur.metric_type
+                  AND prev.metric_date = (cur.metric_date - CAST(? AS interval))::date)
+            WHERE cur.metric_type = ? AND cur.metric_date = ANY (?::date[])
+            """;
+
+    private static final String SELECT_METRICS = """
+            SELECT m.region_id, r.name, m.metric_date, m.metric_type, m.total_flights, m.avg_duration_minutes,
+                   m.peak_hourly_flights, m.flight_density, m.zero_days_count, m.growth_percentage, m.calculated_at
+            FROM region_metrics m
+                     JOIN regions r ON r.region_id = m.region_id
+            """;
+
+    private static final RowMapper<RegionMetricsResponse> METRICS_MAPPER = (rs, rowNum) -> {
+        Timestamp calculatedAt = rs.getTimestamp(11);
+        return new RegionMetricsResponse(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getDate(3).toLocalDate(),
+                rs.getString(4),
+                rs.getObject(5, Integer.class),
+                rs.getObject(6, Double.class),
+                rs.getObject(7, Integer.class),
+                rs.getObject(8, Double.class),
+                rs.getObject(9, Integer.class),
+                rs.getObject(10, Double.class),
+                calculatedAt != null ? calculatedAt.toLocalDateTime() : null);
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public RegionMetricsServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Метрики еще не считались, а полеты уже есть - отмечаем все дни с полетами
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void markAllDaysIfEmpty() {
+        try {
+            Boolean empty = jdbcTemplate.queryForObject(
+                    "SELECT NOT EXISTS (SELECT 1 FROM region_metrics)", Boolean.class);
+            if (Boolean.TRUE.equals(empty)) {
+                int days = jdbcTemplate.update(MARK_ALL_DAYS);
+                if (days > 0) {
+                    log.info("Метрики регионов пусты, отмечено {} дней для пересчета", days);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось проверить метрики регионов: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.metrics.region.refresh-interval-ms:300000}",
+            initialDelayString = "${app.metrics.region.initial-delay-ms:60000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.error("Ошибка пересчета метрик регионов: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized int refresh() {
+        long start = System.currentTimeMillis();
+        Integer days = transactionTemplate.execute(status -> {
+            List<LocalDate> dirtyDays = jdbcTemplate.query(TAKE_DIRTY_DAYS,
+                    (rs, rowNum) -> rs.getDate(1).toLocalDate());
+            if (!dirtyDays.isEmpty()) {
+                recalculateDaily(dirtyDays);
+            }
+            for (MetricType type : List.of(MetricType.MONTHLY, MetricType.YEARLY)) {
+                TreeSet<LocalDate> periodStarts = periodStarts(type, dirtyDays);
+                periodStarts.addAll(jdbcTemplate.query(SELECT_STALE_PERIODS,
+                        (rs, rowNum) -> rs.getDate(1).toLocalDate(), type.name(), type.interval()));
+                if (!periodStarts.isEmpty()) {
+                    recalculateFromDaily(type, periodStarts);
+                }
+            }
+            return dirtyDays.size();
+        });
+
+        if (days != null && days > 0) {
+            log.info("Метрики регионов пересчитаны за {} дней за {} мс", days, System.currentTimeMillis() - start);
+        }
+        return days != null ? days : 0;
+    }
+
+    private void recalculateDaily(List<LocalDate> days) {
+        Date[] dates = toSqlDates(days);
+        jdbcTemplate.update(connection -> {
+            var statement = connection.prepareStatement(UPSERT_DAILY);
+            statement.setArray(1, connection.createArrayOf("date", dates));
+            statement.setArray(2, connection.createArrayOf("date", dates));
+            return statement;
+        });
+        updateGrowth(MetricType.DAILY, new TreeSet<>(days));
+    }
+
+    private void recalculateFromDaily(MetricType type, TreeSet<LocalDate> periodStarts) {
+        Date[] dates = toSqlDates(periodStarts);
+        jdbcTemplate.update(connection -> {
+            var statement = connection.prepareStatement(UPSERT_FROM_DAILY);
+            statement.setString(1, type.name());
+            statement.setArray(2, connection.createArrayOf("date", dates));
+            statement.setString(3, type.interval());
+            return statement;
+        });
+        updateGrowth(type, periodStarts);
+    }
+
+    /**
+     * Рост считается для пересчитанных периодов и следующих за ними - у них изменилась база сравнения
+     */
+    private void updateGrowth(MetricType type, TreeSet<LocalDate> periodStarts) {
+        TreeSet<LocalDate> affected = new TreeSet<>(periodStarts);
+        for (LocalDate periodStart : periodStarts) {
+            affected.add(type.nextPeriodStart(periodStart));
+        }
+        Date[] dates = toSqlDates(affected);
+        jdbcTemplate.update(connection -> {
+            var statement = connection.prepareStatement(UPDATE_GROWTH);
+            statement.setString(1, type.interval());
+            statement.setString(2, type.name());
+            statement.setArray(3, connection.createArrayOf("date", dates));
+            return statement;
+        });
+    }
+
+    private static TreeSet<LocalDate> periodStarts(MetricType type, List<LocalDate> days) {
+        TreeSet<LocalDate> starts = new TreeSet<>();
+        for (LocalDate day : days) {
+            starts.add(type.periodStart(day));
+        }
+        return starts;
+    }
+
+    private static Date[] toSqlDates(Collection<LocalDate> dates) {
+        List<Date> result = new ArrayList<>(dates.size());
+        for (LocalDate date : dates) {
+            result.add(Date.valueOf(date));
+        }
+        return result.toArray(new Date[0]);
+    }
+
+    @Override
+    public List<RegionMetricsResponse> getRegionMetrics(Long regionId, MetricType metricType,
+                                                        LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.query(SELECT_METRICS +
+                        "WHERE m.region_id = ? AND m.metric_type = ? AND m.metric_date BETWEEN ? AND ? " +
+                        "ORDER BY m.metric_date",
+                METRICS_MAPPER, regionId, metricType.name(),
+                metricType.periodStart(startDate), metricType.periodStart(endDate));
+    }
+
+    @Override
+    public List<RegionMetricsResponse> getMetricsForPeriod(MetricType metricType, LocalDate date) {
+        return jdbcTemplate.query(SELECT_METRICS +
+                        "WHERE m.metric_type = ? AND m.metric_date = ? " +
+                        "ORDER BY m.total_flights DESC, m.region_id",
+                METRICS_MAPPER, metricType.name(), metricType.periodStart(date));
+    }
+}
@@ -0,0 +1,143 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.Region;
+import com.drones.skilldrones.model.RegionGeometry;
+import com.drones.skilldrones.repository.RegionGeometryRepository;
+import com.drones.skilldrones.repository.RegionRepository;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory индекс границ регионов для геопривязки точек без запросов к БД.
+ * Полигоны регионов хранятся в STRtree в виде PreparedGeometry; поиск региона -
+ * отбор кандидатов по bounding box и точная проверка contains (аналог ST_Within(point, geometry)).
+ * Индекс строится при старте приложения и перестраивается целиком после загрузки регионов;
+ * читатели всегда видят либо старый, либо полностью построенный новый индекс.
+ */
+@Component
+public class RegionSpatialIndex {
+    private static final Logger log = LoggerFactory.getLogger(RegionSpatialIndex.class);
+
+    private final RegionRepository regionRepository;
+    private final RegionGeometryRepository regionGeometryRepository;
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public RegionSpatialIndex(RegionRepository regionRepository, RegionGeometryRepository regionGeometryRepository) {
+        this.regionRepository = regionRepository;
+        this.regionGeometryRepository = regionGeometryRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Перечитывает регионы из БД и атомарно подменяет индекс
+     */
+    public synchronized void rebuild() {
+        List<Region> regions = regionRepository.findAll();
+        Map<Long, Geometry> geometries = new HashMap<>(regions.size() * 2);
+        for (RegionGeometry regionGeometry : regionGeometryRepository.findAllWithGeometry()) {
+            geometries.put(regionGeometry.getRegionId(), regionGeometry.getGeometry());
+        }
+
+        STRtree tree = new STRtree();
+        Map<Long, String> names = new HashMap<>(regions.size() * 2);
+        int indexed = 0;
+        for (Region region : regions) {
+            names.put(region.getRegionId(), region.getName());
+            Geometry geometry = geometries.get(region.getRegionId());
+            if (geometry == null || geometry.isEmpty()) {
+                continue;
+            }
+            IndexedRegion entry = new IndexedRegion(detachedCopy(region),
+                    PreparedGeometryFactory.prepare(geometry));
+            tree.insert(geometry.getEnvelopeInternal(), entry);
+            indexed++;
+        }
+        tree.build();
+
+        snapshot = new Snapshot(tree, indexed, names);
+        log.info("Пространственный индекс регионов построен: {} регионов", indexed);
+    }
+
+    /**
+     * Регион, внутри которого лежит точка. Если точка попала в несколько регионов
+     * (перекрытие границ) - регион с меньшим id, чтобы результат был стабильным.
+     */
+    public Optional<Region> findRegion(Point point) {
+        if (point == null || point.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Region found = null;
+        for (Object candidate : snapshot.tree().query(point.getEnvelopeInternal())) {
+            IndexedRegion entry = (IndexedRegion) candidate;
+            if (entry.geometry().contains(point)
+                    && (found == null || entry.region().getRegionId() < found.getRegionId())) {
+                found = entry.region();
+            }
+        }
+        return Optional.ofNullable(found);
+    }
+
+    public Optional<Region> findRegion(double latitude, double longitude) {
+        return findRegion(geometryFactory.createPoint(new Coordinate(longitude, latitude)));
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Название региона по id на момент последнего построения индекса; null, если региона нет
+     */
+    public String regionName(long regionId) {
+        return snapshot.names().get(regionId);
+    }
+
+    /**
+     * Копия региона вне контекста персистентности: индекс живет дольше любой сессии Hibernate
+     */
+    private static Region detachedCopy(Region region) {
+        Region copy = new Region();
+        copy.setRegionId(region.getRegionId());
+        copy.setName(region.getName());
+        copy.setAreaKm2(region.getAreaKm2());
+        copy.setCreatedAt(region.getCreatedAt());
+        copy.setUpdatedAt(region.getUpdatedAt());
+        return copy;
+    }
+
+    private record IndexedRegion(Region region, PreparedGeometry geometry) {
+    }
+
+    private record Snapshot(STRtree tree, int size, Map<Long, String> names) {
+        static final Snapshot EMPTY = emptySnapshot();
+
+        private static Snapshot emptySnapshot() {
+            STRtree tree = new STRtree();
+            tree.build();
+            return new Snapshot(tree, 0, Map.of());
+        }
+    }
+}
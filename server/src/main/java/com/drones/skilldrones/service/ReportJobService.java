@@ -0,0 +1,29 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.response.ReportResponse;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface ReportJobService {
+    /**
+     * Создает отчет в статусе PENDING и ставит его в очередь, не дожидаясь построения
+     *
+     * @throws IllegalArgumentException для неподдерживаемого типа отчета
+     * @throws IllegalStateException если очередь отчетов переполнена
+     */
+    ReportResponse submit(String reportType, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Состояние отчета
+     */
+    Optional<ReportResponse> getJob(Long reportId);
+
+    /**
+     * Поток событий status с состоянием отчета; закрывается после COMPLETED или FAILED
+     *
+     * @return пустой Optional, если отчет не найден
+     */
+    Optional<SseEmitter> streamStatus(Long reportId);
+}
@@ -0,0 +1,241 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.response.ReportResponse;
+import com.drones.skilldrones.mapper.ReportMapper;
+import com.drones.skilldrones.model.ReportLog;
+import com.drones.skilldrones.model.ReportLog.ReportStatus;
+import com.drones.skilldrones.repository.ReportLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновое построение отчетов.
+ * Запрос создает ReportLog в статусе PENDING, отчет строится на ограниченном пуле потоков
+ * (app.report.jobs.workers) с ограниченной очередью: PROCESSING, затем COMPLETED с данными отчета
+ * в parameters (и графиком в filePath) или FAILED с ошибкой. Изменения статуса отправляются
+ * подписчикам /reports/jobs/{id}/events.
+ * <p>
+ * Отчеты, которые строились или ждали в очереди при остановке приложения, при старте ставятся в очередь заново:
+ * построение не меняет данные, поэтому повтор безопасен.
+ */
+@Service
+public class ReportJobServiceImpl implements ReportJobService {
+    private static final Logger log = LoggerFactory.getLogger(ReportJobServiceImpl.class);
+
+    private static final Set<String> SUPPORTED_TYPES = Set.of("REGIONAL", "COMPREHENSIVE", "TOP_REGIONS");
+
+    private final ReportLogRepository reportLogRepository;
+    private final ReportService reportService;
+    private final FlightRollupService flightRollupService;
+    private final ReportMapper reportMapper;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor executor;
+    private final long sseTimeoutMs;
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    public ReportJobServiceImpl(ReportLogRepository reportLogRepository,
+                                ReportService reportService,
+                                FlightRollupService flightRollupService,
+                                ReportMapper reportMapper,
+                                ObjectMapper objectMapper,
+                                @Value("${app.report.jobs.workers:2}") int workers,
+                                @Value("${app.report.jobs.queue-capacity:50}") int queueCapacity,
+                                @Value("${app.report.jobs.sse-timeout-ms:600000}") long sseTimeoutMs) {
+        this.reportLogRepository = reportLogRepository;
+        this.reportService = reportService;
+        this.flightRollupService = flightRollupService;
+        this.reportMapper = reportMapper;
+        this.objectMapper = objectMapper;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("report-job-", 1).factory());
+        this.sseTimeoutMs = sseTimeoutMs;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedJobs() {
+        List<ReportLog> unfinished = reportLogRepository.findByStatusInOrderByCreatedAtAsc(
+                EnumSet.of(ReportStatus.PENDING, ReportStatus.PROCESSING));
+        int requeued = 0;
+        for (ReportLog reportLog : unfinished) {
+            if (!SUPPORTED_TYPES.contains(reportLog.getReportType())) {
+                fail(reportLog, "Построение отчета прервано перезапуском приложения");
+                continue;
+            }
+            try {
+                enqueue(reportLog);
+                requeued++;
+            } catch (IllegalStateException e) {
+                log.warn("Отчет {} не поставлен в очередь после перезапуска: {}", reportLog.getReportId(), e.getMessage());
+            }
+        }
+        if (!unfinished.isEmpty()) {
+            log.warn("Незавершенных отчетов после перезапуска: {}, поставлено в очередь заново: {}",
+                    unfinished.size(), requeued);
+        }
+    }
+
+    @Override
+    public ReportResponse submit(String reportType, LocalDate startDate, LocalDate endDate) {
+        String type = reportType.toUpperCase();
+        if (!SUPPORTED_TYPES.contains(type)) {
+            throw new IllegalArgumentException("Тип отчета " + reportType + " не поддерживается, допустимы: "
+                    + String.join(", ", SUPPORTED_TYPES));
+        }
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Дата начала не может быть позже даты окончания");
+        }
+
+        ReportLog reportLog = new ReportLog();
+        reportLog.setReportType(type);
+        reportLog.setReportPeriodStart(startDate);
+        reportLog.setReportPeriodEnd(endDate);
+        ReportLog saved = enqueue(reportLog);
+        log.info("Отчет {} {} за {} - {} поставлен в очередь", saved.getReportId(), type, startDate, endDate);
+        return reportMapper.toResponse(saved);
+    }
+
+    /**
+     * Ставит отчет в очередь. При переполнении очереди отчет сохраняется как FAILED
+     */
+    private ReportLog enqueue(ReportLog reportLog) {
+        reportLog.setStatus(ReportStatus.PENDING);
+        reportLog.setErrorMessage(null);
+        reportLog.setCompletedAt(null);
+        ReportLog saved = reportLogRepository.save(reportLog);
+
+        try {
+            executor.execute(() -> runJob(saved.getReportId()));
+        } catch (RejectedExecutionException e) {
+            fail(saved, "Очередь отчетов переполнена");
+            throw new IllegalStateException("Очередь отчетов переполнена, повторите позже", e);
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<ReportResponse> getJob(Long reportId) {
+        return reportLogRepository.findById(reportId).map(reportMapper::toResponse);
+    }
+
+    @Override
+    public Optional<SseEmitter> streamStatus(Long reportId) {
+        if (!reportLogRepository.existsById(reportId)) {
+            return Optional.empty();
+        }
+
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        // Подписка до чтения состояния: изменение между ними не будет потеряно
+        subscribers.compute(reportId, (id, emitters) -> {
+            List<SseEmitter> list = emitters != null ? emitters : new CopyOnWriteArrayList<>();
+            list.add(emitter);
+            return list;
+        });
+        emitter.onCompletion(() -> unsubscribe(reportId, emitter));
+        emitter.onTimeout(() -> unsubscribe(reportId, emitter));
+        emitter.onError(error -> unsubscribe(reportId, emitter));
+
+        reportLogRepository.findById(reportId).ifPresent(reportLog -> send(emitter, reportMapper.toResponse(reportLog)));
+        return Optional.of(emitter);
+    }
+
+    private void runJob(Long reportId) {
+        ReportLog reportLog = reportLogRepository.findById(reportId).orElse(null);
+        if (reportLog == null || reportLog.getStatus() != ReportStatus.PENDING) {
+            return;
+        }
+        reportLog.setStatus(ReportStatus.PROCESSING);
+        reportLog = save(reportLog);
+
+        try {
+            String type = reportLog.getReportType();
+            LocalDate startDate = reportLog.getReportPeriodStart();
+            LocalDate endDate = reportLog.getReportPeriodEnd();
+            // Версия читается до данных отчета; при неизменной версии отчет не строится заново
+            long dataVersion = flightRollupService.dataVersion(startDate, endDate);
+            Map<String, Object> report = reportService.getMemoizedReport(type, startDate, endDate, dataVersion)
+                    .orElseGet(() -> reportService.buildReport(type, startDate, endDate));
+
+            reportLog.setDataVersion(dataVersion);
+            reportLog.setParameters(objectMapper.writeValueAsString(report));
+            Object chartFilePath = report.get("chartFilePath");
+            if (chartFilePath != null) {
+                reportLog.setFilePath(chartFilePath.toString());
+            }
+            reportLog.setStatus(ReportStatus.COMPLETED);
+            save(reportLog);
+            log.info("Отчет {} построен", reportId);
+        } catch (Exception e) {
+            log.error("Ошибка построения отчета {}: {}", reportId, e.getMessage(), e);
+            fail(reportLog, "Ошибка генерации отчета: " + e.getMessage());
+        }
+    }
+
+    private void fail(ReportLog reportLog, String error) {
+        reportLog.setStatus(ReportStatus.FAILED);
+        reportLog.setErrorMessage(error);
+        save(reportLog);
+    }
+
+    /**
+     * Сохраняет отчет и отправляет новое состояние подписчикам
+     */
+    private ReportLog save(ReportLog reportLog) {
+        ReportLog saved = reportLogRepository.save(reportLog);
+        List<SseEmitter> emitters = subscribers.get(saved.getReportId());
+        if (emitters != null) {
+            ReportResponse response = reportMapper.toResponse(saved);
+            emitters.forEach(emitter -> send(emitter, response));
+        }
+        return saved;
+    }
+
+    private void send(SseEmitter emitter, ReportResponse response) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(response));
+            if (isFinished(response.status())) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Клиент отключился или поток уже закрыт
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void unsubscribe(Long reportId, SseEmitter emitter) {
+        subscribers.computeIfPresent(reportId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private static boolean isFinished(String status) {
+        return ReportStatus.COMPLETED.name().equals(status) || ReportStatus.FAILED.name().equals(status);
+    }
+}
@@ -3,17 +3,55 @@ package com.drones.skilldrones.service;
 import com.drones.skilldrones.dto.response.FlightResponse;
 import com.drones.skilldrones.dto.response.ReportResponse;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 public interface ReportService {
-    File generateFlightsChart(LocalDate startDate, LocalDate endDate, String chartType);
+    /**
+     * График полетов за период из кэша; при промахе строится и сохраняется в кэш
+     */
+    ChartCache.CachedChart generateFlightsChart(LocalDate startDate, LocalDate endDate, String chartType);
+
+    /**
+     * ETag графика - без построения, по версии данных периода
+     */
+    String getFlightsChartETag(LocalDate startDate, LocalDate endDate, String chartType);
+
+    /**
+     * Построенный ранее график по ETag с открытым файлом, если он еще в кэше.
+     * Файл открывается до отправки заголовков: вытеснение из кэша не обрежет ответ
+     */
+    Optional<ChartCache.OpenChart> openCachedFlightsChart(String etag);
+
+    /**
+     * Пишет PNG графика в out: из открытого заранее файла кэша (cached, если не null; закрывается), из кэша
+     * или построением на пуле {@link ChartRenderer} с одновременным сохранением в кэш под etag
+     */
+    void writeFlightsChart(LocalDate startDate, LocalDate endDate, String chartType, String etag,
+                           ChartCache.OpenChart cached, OutputStream out) throws IOException;
+
     String generateRegionalReport(LocalDate startDate, LocalDate endDate);
     Map<String, Object> generateComprehensiveReport(LocalDate startDate, LocalDate endDate);
 
+    /**
+     * Данные отчета REGIONAL, COMPREHENSIVE или TOP_REGIONS без записи в историю отчетов -
+     * для фоновых задач, которые ведут ReportLog сами
+     *
+     * @throws IllegalArgumentException для неизвестного типа отчета
+     */
+    Map<String, Object> buildReport(String reportType, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Сохраненный результат отчета того же типа за тот же период, построенного по версии данных dataVersion
+     * (см. {@link FlightRollupService#dataVersion}); пусто, если полеты периода с тех пор менялись
+     */
+    Optional<Map<String, Object>> getMemoizedReport(String reportType, LocalDate startDate, LocalDate endDate,
+                                                    long dataVersion);
+
     // Новые методы для работы с историей отчетов
     List<ReportResponse> getReportHistory();
     Optional<ReportResponse> getReportById(Long reportId);
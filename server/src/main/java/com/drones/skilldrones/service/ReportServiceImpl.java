@@ -1,72 +1,121 @@
 package com.drones.skilldrones.service;
 
+import com.drones.skilldrones.dto.RegionFlightCount;
 import com.drones.skilldrones.dto.response.FlightResponse;
 import com.drones.skilldrones.dto.response.ReportResponse;
 import com.drones.skilldrones.mapper.FlightMapper;
 import com.drones.skilldrones.mapper.ReportFlightMapper;
 import com.drones.skilldrones.mapper.ReportMapper;
 import com.drones.skilldrones.model.Flight;
-import com.drones.skilldrones.model.Region;
 import com.drones.skilldrones.model.ReportFlight;
 import com.drones.skilldrones.model.ReportLog;
 import com.drones.skilldrones.repository.FlightRepository;
 import com.drones.skilldrones.repository.ReportFlightRepository;
 import com.drones.skilldrones.repository.ReportLogRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.data.general.DefaultPieDataset;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
-import javax.imageio.ImageIO;
 
 
 @Service
 public class ReportServiceImpl implements ReportService {
     private final FlightRepository flightRepository;
+    private final FlightRollupService flightRollupService;
     private final ReportLogRepository reportLogRepository;
     private final ReportFlightRepository reportFlightRepository;
     private final ReportMapper reportMapper;
     private final FlightMapper flightMapper;
     private final ObjectMapper objectMapper;
+    private final ChartCache chartCache;
+    private final ChartRenderer chartRenderer;
 
     public ReportServiceImpl(FlightRepository flightRepository,
+                             FlightRollupService flightRollupService,
                              ReportLogRepository reportLogRepository,
                              ReportFlightRepository reportFlightRepository,
                              ReportMapper reportMapper,
                              ReportFlightMapper flightProcessingMapper, FlightMapper flightMapper, // Существующий маппер
-                             ObjectMapper objectMapper) {
+                             ObjectMapper objectMapper,
+                             ChartCache chartCache,
+                             ChartRenderer chartRenderer) {
         this.flightRepository = flightRepository;
+        this.flightRollupService = flightRollupService;
         this.reportLogRepository = reportLogRepository;
         this.reportFlightRepository = reportFlightRepository;
         this.reportMapper = reportMapper;
         this.flightMapper = flightMapper;
         this.objectMapper = objectMapper;
+        this.chartCache = chartCache;
+        this.chartRenderer = chartRenderer;
     }
 
     @Override
-    public File generateFlightsChart(LocalDate startDate, LocalDate endDate, String chartType) {
+    public ChartCache.CachedChart generateFlightsChart(LocalDate startDate, LocalDate endDate, String chartType) {
+        // Версия читается до данных графика: в кэш не попадет график старше своего ключа
+        String key = chartKey(startDate, endDate, chartType);
+        Optional<ChartCache.CachedChart> cached = chartCache.get(key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        return renderFlightsChart(key, startDate, endDate, chartType, OutputStream.nullOutputStream());
+    }
+
+    @Override
+    public String getFlightsChartETag(LocalDate startDate, LocalDate endDate, String chartType) {
+        return chartKey(startDate, endDate, chartType);
+    }
+
+    @Override
+    public Optional<ChartCache.OpenChart> openCachedFlightsChart(String etag) {
+        return chartCache.open(etag);
+    }
+
+    @Override
+    public void writeFlightsChart(LocalDate startDate, LocalDate endDate, String chartType, String etag,
+                                  ChartCache.OpenChart cached, OutputStream out) throws IOException {
+        // График мог появиться в кэше после отправки заголовков; файл, вытесненный до открытия, строится заново
+        Optional<ChartCache.OpenChart> chart = cached != null ? Optional.of(cached) : chartCache.open(etag);
+        if (chart.isPresent()) {
+            try (ChartCache.OpenChart open = chart.get()) {
+                open.in().transferTo(out);
+            }
+            return;
+        }
+        renderFlightsChart(etag, startDate, endDate, chartType, out);
+    }
+
+    /**
+     * Строит график на пуле {@link ChartRenderer}: PNG пишется в out по мере кодирования
+     * и одновременно в буфер, который после построения сохраняется в кэш под ключом key
+     */
+    private ChartCache.CachedChart renderFlightsChart(String key, LocalDate startDate, LocalDate endDate,
+                                                      String chartType, OutputStream out) {
         ReportLog reportLog = createReportLog("CHART", startDate, endDate,
                 Map.of("chartType", chartType));
 
         try {
-            List<Flight> flights = flightRepository.findByFlightDateBetween(startDate, endDate);
-
-            DefaultCategoryDataset dataset = createDataset(flights);
-            JFreeChart chart = createChart(dataset, chartType, flights);
-
-            File chartFile = File.createTempFile("chart", ".png");
-            BufferedImage image = chart.createBufferedImage(800, 600);
-            ImageIO.write(image, "png", chartFile);
+            ByteArrayOutputStream png = new ByteArrayOutputStream(64 * 1024);
+            chartRenderer.render(() -> createChart(createDataset(startDate, endDate), chartType, startDate, endDate),
+                    new TeeOutputStream(out, png));
+            ChartCache.CachedChart chartFile = chartCache.put(key, png.toByteArray());
 
             // Обновляем отчет
-            reportLog.setFilePath(chartFile.getAbsolutePath());
+            reportLog.setFilePath(chartFile.file().toString());
             reportLog.setStatus(ReportLog.ReportStatus.COMPLETED);
             reportLogRepository.save(reportLog);
 
@@ -80,40 +129,27 @@ public class ReportServiceImpl implements ReportService {
         }
     }
 
+    private String chartKey(LocalDate startDate, LocalDate endDate, String chartType) {
+        return ChartCache.key("flights", startDate, endDate, normalizeChartType(chartType),
+                chartRenderer.getWidth(), chartRenderer.getHeight(),
+                flightRollupService.dataVersion(startDate, endDate), flightRollupService.regionsGeneration());
+    }
+
+    /**
+     * Неизвестный тип строится как столбчатый (см. createChart)
+     */
+    private static String normalizeChartType(String chartType) {
+        String type = chartType.toLowerCase();
+        return type.equals("line") || type.equals("pie") ? type : "bar";
+    }
+
     @Override
     public String generateRegionalReport(LocalDate startDate, LocalDate endDate) {
         ReportLog reportLog = createReportLog("REGIONAL", startDate, endDate, null);
 
         try {
-            List<Flight> flights = flightRepository.findByFlightDateBetween(startDate, endDate);
-
-            Map<String, Long> regionalStats = flights.stream()
-                    .filter(flight -> flight.getDepartureRegion() != null)
-                    .collect(Collectors.groupingBy(
-                            flight -> flight.getDepartureRegion().getName(),
-                            Collectors.counting()
-                    ));
-
-            Map<String, Object> reportData = new LinkedHashMap<>();
-            reportData.put("periodStart", startDate.toString());
-            reportData.put("periodEnd", endDate.toString());
-            reportData.put("totalFlights", flights.size());
-            reportData.put("regionalDistribution", regionalStats);
-
-            List<Map<String, Object>> topRegions = regionalStats.entrySet().stream()
-                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                    .limit(10)
-                    .map(entry -> {
-                        Map<String, Object> regionInfo = new HashMap<>();
-                        regionInfo.put("region", entry.getKey());
-                        regionInfo.put("flightCount", entry.getValue());
-                        return regionInfo;
-                    })
-                    .collect(Collectors.toList());
-
-            reportData.put("top10Regions", topRegions);
-
-            String jsonReport = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(reportData);
+            String jsonReport = objectMapper.writerWithDefaultPrettyPrinter()
+                    .writeValueAsString(buildRegionalReport(startDate, endDate));
 
             // Сохраняем параметры отчета
             reportLog.setParameters(jsonReport);
@@ -130,50 +166,48 @@ public class ReportServiceImpl implements ReportService {
         }
     }
 
+    private Map<String, Object> buildRegionalReport(LocalDate startDate, LocalDate endDate) {
+        long totalFlights = countFlights(startDate, endDate);
+        Map<String, Long> regionalStats = countByRegionName(startDate, endDate);
+
+        Map<String, Object> reportData = new LinkedHashMap<>();
+        reportData.put("periodStart", startDate.toString());
+        reportData.put("periodEnd", endDate.toString());
+        reportData.put("totalFlights", totalFlights);
+        reportData.put("regionalDistribution", regionalStats);
+
+        List<Map<String, Object>> topRegions = regionalStats.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(10)
+                .map(entry -> {
+                    Map<String, Object> regionInfo = new HashMap<>();
+                    regionInfo.put("region", entry.getKey());
+                    regionInfo.put("flightCount", entry.getValue());
+                    return regionInfo;
+                })
+                .collect(Collectors.toList());
+
+        reportData.put("top10Regions", topRegions);
+        return reportData;
+    }
+
     @Override
     public Map<String, Object> generateComprehensiveReport(LocalDate startDate, LocalDate endDate) {
+        // Версия читается до данных отчета: результат не окажется старше своей версии
+        long dataVersion = flightRollupService.dataVersion(startDate, endDate);
+        Optional<Map<String, Object>> memoized = getMemoizedReport("COMPREHENSIVE", startDate, endDate, dataVersion);
+        if (memoized.isPresent()) {
+            return memoized.get();
+        }
+
         ReportLog reportLog = createReportLog("COMPREHENSIVE", startDate, endDate, null);
         Map<String, Object> comprehensiveReport = new LinkedHashMap<>();
 
         try {
-            List<Flight> flights = flightRepository.findByFlightDateBetween(startDate, endDate);
-
-            comprehensiveReport.put("reportType", "COMPREHENSIVE");
-            comprehensiveReport.put("periodStart", startDate.toString());
-            comprehensiveReport.put("periodEnd", endDate.toString());
-            comprehensiveReport.put("totalFlights", flights.size());
-
-            // Статистика по типам дронов
-            Map<String, Long> droneTypeStats = flights.stream()
-                    .filter(flight -> flight.getDroneType() != null)
-                    .collect(Collectors.groupingBy(
-                            Flight::getDroneType,
-                            Collectors.counting()
-                    ));
-            comprehensiveReport.put("droneTypeDistribution", droneTypeStats);
-
-            // Региональная статистика
-            Map<String, Long> regionalStats = flights.stream()
-                    .filter(flight -> flight.getDepartureRegion() != null)
-                    .collect(Collectors.groupingBy(
-                            flight -> flight.getDepartureRegion().getName(),
-                            Collectors.counting()
-                    ));
-            comprehensiveReport.put("regionalDistribution", regionalStats);
-
-            // Ежедневная статистика
-            Map<String, Long> dailyStats = flights.stream()
-                    .collect(Collectors.groupingBy(
-                            flight -> flight.getFlightDate().toString(),
-                            Collectors.counting()
-                    ));
-            comprehensiveReport.put("dailyFlights", dailyStats);
-
-            // Генерация графика
-            File chartFile = generateFlightsChart(startDate, endDate, "bar");
-            comprehensiveReport.put("chartFilePath", chartFile.getAbsolutePath());
+            comprehensiveReport = buildComprehensiveReport(startDate, endDate);
 
             // Сохраняем параметры отчета
+            reportLog.setDataVersion(dataVersion);
             reportLog.setParameters(objectMapper.writeValueAsString(comprehensiveReport));
             reportLog.setStatus(ReportLog.ReportStatus.COMPLETED);
             reportLogRepository.save(reportLog);
@@ -188,6 +222,64 @@ public class ReportServiceImpl implements ReportService {
         return comprehensiveReport;
     }
 
+    private Map<String, Object> buildComprehensiveReport(LocalDate startDate, LocalDate endDate) {
+        Map<String, Object> comprehensiveReport = new LinkedHashMap<>();
+        comprehensiveReport.put("reportType", "COMPREHENSIVE");
+        comprehensiveReport.put("periodStart", startDate.toString());
+        comprehensiveReport.put("periodEnd", endDate.toString());
+        comprehensiveReport.put("totalFlights", countFlights(startDate, endDate));
+
+        // Статистика по типам дронов
+        comprehensiveReport.put("droneTypeDistribution", countByDroneType(startDate, endDate));
+
+        // Региональная статистика
+        comprehensiveReport.put("regionalDistribution", countByRegionName(startDate, endDate));
+
+        // Ежедневная статистика
+        Map<String, Long> dailyStats = new LinkedHashMap<>();
+        countByDate(startDate, endDate)
+                .forEach((date, count) -> dailyStats.put(date.toString(), count));
+        comprehensiveReport.put("dailyFlights", dailyStats);
+
+        // Генерация графика
+        ChartCache.CachedChart chartFile = generateFlightsChart(startDate, endDate, "bar");
+        comprehensiveReport.put("chartFilePath", chartFile.file().toString());
+        return comprehensiveReport;
+    }
+
+    @Override
+    public Optional<Map<String, Object>> getMemoizedReport(String reportType, LocalDate startDate, LocalDate endDate,
+                                                           long dataVersion) {
+        Optional<ReportLog> stored = reportLogRepository.findCompletedByDataVersion(
+                reportType, startDate, endDate, dataVersion);
+        if (stored.isEmpty() || stored.get().getParameters() == null) {
+            return Optional.empty();
+        }
+
+        try {
+            Map<String, Object> report = objectMapper.readValue(stored.get().getParameters(),
+                    new TypeReference<LinkedHashMap<String, Object>>() { });
+            // График отчета мог быть вытеснен из кэша графиков - тогда отчет строится заново
+            Object chartFilePath = report.get("chartFilePath");
+            if (chartFilePath != null && !Files.exists(Path.of(chartFilePath.toString()))) {
+                return Optional.empty();
+            }
+            return Optional.of(report);
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Map<String, Object> buildReport(String reportType, LocalDate startDate, LocalDate endDate) {
+        return switch (reportType) {
+            case "REGIONAL" -> buildRegionalReport(startDate, endDate);
+            case "COMPREHENSIVE" -> buildComprehensiveReport(startDate, endDate);
+            case "TOP_REGIONS" -> buildTopRegionsReport(startDate, endDate);
+            default -> throw new IllegalArgumentException("Неизвестный тип отчета: " + reportType);
+        };
+    }
+
     @Override
     public List<ReportResponse> getReportHistory() {
         List<ReportLog> reports = reportLogRepository.findAllByOrderByCreatedAtDesc();
@@ -235,50 +327,20 @@ public class ReportServiceImpl implements ReportService {
 
     @Override
     public Map<String, Object> generateTopRegionsReport(LocalDate startDate, LocalDate endDate) {
+        long dataVersion = flightRollupService.dataVersion(startDate, endDate);
+        Optional<Map<String, Object>> memoized = getMemoizedReport("TOP_REGIONS", startDate, endDate, dataVersion);
+        if (memoized.isPresent()) {
+            return memoized.get();
+        }
+
         ReportLog reportLog = createReportLog("TOP_REGIONS", startDate, endDate, null);
         Map<String, Object> report = new LinkedHashMap<>();
 
         try {
-            List<Flight> flights = flightRepository.findByFlightDateBetween(startDate, endDate);
-
-            // Группируем полеты по регионам и считаем плотность полетов
-            List<Map<String, Object>> topRegions = flights.stream()
-                    .filter(flight -> flight.getDepartureRegion() != null)
-                    .collect(Collectors.groupingBy(
-                            Flight::getDepartureRegion,
-                            Collectors.counting()
-                    ))
-                    .entrySet().stream()
-                    .sorted(Map.Entry.<Region, Long>comparingByValue().reversed())
-                    .limit(10)
-                    .map(entry -> {
-                        Region region = entry.getKey();
-                        long flightCount = entry.getValue();
-                        double density = region.getAreaKm2() != null ?
-                                (double) flightCount / region.getAreaKm2() * 1000 : 0;
-
-                        Map<String, Object> regionInfo = new HashMap<>();
-                        regionInfo.put("regionName", region.getName());
-                        regionInfo.put("flightCount", flightCount);
-                        regionInfo.put("areaKm2", region.getAreaKm2());
-                        regionInfo.put("flightDensity", Math.round(density * 100) / 100.0);
-                        regionInfo.put("regionId", region.getRegionId());
-
-                        return regionInfo;
-                    })
-                    .collect(Collectors.toList());
-
-            report.put("reportType", "TOP_REGIONS");
-            report.put("periodStart", startDate.toString());
-            report.put("periodEnd", endDate.toString());
-            report.put("totalFlightsAnalyzed", flights.size());
-            report.put("topRegions", topRegions);
-            report.put("totalRegionsWithFlights",
-                    flights.stream().filter(f -> f.getDepartureRegion() != null)
-                            .map(f -> f.getDepartureRegion().getRegionId())
-                            .distinct().count());
+            report = buildTopRegionsReport(startDate, endDate);
 
             // Сохраняем отчет
+            reportLog.setDataVersion(dataVersion);
             reportLog.setParameters(objectMapper.writeValueAsString(report));
             reportLog.setStatus(ReportLog.ReportStatus.COMPLETED);
             reportLogRepository.save(reportLog);
@@ -293,6 +355,35 @@ public class ReportServiceImpl implements ReportService {
         return report;
     }
 
+    private Map<String, Object> buildTopRegionsReport(LocalDate startDate, LocalDate endDate) {
+        // Топ-10 регионов и плотность полетов
+        List<Map<String, Object>> topRegions = topRegions(startDate, endDate, 10).stream()
+                .map(region -> {
+                    long flightCount = region.flightCount();
+                    double density = region.areaKm2() != null ?
+                            (double) flightCount / region.areaKm2() * 1000 : 0;
+
+                    Map<String, Object> regionInfo = new HashMap<>();
+                    regionInfo.put("regionName", region.regionName());
+                    regionInfo.put("flightCount", flightCount);
+                    regionInfo.put("areaKm2", region.areaKm2());
+                    regionInfo.put("flightDensity", Math.round(density * 100) / 100.0);
+                    regionInfo.put("regionId", region.regionId());
+
+                    return regionInfo;
+                })
+                .collect(Collectors.toList());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("reportType", "TOP_REGIONS");
+        report.put("periodStart", startDate.toString());
+        report.put("periodEnd", endDate.toString());
+        report.put("totalFlightsAnalyzed", countFlights(startDate, endDate));
+        report.put("topRegions", topRegions);
+        report.put("totalRegionsWithFlights", countRegionsWithFlights(startDate, endDate));
+        return report;
+    }
+
     // Вспомогательные методы
     private ReportLog createReportLog(String reportType, LocalDate startDate, LocalDate endDate,
                                       Map<String, Object> parameters) {
@@ -313,25 +404,75 @@ public class ReportServiceImpl implements ReportService {
         return reportLogRepository.save(reportLog);
     }
 
-    // Методы для создания графиков (без изменений)
-    private DefaultCategoryDataset createDataset(List<Flight> flights) {
+    // Агрегаты для отчетов: из счетчиков FlightRollupService, а пока они недоступны -
+    // группировкой в PostgreSQL по flights (сущности полетов не загружаются)
+    private long countFlights(LocalDate startDate, LocalDate endDate) {
+        if (flightRollupService.isAvailable()) {
+            return flightRollupService.countFlights(startDate, endDate);
+        }
+        return flightRepository.countByFlightDateBetween(startDate, endDate);
+    }
+
+    private Map<LocalDate, Long> countByDate(LocalDate startDate, LocalDate endDate) {
+        if (flightRollupService.isAvailable()) {
+            return flightRollupService.countByDate(startDate, endDate);
+        }
+        Map<LocalDate, Long> result = new LinkedHashMap<>();
+        flightRepository.countByDate(startDate, endDate)
+                .forEach(row -> result.put(row.date(), row.flightCount()));
+        return result;
+    }
+
+    private Map<String, Long> countByRegionName(LocalDate startDate, LocalDate endDate) {
+        if (flightRollupService.isAvailable()) {
+            return flightRollupService.countByRegionName(startDate, endDate);
+        }
+        Map<String, Long> result = new LinkedHashMap<>();
+        flightRepository.regionFlightCountsBetween(startDate, endDate, Pageable.unpaged())
+                .forEach(row -> result.merge(row.regionName(), row.flightCount(), Long::sum));
+        return result;
+    }
+
+    private Map<String, Long> countByDroneType(LocalDate startDate, LocalDate endDate) {
+        if (flightRollupService.isAvailable()) {
+            return flightRollupService.countByDroneType(startDate, endDate);
+        }
+        Map<String, Long> result = new LinkedHashMap<>();
+        flightRepository.countByDroneType(startDate, endDate)
+                .forEach(row -> result.put(row.droneType(), row.flightCount()));
+        return result;
+    }
+
+    private List<RegionFlightCount> topRegions(LocalDate startDate, LocalDate endDate, int limit) {
+        if (flightRollupService.isAvailable()) {
+            return flightRollupService.topRegions(startDate, endDate, limit);
+        }
+        return flightRepository.regionFlightCountsBetween(startDate, endDate, PageRequest.of(0, limit));
+    }
+
+    private long countRegionsWithFlights(LocalDate startDate, LocalDate endDate) {
+        if (flightRollupService.isAvailable()) {
+            return flightRollupService.countRegionsWithFlights(startDate, endDate);
+        }
+        return flightRepository.countDepartureRegionsBetween(startDate, endDate);
+    }
+
+    // Методы для создания графиков
+    private DefaultCategoryDataset createDataset(LocalDate startDate, LocalDate endDate) {
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-        flights.stream()
-                .collect(Collectors.groupingBy(
-                        Flight::getFlightDate,
-                        Collectors.counting()
-                ))
+        countByDate(startDate, endDate)
                 .forEach((date, count) -> dataset.addValue(count, "Полеты", date.toString()));
         return dataset;
     }
 
-    private JFreeChart createChart(DefaultCategoryDataset dataset, String chartType, List<Flight> flights) {
+    private JFreeChart createChart(DefaultCategoryDataset dataset, String chartType,
+                                   LocalDate startDate, LocalDate endDate) {
         return switch (chartType.toLowerCase()) {
             case "line" -> ChartFactory.createLineChart(
                     "Статистика полетов по дням", "Дата", "Количество полетов",
                     dataset, org.jfree.chart.plot.PlotOrientation.VERTICAL, true, true, false);
             case "pie" -> ChartFactory.createPieChart(
-                    "Распределение полетов по регионам", createPieDataset(flights),
+                    "Распределение полетов по регионам", createPieDataset(startDate, endDate),
                     true, true, false);
             default -> ChartFactory.createBarChart(
                     "Статистика полетов по дням", "Дата", "Количество полетов",
@@ -339,15 +480,9 @@ public class ReportServiceImpl implements ReportService {
         };
     }
 
-    private DefaultPieDataset createPieDataset(List<Flight> flights) {
+    private DefaultPieDataset createPieDataset(LocalDate startDate, LocalDate endDate) {
         DefaultPieDataset dataset = new DefaultPieDataset();
-        flights.stream()
-                .filter(flight -> flight.getDepartureRegion() != null)
-                .collect(Collectors.groupingBy(
-                        flight -> flight.getDepartureRegion().getName(),
-                        Collectors.counting()
-                ))
-                .forEach(dataset::setValue);
+        countByRegionName(startDate, endDate).forEach(dataset::setValue);
         return dataset;
     }
 
@@ -373,4 +508,35 @@ public class ReportServiceImpl implements ReportService {
         public long getPendingReports() { return pendingReports; }
         public double getSuccessRate() { return successRate; }
     }
+
+    /**
+     * Поток, дублирующий запись в два потока: ответ клиенту и буфер кэша
+     */
+    private static final class TeeOutputStream extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+    }
 }
@@ -0,0 +1,261 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.ParsedFlightData;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Однопроходный разбор телеграмм SHR/DEP/ARR без регулярных выражений.
+ * Все поля SHR (ID полета, DOF/, TYP/, REG/, координаты, время) извлекаются за один обход текста
+ * по символам; строки создаются только для итоговых значений.
+ * Семантика совпадает с прежними регулярными выражениями: для каждого поля берется первое вхождение.
+ */
+public final class ShrTelegramTokenizer {
+    private static final String FLIGHT_ID_PREFIX = "SHR-";
+    private static final String DATE_MARKER = "DOF/";
+    private static final String TYPE_MARKER = "TYP/";
+    private static final String REGISTRATION_MARKER = "REG/";
+    private static final int COORDINATES_LENGTH = 11; // DDMM[NS]DDDMM[EW]
+    private static final String UNKNOWN_TYPE = "UNKNOWN";
+
+    private ShrTelegramTokenizer() {
+    }
+
+    /**
+     * Разбирает SHR телеграмму и заполняет поля ParsedFlightData.
+     * Если DOF/ не найден - дата полета сегодняшняя, если TYP/ не найден - тип UNKNOWN.
+     *
+     * @throws DateTimeException если в DOF/ указана несуществующая дата
+     */
+    public static void tokenize(String text, ParsedFlightData data) {
+        data.setFlightId(extractFlightId(text));
+
+        LocalDate flightDate = null;
+        String droneType = null;
+        String registration = null;
+        String coordinates = null;
+        LocalTime time = null;
+        boolean timeFound = false;
+
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (flightDate != null && droneType != null && registration != null
+                    && coordinates != null && timeFound) {
+                break;
+            }
+            char c = text.charAt(i);
+            switch (c) {
+                case 'D' -> {
+                    if (flightDate == null && text.startsWith(DATE_MARKER, i)
+                            && isDigits(text, i + DATE_MARKER.length(), 6)) {
+                        flightDate = parseDate(text, i + DATE_MARKER.length());
+                    }
+                }
+                case 'T' -> {
+                    if (droneType == null && text.startsWith(TYPE_MARKER, i)
+                            && isUpperLetters(text, i + TYPE_MARKER.length(), 3)) {
+                        int start = i + TYPE_MARKER.length();
+                        droneType = text.substring(start, start + 3);
+                    }
+                }
+                case 'R' -> {
+                    if (registration == null && text.startsWith(REGISTRATION_MARKER, i)) {
+                        registration = readToken(text, i + REGISTRATION_MARKER.length());
+                    }
+                }
+                case '-' -> {
+                    if (!timeFound && isDigits(text, i + 1, 4)) {
+                        time = parseTime(text, i + 1);
+                        timeFound = true;
+                    }
+                }
+                default -> {
+                    if (coordinates == null && c >= '0' && c <= '9' && isCoordinates(text, i)) {
+                        coordinates = normalizeCoordinates(text, i);
+                    }
+                }
+            }
+        }
+
+        data.setFlightDate(flightDate != null ? flightDate : LocalDate.now());
+        data.setDroneType(droneType != null ? droneType : UNKNOWN_TYPE);
+        data.setDroneRegistration(registration);
+        data.setCoordinates(coordinates);
+        data.setDepartureCoords(coordinates);
+        data.setArrivalCoords(coordinates);
+        data.setDepartureTime(time);
+        data.setArrivalTime(time);
+    }
+
+    /**
+     * Первое время вида "-HHmm" в тексте
+     */
+    public static LocalTime findFirstTime(String text) {
+        if (text == null) return null;
+
+        for (int i = text.indexOf('-'); i >= 0; i = text.indexOf('-', i + 1)) {
+            if (isDigits(text, i + 1, 4)) {
+                return parseTime(text, i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Время после маркера в DEP/ARR телеграмме, например "ATD 0705" или "ATA 1250"
+     */
+    public static LocalTime findTimeAfter(String text, String marker) {
+        if (text == null) return null;
+
+        for (int i = text.indexOf(marker); i >= 0; i = text.indexOf(marker, i + 1)) {
+            int start = i + marker.length();
+            if (isDigits(text, start, 4)) {
+                return parseTime(text, start);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Время из строки "HHmm"; null, если строка не является корректным временем
+     */
+    public static LocalTime parseTime(String text) {
+        if (text == null || text.length() != 4 || !isDigits(text, 0, 4)) {
+            return null;
+        }
+        return parseTime(text, 0);
+    }
+
+    private static String extractFlightId(String text) {
+        if (!text.startsWith(FLIGHT_ID_PREFIX)) {
+            return null;
+        }
+        int end = text.indexOf('\n');
+        if (end < 0) {
+            end = text.length();
+        }
+        int start = FLIGHT_ID_PREFIX.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        return text.substring(start, end);
+    }
+
+    /**
+     * HHmm -> LocalTime по правилам прежнего DateTimeFormatter.ofPattern("HHmm"):
+     * 2400 трактуется как полночь, остальные значения вне диапазона - null
+     */
+    private static LocalTime parseTime(String text, int start) {
+        int hour = twoDigits(text, start);
+        int minute = twoDigits(text, start + 2);
+        if (hour == 24 && minute == 0) {
+            return LocalTime.MIDNIGHT;
+        }
+        if (hour > 23 || minute > 59) {
+            return null;
+        }
+        return LocalTime.of(hour, minute);
+    }
+
+    /**
+     * ddMMyy -> LocalDate по правилам прежнего DateTimeFormatter.ofPattern("ddMMyy"):
+     * год 20yy, день 29-31 сдвигается на последний день месяца
+     */
+    private static LocalDate parseDate(String text, int start) {
+        int day = twoDigits(text, start);
+        int month = twoDigits(text, start + 2);
+        int year = 2000 + twoDigits(text, start + 4);
+
+        LocalDate firstDay = LocalDate.of(year, month, 1);
+        if (day < 1 || day > 31) {
+            throw new DateTimeException("Некорректный день месяца в DOF/: " + day);
+        }
+        return firstDay.withDayOfMonth(Math.min(day, firstDay.lengthOfMonth()));
+    }
+
+    /**
+     * "5957N02905E" -> "59.950000,29.083333" (широта,долгота с 6 знаками).
+     * Значение считается в миллионных долях градуса целочисленно, без String.format,
+     * поэтому десятичный разделитель не зависит от локали JVM.
+     */
+    private static String normalizeCoordinates(String text, int start) {
+        long latitude = toMicroDegrees(twoDigits(text, start), twoDigits(text, start + 2));
+        long longitude = toMicroDegrees(
+                (text.charAt(start + 5) - '0') * 100 + twoDigits(text, start + 6),
+                twoDigits(text, start + 8));
+
+        StringBuilder result = new StringBuilder(24);
+        appendMicroDegrees(result, latitude, text.charAt(start + 4) == 'S');
+        result.append(',');
+        appendMicroDegrees(result, longitude, text.charAt(start + 10) == 'W');
+        return result.toString();
+    }
+
+    private static long toMicroDegrees(int degrees, int minutes) {
+        // minutes * 10^6 / 60 с округлением; ровно половины быть не может
+        return degrees * 1_000_000L + (minutes * 1_000_000L + 30) / 60;
+    }
+
+    private static void appendMicroDegrees(StringBuilder out, long value, boolean negative) {
+        if (negative) {
+            out.append('-');
+        }
+        out.append(value / 1_000_000).append('.');
+        long fraction = value % 1_000_000;
+        for (long divisor = 100_000; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + fraction / divisor % 10));
+        }
+    }
+
+    private static boolean isCoordinates(String text, int start) {
+        if (start + COORDINATES_LENGTH > text.length()) {
+            return false;
+        }
+        char latitudeDirection = text.charAt(start + 4);
+        char longitudeDirection = text.charAt(start + 10);
+        return (latitudeDirection == 'N' || latitudeDirection == 'S')
+                && (longitudeDirection == 'E' || longitudeDirection == 'W')
+                && isDigits(text, start, 4)
+                && isDigits(text, start + 5, 5);
+    }
+
+    /**
+     * Значение до пробела, перевода строки, '/' или ')'
+     */
+    private static String readToken(String text, int start) {
+        int end = start;
+        while (end < text.length()) {
+            char c = text.charAt(end);
+            if (c <= ' ' || c == '/' || c == ')') break;
+            end++;
+        }
+        return end > start ? text.substring(start, end) : null;
+    }
+
+    private static boolean isDigits(String text, int start, int count) {
+        if (start + count > text.length()) {
+            return false;
+        }
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    private static boolean isUpperLetters(String text, int start, int count) {
+        if (start + count > text.length()) {
+            return false;
+        }
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < 'A' || c > 'Z') return false;
+        }
+        return true;
+    }
+
+    private static int twoDigits(String text, int start) {
+        return (text.charAt(start) - '0') * 10 + (text.charAt(start + 1) - '0');
+    }
+}
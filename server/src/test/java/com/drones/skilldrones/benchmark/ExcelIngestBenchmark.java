@@ -0,0 +1,163 @@
+package com.drones.skilldrones.benchmark;
+
+import com.drones.skilldrones.model.RawTelegram;
+import com.drones.skilldrones.service.ExcelTelegramReader;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение DOM-чтения (XSSFWorkbook, прежний путь parseExcelFile) и потокового
+ * SAX-чтения ExcelTelegramReader на файлах в 10k, 100k и 1M строк.
+ * Время - SingleShotTime на чтение файла, память - пиковое заполнение heap
+ * за вызов (счетчик peakHeapMb) и аллокации через -prof gc.
+ *
+ * Запуск: main() из IDE или java -cp target/test-classes:... ExcelIngestBenchmark.
+ * Для DOM на 1M строк нужен большой -Xmx, иначе вызов завершится OutOfMemoryError.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ExcelIngestBenchmark {
+
+    private static final String SHR_TEMPLATE = """
+            SHR-RA%05dG
+            -ZZZZ0705
+            -M0000/M0029 /ZONA 5943N02942E/
+            -DEP/5935N02935E DEST/5938N02946E DOF/250105 TYP/BLA""";
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private Path xlsxFile;
+    private final ExcelTelegramReader streamingReader = new ExcelTelegramReader();
+
+    @Setup(Level.Trial)
+    public void createFile() throws Exception {
+        xlsxFile = Files.createTempFile("telegrams_bench_", ".xlsx");
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+             OutputStream out = Files.newOutputStream(xlsxFile)) {
+            Sheet sheet = workbook.createSheet();
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Центр ЕС ОрВД");
+            header.createCell(1).setCellValue("SHR");
+            header.createCell(2).setCellValue("DEP");
+            header.createCell(3).setCellValue("ARR");
+
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("Санкт-Петербургский");
+                row.createCell(1).setCellValue(String.format(SHR_TEMPLATE, i % 100000));
+                row.createCell(2).setCellValue("-TITLE IDEP -SID " + i + " -ATD 0705");
+                row.createCell(3).setCellValue("-TITLE IARR -SID " + i + " -ATA 1250");
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws Exception {
+        Files.deleteIfExists(xlsxFile);
+    }
+
+    @Benchmark
+    public int domWorkbook(HeapCounters heap, Blackhole blackhole) throws Exception {
+        DataFormatter formatter = new DataFormatter();
+        int count = 0;
+        try (InputStream in = Files.newInputStream(xlsxFile);
+             Workbook workbook = new XSSFWorkbook(in)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+                Row row = sheet.getRow(i);
+                if (row == null || row.getPhysicalNumberOfCells() < 4) continue;
+
+                RawTelegram telegram = new RawTelegram();
+                telegram.setCenter(formatter.formatCellValue(row.getCell(0)).trim());
+                telegram.setShrRawText(formatter.formatCellValue(row.getCell(1)).trim());
+                telegram.setDepRawText(formatter.formatCellValue(row.getCell(2)).trim());
+                telegram.setArrRawText(formatter.formatCellValue(row.getCell(3)).trim());
+                blackhole.consume(telegram);
+                count++;
+            }
+            heap.sample();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int saxStreaming(HeapCounters heap, Blackhole blackhole) {
+        int count = streamingReader.read(xlsxFile, "bench.xlsx", telegram -> {
+            blackhole.consume(telegram);
+            heap.sampleEvery(10_000);
+        });
+        heap.sample();
+        return count;
+    }
+
+    /**
+     * Пиковое заполнение heap за вызов бенчмарка, в мегабайтах
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeapCounters {
+        public double peakHeapMb;
+        private long calls;
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+            peakHeapMb = 0;
+            calls = 0;
+        }
+
+        void sampleEvery(int n) {
+            if (++calls % n == 0) {
+                sample();
+            }
+        }
+
+        void sample() {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            peakHeapMb = Math.max(peakHeapMb, peak / (1024.0 * 1024.0));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExcelIngestBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,215 @@
+package com.drones.skilldrones.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Индекс по flight_date внутри помесячных секций: без индекса (только отсечение секций),
+ * B-tree и BRIN. Запросы - как у отчетов и списков по периоду: день, неделя, месяц (секция целиком),
+ * квартал (три секции) и группировка по регионам за месяц. Период выбирается случайно в каждом вызове.
+ * <p>
+ * Данные синтетические, в схеме bench_partitioning: -Dbench.rows строк (по умолчанию 50 млн)
+ * за 60 месяцев с 2020 года, строки вставляются почти по порядку дат - как при загрузке телеграмм,
+ * на этом основан BRIN. Таблица создается один раз и переиспользуется, пока совпадает число строк;
+ * индекс пересоздается для каждого варианта, его размер печатается перед замером.
+ * Запросы выполняются подготовленными выражениями, как из приложения: после пяти выполнений
+ * драйвер переходит на серверный generic-план, секции отсекаются при выполнении.
+ * <p>
+ * Нужна PostgreSQL: подключение из POSTGRES_HOST, POSTGRES_PORT, POSTGRES_DB, POSTGRES_USER, POSTGRES_PASSWORD.
+ * Генерация 50 млн строк занимает десятки минут и около 5 ГБ на диске.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FlightPartitionIndexBenchmark {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int MONTHS = 60;
+    private static final int DAYS = (int) (FIRST_DAY.plusMonths(MONTHS).toEpochDay() - FIRST_DAY.toEpochDay());
+
+    private static final String COUNT_PERIOD = """
+            SELECT COUNT(*), AVG(duration_minutes) FROM bench_partitioning.flights
+            WHERE flight_date BETWEEN ? AND ?
+            """;
+    private static final String REGIONS_PERIOD = """
+            SELECT departure_region_id, COUNT(*) FROM bench_partitioning.flights
+            WHERE flight_date BETWEEN ? AND ?
+            GROUP BY departure_region_id
+            """;
+
+    @Param({"none", "btree", "brin"})
+    public String index;
+
+    private Connection connection;
+    private PreparedStatement countPeriod;
+    private PreparedStatement regionsPeriod;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        String url = "jdbc:postgresql://" + env("POSTGRES_HOST", "localhost") + ":" + env("POSTGRES_PORT", "5432")
+                + "/" + env("POSTGRES_DB", "drones");
+        connection = DriverManager.getConnection(url, env("POSTGRES_USER", "postgres"), env("POSTGRES_PASSWORD", ""));
+        long rows = Long.getLong("bench.rows", 50_000_000L);
+
+        try (Statement statement = connection.createStatement()) {
+            if (!generated(statement, rows)) {
+                generate(statement, rows);
+            }
+
+            statement.execute("DROP INDEX IF EXISTS bench_partitioning.idx_bench_flights_date");
+            switch (index) {
+                case "btree" -> statement.execute(
+                        "CREATE INDEX idx_bench_flights_date ON bench_partitioning.flights (flight_date)");
+                case "brin" -> statement.execute(
+                        "CREATE INDEX idx_bench_flights_date ON bench_partitioning.flights " +
+                                "USING brin (flight_date) WITH (pages_per_range = 32)");
+                default -> {
+                }
+            }
+            statement.execute("VACUUM ANALYZE bench_partitioning.flights");
+
+            try (ResultSet rs = statement.executeQuery("""
+                    SELECT COALESCE(SUM(pg_relation_size(i.indexrelid)), 0), SUM(pg_relation_size(c.oid))
+                    FROM pg_inherits h
+                    JOIN pg_class c ON c.oid = h.inhrelid
+                    LEFT JOIN pg_index i ON i.indrelid = c.oid
+                    WHERE h.inhparent = 'bench_partitioning.flights'::regclass
+                    """)) {
+                rs.next();
+                System.out.printf("%n%s: индексы %d МБ, таблица %d МБ%n", index,
+                        rs.getLong(1) / (1024 * 1024), rs.getLong(2) / (1024 * 1024));
+            }
+        }
+
+        countPeriod = connection.prepareStatement(COUNT_PERIOD);
+        regionsPeriod = connection.prepareStatement(REGIONS_PERIOD);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        connection.close();
+    }
+
+    @Benchmark
+    public void day(Blackhole blackhole) throws Exception {
+        LocalDate day = randomDay();
+        consume(countPeriod, day, day, blackhole);
+    }
+
+    @Benchmark
+    public void week(Blackhole blackhole) throws Exception {
+        LocalDate start = randomDay();
+        consume(countPeriod, start, start.plusDays(6), blackhole);
+    }
+
+    @Benchmark
+    public void month(Blackhole blackhole) throws Exception {
+        LocalDate start = randomDay().withDayOfMonth(1);
+        consume(countPeriod, start, start.plusMonths(1).minusDays(1), blackhole);
+    }
+
+    @Benchmark
+    public void quarter(Blackhole blackhole) throws Exception {
+        LocalDate start = randomDay().withDayOfMonth(1);
+        consume(countPeriod, start, start.plusMonths(3).minusDays(1), blackhole);
+    }
+
+    @Benchmark
+    public void regionsForMonth(Blackhole blackhole) throws Exception {
+        LocalDate start = randomDay().withDayOfMonth(1);
+        consume(regionsPeriod, start, start.plusMonths(1).minusDays(1), blackhole);
+    }
+
+    private static void consume(PreparedStatement statement, LocalDate start, LocalDate end,
+                                Blackhole blackhole) throws Exception {
+        statement.setDate(1, Date.valueOf(start));
+        statement.setDate(2, Date.valueOf(end));
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(rs.getLong(1));
+                blackhole.consume(rs.getObject(2));
+            }
+        }
+    }
+
+    private static LocalDate randomDay() {
+        // Последние три месяца не выбираются, чтобы квартал не выходил за данные
+        return FIRST_DAY.plusDays(ThreadLocalRandom.current().nextInt(DAYS - 92));
+    }
+
+    private static boolean generated(Statement statement, long rows) throws Exception {
+        try (ResultSet rs = statement.executeQuery(
+                "SELECT to_regclass('bench_partitioning.meta') IS NOT NULL")) {
+            rs.next();
+            if (!rs.getBoolean(1)) {
+                return false;
+            }
+        }
+        try (ResultSet rs = statement.executeQuery("SELECT rows FROM bench_partitioning.meta")) {
+            return rs.next() && rs.getLong(1) == rows;
+        }
+    }
+
+    private static void generate(Statement statement, long rows) throws Exception {
+        long start = System.currentTimeMillis();
+        statement.execute("DROP SCHEMA IF EXISTS bench_partitioning CASCADE");
+        statement.execute("CREATE SCHEMA bench_partitioning");
+        statement.execute("""
+                CREATE TABLE bench_partitioning.flights (
+                    flight_id           BIGINT   NOT NULL,
+                    flight_date         DATE     NOT NULL,
+                    departure_time      TIME,
+                    duration_minutes    INTEGER,
+                    drone_type          VARCHAR(100),
+                    departure_region_id BIGINT
+                ) PARTITION BY RANGE (flight_date)
+                """);
+        for (int i = 0; i < MONTHS; i++) {
+            LocalDate from = FIRST_DAY.plusMonths(i);
+            statement.execute(String.format(
+                    "CREATE TABLE bench_partitioning.flights_%1$tY_%1$tm PARTITION OF bench_partitioning.flights " +
+                            "FOR VALUES FROM ('%1$tF') TO ('%2$tF')", from, from.plusMonths(1)));
+        }
+        // Дата растет вместе с номером строки, с разбросом до двух дней назад - телеграммы приходят с опозданием
+        statement.execute(String.format("""
+                INSERT INTO bench_partitioning.flights
+                SELECT g,
+                       GREATEST(DATE '%1$tF', DATE '%1$tF' + (g * %2$d / %3$d)::INT - (random() * 2)::INT),
+                       TIME '00:00' + random() * INTERVAL '24 hours',
+                       5 + (random() * 120)::INT,
+                       'TYPE-' || (g %% 8),
+                       1 + (g * 7919 %% 85)
+                FROM generate_series(0, %3$d - 1) AS g
+                """, FIRST_DAY, DAYS, rows));
+        statement.execute("CREATE TABLE bench_partitioning.meta (rows BIGINT)");
+        statement.execute("INSERT INTO bench_partitioning.meta VALUES (" + rows + ")");
+        System.out.printf("%nСгенерировано %d строк за %d с%n", rows, (System.currentTimeMillis() - start) / 1000);
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FlightPartitionIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
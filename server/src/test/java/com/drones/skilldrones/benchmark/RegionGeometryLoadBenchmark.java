@@ -0,0 +1,142 @@
+package com.drones.skilldrones.benchmark;
+
+import org.locationtech.jts.io.WKBReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка полетов за период вместе с регионами вылета и прилета - так, как ее выполняет Hibernate
+ * для findByFlightDateBetween: выборка полетов, затем по одному запросу на каждый встреченный регион.
+ * <ul>
+ *     <li>withGeometry - прежнее отображение Region со столбцом geometry (полигон читается и разбирается из WKB);</li>
+ *     <li>withoutGeometry - Region без границ, границы в отдельной сущности RegionGeometry.</li>
+ * </ul>
+ * Время - SingleShotTime на период, память - пиковое заполнение heap (peakHeapMb) и аллокации через -prof gc.
+ * <p>
+ * Нужна PostgreSQL с загруженными регионами и полетами: подключение из POSTGRES_HOST, POSTGRES_PORT, POSTGRES_DB,
+ * POSTGRES_USER, POSTGRES_PASSWORD; период - -Dbench.startDate/-Dbench.endDate (по умолчанию 2024 год,
+ * для сравнения на 100k полетов подберите период с таким числом полетов).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class RegionGeometryLoadBenchmark {
+
+    private static final String FLIGHTS = """
+            SELECT flight_id, flight_code, drone_type, flight_date, departure_time, arrival_time,
+                   duration_minutes, departure_coords, arrival_coords, departure_region_id, arrival_region_id
+            FROM flights
+            WHERE flight_date BETWEEN ? AND ?
+            """;
+    private static final String REGION = """
+            SELECT region_id, name, area_km2, created_at, updated_at
+            FROM regions WHERE region_id = ?
+            """;
+    private static final String REGION_WITH_GEOMETRY = """
+            SELECT region_id, name, area_km2, created_at, updated_at, ST_AsEWKB(geometry)
+            FROM regions WHERE region_id = ?
+            """;
+
+    private Connection connection;
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    @Setup(Level.Trial)
+    public void connect() throws Exception {
+        String url = "jdbc:postgresql://" + env("POSTGRES_HOST", "localhost") + ":" + env("POSTGRES_PORT", "5432")
+                + "/" + env("POSTGRES_DB", "drones");
+        connection = DriverManager.getConnection(url, env("POSTGRES_USER", "postgres"), env("POSTGRES_PASSWORD", ""));
+        startDate = LocalDate.parse(System.getProperty("bench.startDate", "2024-01-01"));
+        endDate = LocalDate.parse(System.getProperty("bench.endDate", "2024-12-31"));
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws Exception {
+        connection.close();
+    }
+
+    @Benchmark
+    public int withGeometry(ExcelIngestBenchmark.HeapCounters heap, Blackhole blackhole) throws Exception {
+        return load(REGION_WITH_GEOMETRY, true, heap, blackhole);
+    }
+
+    @Benchmark
+    public int withoutGeometry(ExcelIngestBenchmark.HeapCounters heap, Blackhole blackhole) throws Exception {
+        return load(REGION, false, heap, blackhole);
+    }
+
+    private int load(String regionSql, boolean geometry, ExcelIngestBenchmark.HeapCounters heap,
+                     Blackhole blackhole) throws Exception {
+        Set<Long> regionIds = new LinkedHashSet<>();
+        int flights = 0;
+        try (PreparedStatement statement = connection.prepareStatement(FLIGHTS)) {
+            statement.setDate(1, Date.valueOf(startDate));
+            statement.setDate(2, Date.valueOf(endDate));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    for (int column = 1; column <= 9; column++) {
+                        blackhole.consume(rs.getObject(column));
+                    }
+                    addRegion(regionIds, rs.getLong(10), rs.wasNull());
+                    addRegion(regionIds, rs.getLong(11), rs.wasNull());
+                    flights++;
+                }
+            }
+        }
+
+        WKBReader wkbReader = new WKBReader();
+        try (PreparedStatement statement = connection.prepareStatement(regionSql)) {
+            for (Long regionId : regionIds) {
+                statement.setLong(1, regionId);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        for (int column = 1; column <= 5; column++) {
+                            blackhole.consume(rs.getObject(column));
+                        }
+                        if (geometry) {
+                            byte[] wkb = rs.getBytes(6);
+                            blackhole.consume(wkb != null ? wkbReader.read(wkb) : null);
+                        }
+                    }
+                }
+            }
+        }
+        heap.sample();
+        return flights;
+    }
+
+    private static void addRegion(Set<Long> regionIds, long regionId, boolean isNull) {
+        if (!isNull) {
+            regionIds.add(regionId);
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RegionGeometryLoadBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,188 @@
+package com.drones.skilldrones.benchmark;
+
+import com.drones.skilldrones.dto.ParsedFlightData;
+import com.drones.skilldrones.service.ShrTelegramTokenizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Сравнение прежнего разбора телеграмм на регулярных выражениях (Pattern.compile и
+ * DateTimeFormatter на каждый вызов, отдельный проход по тексту на каждое поле)
+ * с однопроходным ShrTelegramTokenizer. Разбирается SHR + DEP + ARR одной телеграммы.
+ *
+ * Методы legacy* - копии прежних extract* из FileParserServiceImpl и parse*Time
+ * из FlightProcessingServiceImpl без отладочного вывода в консоль.
+ * Перед замером проверяется, что оба варианта дают одинаковый результат.
+ *
+ * Запуск: main() из IDE или java -cp target/test-classes:... ShrTelegramTokenizerBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShrTelegramTokenizerBenchmark {
+
+    private static final String[] SHR_SAMPLES = {
+            """
+            SHR-RA00001G
+            -ZZZZ0705
+            -M0000/M0029 /ZONA 5943N02942E/
+            -DEP/5935N02935E DEST/5938N02946E DOF/250105 OPR/ООО АЭРО REG/RA-0123G TYP/BLA RMK/МР11608""",
+            """
+            SHR-00725
+            -ZZZZ0600
+            -M0000/M0005 /ZONA R0,5 4408N04308E/
+            -ZZZZ0800
+            -DEP/4408N04308E DEST/4408N04308E DOF/240215 EET/UUWV0001 OPR/ГУ МЧС TYP/BLA""",
+            """
+            SHR-ZZZZZ
+            -ZZZZ1030
+            -M0000/M0150 /ZONA 6057N07345E 6100N07350E/
+            -DEP/6057N07345E DEST/6057N07345E DOF/231130 REG/0K91327 STS/SAR TYP/AER"""
+    };
+    private static final String DEP_SAMPLE = "-TITLE IDEP -SID 7771444381 -ADD 250105 -ATD 0705 -ADEP ZZZZ";
+    private static final String ARR_SAMPLE = "-TITLE IARR -SID 7771444381 -ADA 250105 -ATA 1250 -ADARR ZZZZ";
+
+    @Param({"0", "1", "2"})
+    public int sample;
+
+    private String shr;
+
+    @Setup(Level.Trial)
+    public void checkEquivalence() {
+        shr = SHR_SAMPLES[sample];
+
+        ParsedFlightData data = new ParsedFlightData();
+        ShrTelegramTokenizer.tokenize(shr, data);
+        check("coordinates", legacyExtractCoordinates(shr), data.getCoordinates());
+        check("flightDate", legacyExtractFlightDate(shr), data.getFlightDate());
+        check("droneType", legacyExtractDroneType(shr), data.getDroneType());
+        check("flightId", legacyExtractFlightId(shr), data.getFlightId());
+        check("time", legacyExtractTime(shr), data.getDepartureTime());
+        check("atd", legacyParseTime(DEP_SAMPLE, "ATD (\\d{4})"),
+                ShrTelegramTokenizer.findTimeAfter(DEP_SAMPLE, "ATD "));
+        check("ata", legacyParseTime(ARR_SAMPLE, "ATA (\\d{4})"),
+                ShrTelegramTokenizer.findTimeAfter(ARR_SAMPLE, "ATA "));
+    }
+
+    @Benchmark
+    public void regexPerCall(Blackhole blackhole) {
+        blackhole.consume(legacyExtractCoordinates(shr));
+        blackhole.consume(legacyExtractFlightDate(shr));
+        blackhole.consume(legacyExtractDroneType(shr));
+        blackhole.consume(legacyExtractFlightId(shr));
+        blackhole.consume(legacyExtractTime(shr));
+        blackhole.consume(legacyExtractTime(shr));
+        blackhole.consume(legacyParseTime(DEP_SAMPLE, "ATD (\\d{4})"));
+        blackhole.consume(legacyParseTime(ARR_SAMPLE, "ATA (\\d{4})"));
+    }
+
+    @Benchmark
+    public void singlePassTokenizer(Blackhole blackhole) {
+        ParsedFlightData data = new ParsedFlightData();
+        ShrTelegramTokenizer.tokenize(shr, data);
+        blackhole.consume(data);
+        blackhole.consume(ShrTelegramTokenizer.findTimeAfter(DEP_SAMPLE, "ATD "));
+        blackhole.consume(ShrTelegramTokenizer.findTimeAfter(ARR_SAMPLE, "ATA "));
+    }
+
+    private static void check(String field, Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            throw new IllegalStateException("Расхождение в поле " + field + ": " + expected + " != " + actual);
+        }
+    }
+
+    // --- Прежняя реализация на регулярных выражениях ---
+
+    private static String legacyExtractCoordinates(String text) {
+        Pattern pattern = Pattern.compile("(\\d{4}[NS]\\d{5}[EW])");
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? legacyNormalizeCoordinates(matcher.group(1)) : null;
+    }
+
+    private static String legacyNormalizeCoordinates(String coords) {
+        String latStr = coords.substring(0, 4);
+        String latDir = coords.substring(4, 5);
+        String lonStr = coords.substring(5, 10);
+        String lonDir = coords.substring(10, 11);
+
+        double lat = Double.parseDouble(latStr.substring(0, 2)) + Double.parseDouble(latStr.substring(2, 4)) / 60.0;
+        if ("S".equals(latDir)) lat = -lat;
+        double lon = Double.parseDouble(lonStr.substring(0, 3)) + Double.parseDouble(lonStr.substring(3, 5)) / 60.0;
+        if ("W".equals(lonDir)) lon = -lon;
+
+        return String.format("%.6f,%.6f", lat, lon);
+    }
+
+    private static LocalDate legacyExtractFlightDate(String text) {
+        Pattern pattern = Pattern.compile("DOF/(\\d{6})");
+        Matcher matcher = pattern.matcher(text);
+        if (matcher.find()) {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("ddMMyy");
+            return LocalDate.parse(matcher.group(1), formatter);
+        }
+        return LocalDate.now();
+    }
+
+    private static String legacyExtractDroneType(String text) {
+        Pattern pattern = Pattern.compile("TYP/([A-Z]{3})");
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(1) : "UNKNOWN";
+    }
+
+    private static String legacyExtractFlightId(String text) {
+        String[] lines = text.split("\n");
+        if (lines.length > 0 && lines[0].startsWith("SHR-")) {
+            return lines[0].substring(4).trim();
+        }
+        return null;
+    }
+
+    private static LocalTime legacyExtractTime(String text) {
+        try {
+            Pattern pattern = Pattern.compile("-(\\d{4})");
+            Matcher matcher = pattern.matcher(text);
+            if (matcher.find()) {
+                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HHmm");
+                return LocalTime.parse(matcher.group(1), formatter);
+            }
+        } catch (Exception e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static LocalTime legacyParseTime(String text, String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        Matcher matcher = pattern.matcher(text);
+        if (matcher.find()) {
+            try {
+                return LocalTime.parse(matcher.group(1), DateTimeFormatter.ofPattern("HHmm"));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ShrTelegramTokenizerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
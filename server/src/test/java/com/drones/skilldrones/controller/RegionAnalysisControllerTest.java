@@ -0,0 +1,33 @@
+package com.drones.skilldrones.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionAnalysisControllerTest {
+
+    @Test
+    void gzipAccepted() {
+        assertTrue(RegionAnalysisController.acceptsGzip("gzip"));
+        assertTrue(RegionAnalysisController.acceptsGzip("gzip, deflate, br"));
+        assertTrue(RegionAnalysisController.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(RegionAnalysisController.acceptsGzip("x-gzip"));
+        assertTrue(RegionAnalysisController.acceptsGzip("*"));
+        assertTrue(RegionAnalysisController.acceptsGzip("identity, *;q=0.1"));
+    }
+
+    @Test
+    void gzipRejected() {
+        assertFalse(RegionAnalysisController.acceptsGzip(null));
+        assertFalse(RegionAnalysisController.acceptsGzip(""));
+        assertFalse(RegionAnalysisController.acceptsGzip("identity"));
+        assertFalse(RegionAnalysisController.acceptsGzip("gzip;q=0"));
+        assertFalse(RegionAnalysisController.acceptsGzip("gzip; q=0.000, br"));
+        // Явный gzip важнее "*"
+        assertFalse(RegionAnalysisController.acceptsGzip("*, gzip;q=0"));
+        assertFalse(RegionAnalysisController.acceptsGzip("*;q=0"));
+        assertFalse(RegionAnalysisController.acceptsGzip("gzip;q=abc"));
+        assertFalse(RegionAnalysisController.acceptsGzip("gzipx, deflate"));
+    }
+}
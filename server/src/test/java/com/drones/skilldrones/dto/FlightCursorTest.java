@@ -0,0 +1,45 @@
+package com.drones.skilldrones.dto;
+
+import com.drones.skilldrones.dto.response.FlightResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FlightCursorTest {
+
+    @Test
+    void encode() {
+        assertEquals("2024-05-01_123456", new FlightCursor(LocalDate.of(2024, 5, 1), 123456L).encode());
+    }
+
+    @Test
+    void parse() {
+        assertEquals(new FlightCursor(LocalDate.of(2024, 5, 1), 123456L), FlightCursor.parse("2024-05-01_123456"));
+    }
+
+    @Test
+    void roundTrip() {
+        FlightCursor cursor = new FlightCursor(LocalDate.of(2023, 12, 31), Long.MAX_VALUE);
+
+        assertEquals(cursor, FlightCursor.parse(cursor.encode()));
+    }
+
+    @Test
+    void fromLastFlightOfPage() {
+        FlightResponse flight = new FlightResponse(42L, null, null, "RA00001G", "BLA", null,
+                LocalDate.of(2025, 1, 5), null, null, null, null, null, null, null, null, null, null, null);
+
+        assertEquals("2025-01-05_42", FlightCursor.of(flight).encode());
+    }
+
+    @Test
+    void invalidCursorRejected() {
+        for (String cursor : new String[]{"", "2024-05-01", "2024-05-01_", "_123", "2024-13-01_1",
+                "01.05.2024_1", "2024-05-01_abc", "2024-05-01_1_2", "null_1"}) {
+            assertThrows(IllegalArgumentException.class, () -> FlightCursor.parse(cursor), cursor);
+        }
+    }
+}
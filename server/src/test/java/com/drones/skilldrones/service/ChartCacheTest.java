@@ -0,0 +1,128 @@
+package com.drones.skilldrones.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChartCacheTest {
+
+    private static final byte[] PNG = new byte[400 * 1024];
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void leftoverTempFilesRemovedOnLoad() throws IOException {
+        Path temp = Files.write(dir.resolve("abc123456.tmp"), PNG);
+
+        ChartCache cache = newCache(1);
+        cache.load();
+
+        assertFalse(Files.exists(temp));
+    }
+
+    @Test
+    void getUpdatesAccessTimeButNotModifiedTime() throws IOException {
+        ChartCache cache = newCache(1);
+        cache.load();
+        ChartCache.CachedChart chart = cache.put("a", PNG);
+        Instant old = Instant.now().minus(Duration.ofDays(3));
+        setTimes(chart.file(), old, old);
+
+        cache.get("a");
+
+        BasicFileAttributes attributes = Files.readAttributes(chart.file(), BasicFileAttributes.class);
+        assertEquals(old, attributes.lastModifiedTime().toInstant());
+        assertTrue(attributes.lastAccessTime().toInstant().isAfter(old.plus(Duration.ofDays(2))));
+    }
+
+    @Test
+    void lruOrderAfterRestartFollowsAccessTime() throws IOException {
+        ChartCache before = newCache(1);
+        before.load();
+        Path first = before.put("first", PNG).file();
+        Path second = before.put("second", PNG).file();
+        Instant now = Instant.now();
+        // "first" построен раньше, но запрошен позже
+        setTimes(first, now.minus(Duration.ofDays(2)), now.minus(Duration.ofHours(1)));
+        setTimes(second, now.minus(Duration.ofDays(1)), now.minus(Duration.ofDays(1)));
+
+        ChartCache after = newCache(1);
+        after.load();
+        // Третий график не помещается в 1 МБ - вытесняется давно не запрашиваемый
+        after.put("third", PNG);
+
+        assertTrue(Files.exists(first));
+        assertFalse(Files.exists(second));
+        assertTrue(after.get("first").isPresent());
+    }
+
+    @Test
+    void expiryAfterRestartFollowsAccessTime() throws IOException {
+        ChartCache before = newCache(16);
+        before.load();
+        Path recent = before.put("recent", PNG).file();
+        Path stale = before.put("stale", PNG).file();
+        Instant now = Instant.now();
+        setTimes(recent, now.minus(Duration.ofDays(60)), now.minus(Duration.ofDays(1)));
+        setTimes(stale, now.minus(Duration.ofDays(60)), now.minus(Duration.ofDays(40)));
+
+        ChartCache after = newCache(16);
+        after.load();
+        after.removeExpired();
+
+        assertTrue(after.get("recent").isPresent());
+        assertFalse(Files.exists(stale));
+    }
+
+    @Test
+    void openChartReadableAfterEviction() throws IOException {
+        ChartCache cache = newCache(1);
+        cache.load();
+        byte[] png = new byte[PNG.length];
+        new Random(1).nextBytes(png);
+        cache.put("a", png);
+
+        try (ChartCache.OpenChart open = cache.open("a").orElseThrow()) {
+            // Вытесняет "a" и удаляет его файл, пока ответ еще не отправлен
+            cache.put("b", PNG);
+            cache.put("c", PNG);
+            assertFalse(Files.exists(open.chart().file()));
+
+            assertArrayEquals(png, open.in().readAllBytes());
+        }
+    }
+
+    @Test
+    void fileDeletedBeforeOpenIsMiss() throws IOException {
+        ChartCache cache = newCache(1);
+        cache.load();
+        Files.delete(cache.put("a", PNG).file());
+
+        assertTrue(cache.open("a").isEmpty());
+        assertTrue(cache.get("a").isEmpty());
+    }
+
+    private ChartCache newCache(long maxSizeMb) {
+        return new ChartCache(dir.toString(), maxSizeMb, 30);
+    }
+
+    private static void setTimes(Path file, Instant modified, Instant accessed) throws IOException {
+        Files.getFileAttributeView(file, BasicFileAttributeView.class)
+                .setTimes(FileTime.from(modified), FileTime.from(accessed), null);
+    }
+}
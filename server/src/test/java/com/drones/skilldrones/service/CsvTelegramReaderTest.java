@@ -0,0 +1,142 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.RawTelegram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvTelegramReaderTest {
+
+    private static final String HEADER = "Центр,SHR,DEP,ARR\n";
+
+    private final CsvTelegramReader reader = new CsvTelegramReader();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void plainFields() throws IOException {
+        List<RawTelegram> telegrams = read(HEADER + "Москва,(SHR-1),-DEP1,-ARR1\n");
+
+        assertEquals(1, telegrams.size());
+        assertTelegram(telegrams.get(0), "Москва", "(SHR-1)", "-DEP1", "-ARR1");
+        assertEquals("test.csv", telegrams.get(0).getFileName());
+        assertEquals("PENDING", telegrams.get(0).getProcessingStatus());
+    }
+
+    @Test
+    void quotedFieldsWithDelimiterAndNewlines() throws IOException {
+        List<RawTelegram> telegrams = read(HEADER
+                + "\"Санкт-Петербург, ЗЦ\",\"(SHR-ZZZZZ\n-ZZZZ0600\n-M0000/M0005)\",-DEP,\"-ARR,1\"\n");
+
+        assertEquals(1, telegrams.size());
+        assertTelegram(telegrams.get(0), "Санкт-Петербург, ЗЦ", "(SHR-ZZZZZ\n-ZZZZ0600\n-M0000/M0005)",
+                "-DEP", "-ARR,1");
+    }
+
+    @Test
+    void doubledQuotes() throws IOException {
+        List<RawTelegram> telegrams = read(HEADER + "\"Центр \"\"Юг\"\"\",\"\"\"SHR\"\"\",DEP,\"\"\"\"\n");
+
+        assertEquals(1, telegrams.size());
+        assertTelegram(telegrams.get(0), "Центр \"Юг\"", "\"SHR\"", "DEP", "\"");
+    }
+
+    @Test
+    void quoteInsideUnquotedFieldIsPlainCharacter() throws IOException {
+        List<RawTelegram> telegrams = read(HEADER + "Центр,SHR \"A\",DEP,ARR\n");
+
+        assertTelegram(telegrams.get(0), "Центр", "SHR \"A\"", "DEP", "ARR");
+    }
+
+    @Test
+    void crlfLineEndings() throws IOException {
+        List<RawTelegram> telegrams = read("Центр,SHR,DEP,ARR\r\n"
+                + "Москва,SHR1,DEP1,ARR1\r\n"
+                + "\"Казань\",\"SHR2\",\"DEP2\",\"ARR2\"\r\n");
+
+        assertEquals(2, telegrams.size());
+        assertTelegram(telegrams.get(0), "Москва", "SHR1", "DEP1", "ARR1");
+        assertTelegram(telegrams.get(1), "Казань", "SHR2", "DEP2", "ARR2");
+    }
+
+    @Test
+    void missingTrailingNewline() throws IOException {
+        List<RawTelegram> telegrams = read(HEADER + "Москва,SHR1,DEP1,ARR1\nКазань,SHR2,DEP2,\"ARR2\"");
+
+        assertEquals(2, telegrams.size());
+        assertTelegram(telegrams.get(1), "Казань", "SHR2", "DEP2", "ARR2");
+    }
+
+    @Test
+    void semicolonDelimiterAndBom() throws IOException {
+        List<RawTelegram> telegrams = read("\uFEFFЦентр;SHR;DEP;ARR\nМосква;\"SHR;1\";DEP,1;ARR\n");
+
+        assertEquals(1, telegrams.size());
+        assertTelegram(telegrams.get(0), "Москва", "SHR;1", "DEP,1", "ARR");
+    }
+
+    @Test
+    void blankAndIncompleteRowsSkipped() throws IOException {
+        List<RawTelegram> telegrams = read(HEADER
+                + "\n"
+                + "Москва,SHR1,,ARR1\n"
+                + "Москва,SHR2\n"
+                + "Казань,SHR3,DEP3,ARR3,лишняя\n");
+
+        assertEquals(1, telegrams.size());
+        assertTelegram(telegrams.get(0), "Казань", "SHR3", "DEP3", "ARR3");
+    }
+
+    @Test
+    void recordsAcrossBufferBoundaries() throws IOException {
+        // Файл больше буфера чтения (1 МБ): записи, многострочные ячейки и кириллица (2 байта в UTF-8)
+        // разрезаются границами блоков в разных местах
+        StringBuilder csv = new StringBuilder(HEADER);
+        int rows = 20_000;
+        for (int i = 0; i < rows; i++) {
+            csv.append("Центр ").append(i).append(",\"(SHR-").append(i).append("\n-ДОП \"\"").append(i)
+                    .append("\"\", ЗОНА)\",-DEP").append(i).append(",-ARR").append(i).append("\r\n");
+        }
+        AtomicInteger estimate = new AtomicInteger();
+
+        List<RawTelegram> telegrams = read(csv.toString(), estimate);
+
+        assertEquals(rows, telegrams.size());
+        for (int i = 0; i < rows; i++) {
+            assertTelegram(telegrams.get(i), "Центр " + i, "(SHR-" + i + "\n-ДОП \"" + i + "\", ЗОНА)",
+                    "-DEP" + i, "-ARR" + i);
+        }
+        assertTrue(estimate.get() > rows / 2 && estimate.get() < rows * 2, "оценка " + estimate.get());
+    }
+
+    private List<RawTelegram> read(String content) throws IOException {
+        return read(content, new AtomicInteger());
+    }
+
+    private List<RawTelegram> read(String content, AtomicInteger estimate) throws IOException {
+        Path file = dir.resolve("test.csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        List<RawTelegram> telegrams = new ArrayList<>();
+        int count = reader.read(file, "test.csv", estimate::set, telegrams::add);
+        assertEquals(telegrams.size(), count);
+        return telegrams;
+    }
+
+    private static void assertTelegram(RawTelegram telegram, String center, String shr, String dep, String arr) {
+        assertEquals(center, telegram.getCenter());
+        assertEquals(shr, telegram.getShrRawText());
+        assertEquals(dep, telegram.getDepRawText());
+        assertEquals(arr, telegram.getArrRawText());
+    }
+}
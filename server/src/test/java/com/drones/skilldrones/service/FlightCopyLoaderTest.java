@@ -0,0 +1,87 @@
+package com.drones.skilldrones.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Выдача id из блоков последовательности с шагом 50 (02_batch_insert_sequences.sql):
+ * одно значение последовательности на блок, id пачки подряд, без пересечения с блоками Hibernate
+ */
+class FlightCopyLoaderTest {
+
+    @Test
+    void idsContiguousAcrossBlocks() {
+        Sequence sequence = new Sequence(1_001);
+
+        long[] ids = FlightCopyLoader.allocateIds(sequence, 120);
+
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(952 + i, ids[i]);
+        }
+        // 120 строк - три блока, а не 120 вызовов nextval
+        assertEquals(3, sequence.calls.get());
+        // Следующий блок (Hibernate или следующая пачка) начинается после последнего выданного блока
+        long nextBlockStart = sequence.getAsLong() - FlightCopyLoader.ID_BLOCK_SIZE + 1;
+        assertTrue(nextBlockStart > ids[ids.length - 1]);
+    }
+
+    @Test
+    void consecutiveBatchesContinueWithoutGaps() {
+        Sequence sequence = new Sequence(51);
+
+        long[] first = FlightCopyLoader.allocateIds(sequence, 50);
+        long[] second = FlightCopyLoader.allocateIds(sequence, 2);
+
+        assertEquals(2, first[0]);
+        assertEquals(51, first[49]);
+        assertEquals(52, second[0]);
+        assertEquals(53, second[1]);
+    }
+
+    @Test
+    void freshSequenceFirstValueSkipped() {
+        // Новая последовательность: первый nextval возвращает 1 - это не конец блока
+        Sequence sequence = new Sequence(1);
+
+        long[] ids = FlightCopyLoader.allocateIds(sequence, 60);
+
+        assertEquals(2, ids[0]);
+        for (int i = 1; i < ids.length; i++) {
+            assertEquals(ids[i - 1] + 1, ids[i]);
+        }
+        assertEquals(3, sequence.calls.get());
+    }
+
+    @Test
+    void noRows() {
+        Sequence sequence = new Sequence(1_001);
+
+        assertEquals(0, FlightCopyLoader.allocateIds(sequence, 0).length);
+        assertEquals(0, sequence.calls.get());
+    }
+
+    /**
+     * Последовательность с INCREMENT BY 50
+     */
+    private static final class Sequence implements LongSupplier {
+        private final AtomicInteger calls = new AtomicInteger();
+        private long next;
+
+        Sequence(long start) {
+            this.next = start;
+        }
+
+        @Override
+        public long getAsLong() {
+            calls.incrementAndGet();
+            long value = next;
+            next += FlightCopyLoader.ID_BLOCK_SIZE;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.Flight;
+import com.drones.skilldrones.model.Region;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Агрегаты FlightCube сравниваются с тем, что вернули бы запросы по flights
+ * (COUNT по дням и часам, AVG(duration_minutes), GROUP BY departure_region_id и drone_type),
+ * посчитанным напрямую по тем же полетам.
+ * Полеты идут по дате с опоздавшими на 1-2 дня, около 2500 в день: блок (16384 строки) занимает
+ * 6-7 дней, так что периоды захватывают и блоки целиком, и блоки на границе периода.
+ */
+class FlightCubeTest {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final int DAYS = 120;
+    private static final int FLIGHTS = 300_000;
+
+    private final Map<Long, Region> regions = new HashMap<>();
+    private List<Flight> flights;
+    private FlightCube cube;
+
+    @BeforeEach
+    void setUp() {
+        cube = newCube();
+        flights = generate(new Random(42));
+        // Дописывание пачками, как после фиксации загрузок: пачки не совпадают с границами блоков
+        for (int from = 0; from < flights.size(); from += 7_000) {
+            cube.append(flights.subList(from, Math.min(flights.size(), from + 7_000)));
+        }
+    }
+
+    @Test
+    void wholePeriod() {
+        assertMatches(FIRST_DAY, FIRST_DAY.plusDays(DAYS - 1));
+    }
+
+    @Test
+    void singleDayInsideBlock() {
+        assertMatches(FIRST_DAY.plusDays(45), FIRST_DAY.plusDays(45));
+    }
+
+    @Test
+    void periodWithWholeAndBoundaryBlocks() {
+        assertMatches(FIRST_DAY.plusDays(10), FIRST_DAY.plusDays(40));
+    }
+
+    @Test
+    void periodBeyondData() {
+        assertMatches(FIRST_DAY.minusDays(30), FIRST_DAY.plusDays(3));
+        assertMatches(FIRST_DAY.plusDays(DAYS - 3), FIRST_DAY.plusDays(DAYS + 30));
+    }
+
+    @Test
+    void periodWithoutData() {
+        FlightCube.Aggregate aggregate = cube.aggregate(FIRST_DAY.minusDays(30), FIRST_DAY.minusDays(1));
+
+        assertEquals(0, aggregate.total());
+        assertNull(aggregate.averageDuration());
+    }
+
+    @Test
+    void randomPeriods() {
+        Random random = new Random(7);
+        for (int i = 0; i < 50; i++) {
+            LocalDate start = FIRST_DAY.plusDays(random.nextInt(DAYS));
+            assertMatches(start, start.plusDays(random.nextInt(20)));
+        }
+    }
+
+    @Test
+    void regionOrdinalsAboveShortRange() {
+        FlightCube manyRegions = newCube();
+        List<Flight> batch = new ArrayList<>();
+        for (long regionId = 1; regionId <= 40_000; regionId++) {
+            batch.add(flight(FIRST_DAY, LocalTime.NOON, 10, region(regionId), "TYPE-1"));
+        }
+        manyRegions.append(batch);
+
+        FlightCube.Aggregate aggregate = manyRegions.aggregate(FIRST_DAY, FIRST_DAY);
+
+        assertEquals(40_000, aggregate.total());
+        Map<Long, Long> byRegion = byRegion(manyRegions, aggregate);
+        assertEquals(40_000, byRegion.size());
+        assertEquals(1L, byRegion.get(40_000L));
+        assertEquals(1L, byRegion.get(32_768L));
+    }
+
+    private void assertMatches(LocalDate startDate, LocalDate endDate) {
+        FlightCube.Aggregate aggregate = cube.aggregate(startDate, endDate);
+
+        Map<LocalDate, Long> expectedDays = new HashMap<>();
+        Map<String, Long> expectedHours = new HashMap<>();
+        Map<Long, Long> expectedRegions = new HashMap<>();
+        Map<String, Long> expectedDroneTypes = new HashMap<>();
+        long total = 0;
+        long durationSum = 0;
+        long durationCount = 0;
+        for (Flight flight : flights) {
+            LocalDate date = flight.getFlightDate();
+            if (date.isBefore(startDate) || date.isAfter(endDate)) {
+                continue;
+            }
+            total++;
+            expectedDays.merge(date, 1L, Long::sum);
+            if (flight.getDepartureTime() != null) {
+                expectedHours.merge(date + " " + flight.getDepartureTime().getHour(), 1L, Long::sum);
+            }
+            if (flight.getDurationMinutes() != null) {
+                durationSum += flight.getDurationMinutes();
+                durationCount++;
+            }
+            Long regionId = flight.getDepartureRegion() != null ? flight.getDepartureRegion().getRegionId() : null;
+            expectedRegions.merge(regionId, 1L, Long::sum);
+            expectedDroneTypes.merge(flight.getDroneType(), 1L, Long::sum);
+        }
+
+        String period = startDate + ".." + endDate;
+        assertEquals(total, aggregate.total(), period);
+        if (durationCount > 0) {
+            assertEquals((double) durationSum / durationCount, aggregate.averageDuration(), 1e-9, period);
+        } else {
+            assertNull(aggregate.averageDuration(), period);
+        }
+
+        Map<LocalDate, Long> actualDays = new HashMap<>();
+        Map<String, Long> actualHours = new HashMap<>();
+        for (int day = 0; day < aggregate.days(); day++) {
+            long count = aggregate.dayCount(day);
+            if (count > 0) {
+                actualDays.put(aggregate.date(day), count);
+            }
+            for (int hour = 0; hour < 24; hour++) {
+                int hourCount = aggregate.hourCount(day, hour);
+                if (hourCount > 0) {
+                    actualHours.put(aggregate.date(day) + " " + hour, (long) hourCount);
+                }
+            }
+        }
+        assertEquals(expectedDays, actualDays, period);
+        assertEquals(expectedHours, actualHours, period);
+        assertEquals(expectedRegions, byRegion(cube, aggregate), period);
+
+        Map<String, Long> actualDroneTypes = new HashMap<>();
+        int[] byDroneType = aggregate.byDroneType();
+        for (int ordinal = 0; ordinal < byDroneType.length; ordinal++) {
+            if (byDroneType[ordinal] > 0) {
+                actualDroneTypes.put(cube.droneType(ordinal), (long) byDroneType[ordinal]);
+            }
+        }
+        assertEquals(expectedDroneTypes, actualDroneTypes, period);
+    }
+
+    private static Map<Long, Long> byRegion(FlightCube cube, FlightCube.Aggregate aggregate) {
+        Map<Long, Long> result = new HashMap<>();
+        int[] byRegion = aggregate.byRegion();
+        for (int ordinal = 0; ordinal < byRegion.length; ordinal++) {
+            if (byRegion[ordinal] > 0) {
+                result.put(cube.regionId(ordinal), (long) byRegion[ordinal]);
+            }
+        }
+        return result;
+    }
+
+    private List<Flight> generate(Random random) {
+        List<Flight> result = new ArrayList<>(FLIGHTS);
+        for (int i = 0; i < FLIGHTS; i++) {
+            int day = (int) ((long) i * DAYS / FLIGHTS);
+            // Телеграммы приходят с опозданием - часть полетов вне порядка дат
+            if (random.nextInt(20) == 0) {
+                day = Math.max(0, day - 1 - random.nextInt(2));
+            }
+            LocalTime time = random.nextInt(30) == 0 ? null
+                    : LocalTime.of(random.nextInt(24), random.nextInt(60));
+            Integer duration = random.nextInt(20) == 0 ? null : random.nextInt(300);
+            Region region = random.nextInt(25) == 0 ? null : region(1 + random.nextInt(85));
+            String droneType = random.nextInt(15) == 0 ? null : "TYPE-" + random.nextInt(10);
+            result.add(flight(FIRST_DAY.plusDays(day), time, duration, region, droneType));
+        }
+        return result;
+    }
+
+    private Region region(long regionId) {
+        return regions.computeIfAbsent(regionId, id -> {
+            Region region = new Region();
+            region.setRegionId(id);
+            region.setName("Регион " + id);
+            return region;
+        });
+    }
+
+    private static Flight flight(LocalDate date, LocalTime time, Integer duration, Region region, String droneType) {
+        Flight flight = new Flight();
+        flight.setFlightDate(date);
+        flight.setDepartureTime(time);
+        flight.setDurationMinutes(duration);
+        flight.setDepartureRegion(region);
+        flight.setDroneType(droneType);
+        return flight;
+    }
+
+    private static FlightCube newCube() {
+        // Хранилище заполняется через append, к БД тест не обращается
+        return new FlightCube(mock(DataSource.class), mock(PlatformTransactionManager.class));
+    }
+}
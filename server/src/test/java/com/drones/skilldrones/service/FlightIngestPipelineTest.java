@@ -0,0 +1,187 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.model.Flight;
+import com.drones.skilldrones.model.RawTelegram;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Буфер перестановки писателя: разбор завершается в случайном порядке, а пачки уходят на запись
+ * в порядке строк файла, и контрольная точка (IngestProgress.lastCommittedRow) после каждой пачки -
+ * последняя строка этой пачки
+ */
+class FlightIngestPipelineTest {
+
+    private static final int ROWS = 1_000;
+
+    @Test
+    void batchesWrittenInFileOrder() {
+        Recorder recorder = new Recorder();
+        IngestProgress progress = recorder.progress();
+
+        int written = pipeline(recorder, 50, 64).run(source(1, ROWS), progress);
+
+        // Каждая седьмая телеграмма не разбирается: она попадает в пачку без полета
+        int failed = ROWS / 7;
+        assertEquals(ROWS - failed, written);
+        assertEquals(rows(1, ROWS), recorder.telegramRows());
+        assertEquals(ROWS, progress.getLastCommittedRow());
+        assertEquals(ROWS, progress.getRowsRead());
+        assertEquals(ROWS - failed, progress.getRowsParsed());
+        assertEquals(ROWS - failed, progress.getRowsPersisted());
+        assertEquals(failed, progress.getRowsFailed());
+        assertEquals(recorder.batches.size(), recorder.checkpoints.size());
+        for (int i = 0; i < recorder.batches.size(); i++) {
+            List<RawTelegram> batch = recorder.batches.get(i);
+            // Писатель получает последнюю строку пачки до записи (контрольная точка в транзакции пачки)
+            assertEquals(row(batch.get(batch.size() - 1)), recorder.lastRows.get(i));
+            assertEquals(row(batch.get(batch.size() - 1)), recorder.checkpoints.get(i));
+        }
+    }
+
+    @Test
+    void reorderBufferBoundedByQueueCapacity() {
+        Recorder recorder = new Recorder();
+
+        // Очередь меньше двух пачек: источник ждет, пока писатель не заберет строки в пачку
+        pipeline(recorder, 5, 8).run(source(1, ROWS), new IngestProgress());
+
+        assertEquals(rows(1, ROWS), recorder.telegramRows());
+    }
+
+    @Test
+    void resumesAfterCheckpoint() {
+        Recorder recorder = new Recorder();
+        IngestProgress progress = recorder.progress();
+        progress.restore(250, 240, 215, 3);
+
+        pipeline(recorder, 50, 64).run(source(1, ROWS), progress);
+
+        assertEquals(rows(251, ROWS), recorder.telegramRows());
+        assertEquals(251, recorder.checkpoints.get(0) - recorder.batches.get(0).size() + 1);
+        assertEquals(ROWS, progress.getLastCommittedRow());
+        assertEquals(ROWS, progress.getRowsRead());
+    }
+
+    @Test
+    void failedFlightKeepsTelegram() {
+        Recorder recorder = new Recorder();
+
+        pipeline(recorder, 10, 16).run(source(1, 14), new IngestProgress());
+
+        RawTelegram failed = recorder.batches.get(0).get(6);
+        assertEquals("FAILED", failed.getProcessingStatus());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 8L, 9L, 10L, 11L, 12L, 13L), recorder.flightRows());
+    }
+
+    @Test
+    void writerFailureDoesNotBlockSource() {
+        IllegalStateException failure = new IllegalStateException("БД недоступна");
+        FlightIngestPipeline pipeline = new FlightIngestPipeline(
+                FlightIngestPipelineTest::parse, flight -> { }, flights -> 0,
+                (chunk, flights, lastRow) -> {
+                    throw failure;
+                }, 5, 8);
+        IngestProgress progress = new IngestProgress();
+
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+                () -> pipeline.run(source(1, ROWS), progress));
+
+        assertSame(failure, thrown);
+        assertEquals(ROWS, progress.getRowsRead());
+        assertEquals(0, progress.getLastCommittedRow());
+    }
+
+    private static FlightIngestPipeline pipeline(Recorder recorder, int batchSize, int queueCapacity) {
+        return new FlightIngestPipeline(FlightIngestPipelineTest::parse, flight -> { }, flights -> 0,
+                recorder::write, batchSize, queueCapacity);
+    }
+
+    /**
+     * Разбор с задержкой до 0,2 мс, чтобы телеграммы завершались не по порядку;
+     * каждая седьмая строка - ошибка разбора
+     */
+    private static Flight parse(RawTelegram telegram) {
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(200_000));
+        long row = row(telegram);
+        if (row % 7 == 0) {
+            throw new IllegalArgumentException("Некорректная телеграмма " + row);
+        }
+        Flight flight = new Flight();
+        flight.setFlightCode(telegram.getCenter());
+        return flight;
+    }
+
+    private static Consumer<Consumer<RawTelegram>> source(long from, long to) {
+        return consumer -> {
+            for (long row = from; row <= to; row++) {
+                RawTelegram telegram = new RawTelegram();
+                telegram.setCenter(Long.toString(row));
+                consumer.accept(telegram);
+            }
+        };
+    }
+
+    private static long row(RawTelegram telegram) {
+        return Long.parseLong(telegram.getCenter());
+    }
+
+    private static List<Long> rows(long from, long to) {
+        List<Long> rows = new ArrayList<>();
+        for (long row = from; row <= to; row++) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Писатель: запоминает пачки и их последние строки; контрольные точки - как их видит слушатель прогресса после каждой пачки
+     */
+    private static final class Recorder {
+        private final List<List<RawTelegram>> batches = Collections.synchronizedList(new ArrayList<>());
+        private final List<Flight> flights = Collections.synchronizedList(new ArrayList<>());
+        private final List<Long> lastRows = Collections.synchronizedList(new ArrayList<>());
+        private final List<Long> checkpoints = Collections.synchronizedList(new ArrayList<>());
+
+        IngestProgress progress() {
+            IngestProgress progress = new IngestProgress();
+            progress.onBatchPersisted(() -> checkpoints.add(progress.getLastCommittedRow()));
+            return progress;
+        }
+
+        int write(List<RawTelegram> chunk, List<Flight> batchFlights, long lastRow) {
+            batches.add(List.copyOf(chunk));
+            lastRows.add(lastRow);
+            flights.addAll(batchFlights);
+            return batchFlights.size();
+        }
+
+        List<Long> telegramRows() {
+            List<Long> rows = new ArrayList<>();
+            for (List<RawTelegram> batch : batches) {
+                for (RawTelegram telegram : batch) {
+                    rows.add(row(telegram));
+                }
+            }
+            return rows;
+        }
+
+        List<Long> flightRows() {
+            List<Long> rows = new ArrayList<>();
+            for (Flight flight : flights) {
+                rows.add(Long.parseLong(flight.getFlightCode()));
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.mapper.RegionMapperImpl;
+import com.drones.skilldrones.model.Region;
+import com.drones.skilldrones.model.RegionGeometry;
+import com.drones.skilldrones.repository.RegionGeometryRepository;
+import com.drones.skilldrones.repository.RegionRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RegionCatalogTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private RegionCatalog catalog;
+
+    @BeforeEach
+    void setUp() throws ReflectiveOperationException {
+        Region moscow = new Region();
+        moscow.setRegionId(1L);
+        moscow.setName("Москва");
+        moscow.setAreaKm2(2561.5);
+        moscow.setCreatedAt(LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+        moscow.setUpdatedAt(LocalDateTime.of(2024, 2, 3, 4, 5, 6));
+        Region empty = new Region();
+        empty.setRegionId(2L);
+        empty.setName("Без границ");
+
+        GeometryFactory factory = new GeometryFactory(new PrecisionModel(), 4326);
+        RegionGeometry geometry = regionGeometry(1L, factory.createPolygon(new Coordinate[]{
+                new Coordinate(37.1, 55.5), new Coordinate(37.9, 55.5), new Coordinate(37.9, 56.0),
+                new Coordinate(37.1, 55.5)}));
+
+        RegionRepository regionRepository = mock(RegionRepository.class);
+        // Каталог упорядочен по id независимо от порядка репозитория
+        when(regionRepository.findAll()).thenReturn(List.of(empty, moscow));
+        RegionGeometryRepository regionGeometryRepository = mock(RegionGeometryRepository.class);
+        when(regionGeometryRepository.findAllWithGeometry()).thenReturn(List.of(geometry));
+        catalog = new RegionCatalog(regionRepository, regionGeometryRepository, objectMapper, new RegionMapperImpl());
+    }
+
+    @Test
+    void metadataSerializedAsRegionResponse() throws IOException {
+        JsonNode regions = objectMapper.readTree(catalog.get(RegionCatalog.Lod.NONE).json());
+
+        assertEquals(2, regions.size());
+        JsonNode moscow = regions.get(0);
+        assertEquals(List.of("regionId", "name", "areaKm2", "createdAt", "updatedAt"),
+                fieldNames(moscow));
+        assertEquals(1, moscow.get("regionId").asLong());
+        assertEquals("Москва", moscow.get("name").asText());
+        assertEquals(2561.5, moscow.get("areaKm2").asDouble());
+        assertEquals("2024-01-02T03:04:05", moscow.get("createdAt").asText());
+        assertTrue(regions.get(1).get("areaKm2").isNull());
+    }
+
+    @Test
+    void geometryAppendedToRegionResponse() throws IOException {
+        JsonNode regions = objectMapper.readTree(catalog.get(RegionCatalog.Lod.FULL).json());
+
+        assertEquals(List.of("regionId", "name", "areaKm2", "createdAt", "updatedAt", "geometry"),
+                fieldNames(regions.get(0)));
+        assertEquals("Polygon", regions.get(0).get("geometry").get("type").asText());
+        assertTrue(regions.get(1).get("geometry").isNull());
+    }
+
+    @Test
+    void separateEtagsPerEncoding() throws IOException {
+        RegionCatalog.Serialized none = catalog.get(RegionCatalog.Lod.NONE);
+        RegionCatalog.Serialized full = catalog.get(RegionCatalog.Lod.FULL);
+
+        assertNotEquals(none.etag(), none.gzipEtag());
+        assertEquals(none.etag().replaceAll("\"$", "-gzip\""), none.gzipEtag());
+        assertNotEquals(none.etag(), full.etag());
+        assertFalse(none.etag().startsWith("W/"));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(none.gzipped()))) {
+            assertArrayEquals(none.json(), in.readAllBytes());
+        }
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private static RegionGeometry regionGeometry(Long regionId, Geometry geometry)
+            throws ReflectiveOperationException {
+        // Сущность только для чтения - поля заполняет Hibernate
+        RegionGeometry regionGeometry = new RegionGeometry();
+        set(regionGeometry, "regionId", regionId);
+        set(regionGeometry, "geometry", geometry);
+        return regionGeometry;
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
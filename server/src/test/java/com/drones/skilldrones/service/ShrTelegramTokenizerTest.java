@@ -0,0 +1,134 @@
+package com.drones.skilldrones.service;
+
+import com.drones.skilldrones.dto.ParsedFlightData;
+import org.junit.jupiter.api.Test;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Ожидаемые значения - как у прежнего разбора регулярными выражениями
+ * (см. legacy* в ShrTelegramTokenizerBenchmark): для каждого поля первое вхождение
+ */
+class ShrTelegramTokenizerTest {
+
+    @Test
+    void allFields() {
+        ParsedFlightData data = tokenize("""
+                SHR-RA00001G
+                -ZZZZ0705
+                -M0000/M0029 /ZONA 5943N02942E/
+                -DEP/5935N02935E DEST/5938N02946E DOF/050125 OPR/ООО АЭРО REG/RA0123G TYP/BLA RMK/МР11608""");
+
+        assertEquals("RA00001G", data.getFlightId());
+        assertEquals(LocalDate.of(2025, 1, 5), data.getFlightDate());
+        assertEquals("BLA", data.getDroneType());
+        assertEquals("RA0123G", data.getDroneRegistration());
+        assertEquals("59.716667,29.700000", data.getCoordinates());
+        assertEquals(data.getCoordinates(), data.getDepartureCoords());
+        assertEquals(data.getCoordinates(), data.getArrivalCoords());
+        // Времени вида "-HHmm" нет: в -ZZZZ0705 и -M0000 после дефиса буквы
+        assertNull(data.getDepartureTime());
+    }
+
+    @Test
+    void firstTimeAfterDash() {
+        ParsedFlightData data = tokenize("SHR-ZZZZZ\n-0600 -0800\n-DEP/4408N04308E DOF/240215 TYP/BLA");
+
+        assertEquals(LocalTime.of(6, 0), data.getDepartureTime());
+        assertEquals(LocalTime.of(6, 0), data.getArrivalTime());
+        assertEquals("44.133333,43.133333", data.getCoordinates());
+    }
+
+    @Test
+    void firstOccurrenceWins() {
+        ParsedFlightData data = tokenize(
+                "SHR-1\nTYP/AER TYP/BLA DOF/010324 DOF/020324 REG/A1 REG/B2 1000N02000E 3000N04000E");
+
+        assertEquals("AER", data.getDroneType());
+        assertEquals(LocalDate.of(2024, 3, 1), data.getFlightDate());
+        assertEquals("A1", data.getDroneRegistration());
+        assertEquals("10.000000,20.000000", data.getCoordinates());
+    }
+
+    @Test
+    void invalidFirstTimeNotSkipped() {
+        // Как и прежнее "-(\d{4})": первое вхождение - "-0072" из номера полета, время в нем некорректно
+        ParsedFlightData data = tokenize("SHR-00725\n-0600");
+
+        assertNull(data.getDepartureTime());
+    }
+
+    @Test
+    void southernAndWesternCoordinatesNegative() {
+        assertEquals("-33.500000,-70.666667", tokenize("SHR-1\n-ZONA 3330S07040W").getCoordinates());
+    }
+
+    @Test
+    void defaultsWhenFieldsMissing() {
+        ParsedFlightData data = tokenize("SHR-ZZZZZ \n-ZONA TYP/ab REG/ DOF/12");
+
+        assertEquals("ZZZZZ", data.getFlightId());
+        assertEquals(LocalDate.now(), data.getFlightDate());
+        assertEquals("UNKNOWN", data.getDroneType());
+        assertNull(data.getDroneRegistration());
+        assertNull(data.getCoordinates());
+        assertNull(data.getDepartureTime());
+    }
+
+    @Test
+    void flightIdOnlyAtTextStart() {
+        assertNull(tokenize("(SHR-1\n-0600)").getFlightId());
+        assertEquals("7771444381", tokenize("SHR-7771444381").getFlightId());
+    }
+
+    @Test
+    void dateDayClampedToMonthEnd() {
+        assertEquals(LocalDate.of(2024, 2, 29), tokenize("SHR-1 DOF/310224").getFlightDate());
+        assertEquals(LocalDate.of(2023, 2, 28), tokenize("SHR-1 DOF/300223").getFlightDate());
+    }
+
+    @Test
+    void invalidDateRejected() {
+        assertThrows(DateTimeException.class, () -> tokenize("SHR-1 DOF/001224"));
+        assertThrows(DateTimeException.class, () -> tokenize("SHR-1 DOF/321224"));
+        assertThrows(DateTimeException.class, () -> tokenize("SHR-1 DOF/011324"));
+    }
+
+    @Test
+    void timeParsing() {
+        assertEquals(LocalTime.of(7, 5), ShrTelegramTokenizer.parseTime("0705"));
+        assertEquals(LocalTime.MIDNIGHT, ShrTelegramTokenizer.parseTime("2400"));
+        assertNull(ShrTelegramTokenizer.parseTime("2401"));
+        assertNull(ShrTelegramTokenizer.parseTime("1260"));
+        assertNull(ShrTelegramTokenizer.parseTime("705"));
+        assertNull(ShrTelegramTokenizer.parseTime("07a5"));
+        assertNull(ShrTelegramTokenizer.parseTime(null));
+    }
+
+    @Test
+    void timeInDepAndArrTelegrams() {
+        String dep = "-TITLE IDEP -SID 7771444381 -ADD 250105 -ATD 0705 -ADEP ZZZZ";
+        String arr = "-TITLE IARR -SID 7771444381 -ADA 250105 -ATA 1250 -ADARR ZZZZ";
+
+        assertEquals(LocalTime.of(7, 5), ShrTelegramTokenizer.findTimeAfter(dep, "ATD "));
+        assertEquals(LocalTime.of(12, 50), ShrTelegramTokenizer.findTimeAfter(arr, "ATA "));
+        assertNull(ShrTelegramTokenizer.findTimeAfter(dep, "ATA "));
+        assertNull(ShrTelegramTokenizer.findTimeAfter(null, "ATD "));
+        // Первое "-HHmm": -SID 7771... не подходит - после дефиса буквы
+        assertNull(ShrTelegramTokenizer.findFirstTime(dep));
+        assertEquals(LocalTime.of(9, 30), ShrTelegramTokenizer.findFirstTime("-DEP -0930 -1000"));
+        assertNull(ShrTelegramTokenizer.findFirstTime(null));
+    }
+
+    private static ParsedFlightData tokenize(String text) {
+        ParsedFlightData data = new ParsedFlightData();
+        ShrTelegramTokenizer.tokenize(text, data);
+        return data;
+    }
+}